@@ -0,0 +1,302 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The <tt>ActorPairings</tt> class finds the pairs of actors who have been in
+ * the most movies together. For every actor, the colleague it shares the most
+ * movies with is found by counting, over each of its movies, every other
+ * performer in that movie; the pairs whose count is the highest of all are
+ * kept, ties included.
+ * <p>
+ * The actors are split into small blocks in {@link DegreeRanking} order, and
+ * the workers on a {@link ForkJoinPool} claim the blocks one at a time, so the
+ * busy actors at the front of the ranking are spread across all the cores.
+ * Each worker counts into one dense <tt>int[]</tt> that it reuses for every
+ * actor, clearing only the entries it touched. No actor can share more movies
+ * with anyone than it has been in, so an actor in fewer movies than the best
+ * count found so far is skipped without counting. (A cast list that repeats
+ * a movie on one line joins the same vertices more than once; the bound then
+ * weighs each movie by the most times any one performer is listed in it.)
+ * <p>
+ * The result does not depend on how the work was split: each actor's top
+ * colleague is the one with the lowest index among those it shares the most
+ * movies with, each pair is listed once, and the pairs are listed in the
+ * order of their first actor's index, as if the actors had been checked one
+ * by one in index order.
+ *
+ * @author Cameron Stanavige
+ */
+public class ActorPairings {
+	private static final int BLOCK = 64; // actors claimed at a time
+
+	private final int moviesShared; // count of every pair, 0 if none
+	private final int[] pairs; // actor, colleague, actor, colleague, ...
+
+	/**
+	 * Finds the top pairings of the actors of <tt>G</tt>.
+	 * 
+	 * @param G
+	 *            the graph
+	 * @param ranking
+	 *            the ranking of the actors of <tt>G</tt>
+	 * @param pool
+	 *            the pool to count on
+	 */
+	public ActorPairings(final Graph G, final DegreeRanking ranking,
+			ForkJoinPool pool) {
+		final AtomicInteger next = new AtomicInteger(); // next block to claim
+		final AtomicInteger best = new AtomicInteger(); // best count so far
+		final int[] repeats = mostRepeats(G);
+		List<Callable<Worker>> workers = new ArrayList<Callable<Worker>>();
+		int blocks = (ranking.actorCount() + BLOCK - 1) / BLOCK;
+		for (int w = Math.min(pool.getParallelism(), blocks); w > 0; w--) {
+			workers.add(new Callable<Worker>() {
+				public Worker call() {
+					Worker worker = new Worker(G);
+					worker.run(ranking, repeats, next, best);
+					return worker;
+				}
+			});
+		}
+		List<Worker> done = ParallelTasks.invokeAll(pool, workers);
+
+		int most = 0;
+		int found = 0;
+		for (Worker worker : done) {
+			most = Math.max(most, worker.best);
+		}
+		for (Worker worker : done) {
+			if (worker.best == most)
+				found += worker.found;
+		}
+		long[] sorted = new long[found]; // actor in the high half
+		int k = 0;
+		for (Worker worker : done) {
+			if (worker.best != most)
+				continue;
+			for (int i = 0; i < worker.found; i++) {
+				sorted[k++] = ((long) worker.pairs[2 * i] << 32)
+						| worker.pairs[2 * i + 1];
+			}
+		}
+		Arrays.sort(sorted);
+		moviesShared = most;
+		pairs = distinct(sorted, found);
+	}
+
+	/**
+	 * Reads the top pairings of the actors off a co-star projection, whose
+	 * rows already hold every actor's colleagues and counts. The result is
+	 * the same as counting them from the movie graph.
+	 * 
+	 * @param coStars
+	 *            the co-star projection
+	 */
+	public ActorPairings(CoStarGraph coStars) {
+		int[] neighbors = coStars.neighbors();
+		int[] weights = coStars.weights();
+		int most = 0;
+		int found = 0;
+		long[] sorted = new long[16]; // actor in the high half
+		for (int v = 0; v < coStars.V(); v++) {
+			int start = coStars.adjStart(v);
+			int end = start + coStars.degree(v);
+			if (start == end) // a movie, or an actor with no colleagues
+				continue;
+			int top = start; // rows are sorted, so the first best is lowest
+			for (int i = start + 1; i < end; i++) {
+				if (weights[i] > weights[top])
+					top = i;
+			}
+			if (weights[top] > most) {
+				most = weights[top];
+				found = 0;
+			}
+			if (weights[top] == most) {
+				if (found == sorted.length)
+					sorted = Arrays.copyOf(sorted, 2 * found);
+				sorted[found++] = ((long) v << 32) | neighbors[top];
+			}
+		}
+		moviesShared = most;
+		pairs = distinct(sorted, found);
+	}
+
+	/**
+	 * Private Method: Lists each pair once. A pair is found from both ends
+	 * when each actor is the other's top colleague; only the end with the
+	 * lower index is kept.
+	 * 
+	 * @param sorted
+	 *            The pairs found, each packed as actor and colleague, in
+	 *            order.
+	 * @param found
+	 *            The number of pairs found.
+	 * @return The distinct pairs, as actor, colleague, actor, colleague, ...
+	 */
+	private static int[] distinct(long[] sorted, int found) {
+		Set<Long> seen = new HashSet<Long>();
+		int[] kept = new int[2 * found];
+		int n = 0;
+		for (int i = 0; i < found; i++) {
+			int actor = (int) (sorted[i] >>> 32);
+			int colleague = (int) sorted[i];
+			long key = ((long) Math.min(actor, colleague) << 32)
+					| Math.max(actor, colleague);
+			if (seen.add(key)) {
+				kept[n++] = actor;
+				kept[n++] = colleague;
+			}
+		}
+		return Arrays.copyOf(kept, n);
+	}
+
+	/**
+	 * Returns the number of movies each of the top pairs has been in
+	 * together.
+	 * 
+	 * @return the number of movies shared, or 0 if no two actors have been in
+	 *         a movie together
+	 */
+	public int moviesShared() {
+		return moviesShared;
+	}
+
+	/**
+	 * Returns the number of top pairs.
+	 * 
+	 * @return the number of pairs
+	 */
+	public int size() {
+		return pairs.length / 2;
+	}
+
+	/**
+	 * Returns the first actor of a pair.
+	 * 
+	 * @param i
+	 *            the pair, between 0 and size() - 1
+	 * @return the vertex of the actor
+	 */
+	public int actor(int i) {
+		return pairs[2 * i];
+	}
+
+	/**
+	 * Returns the second actor of a pair, the first actor's top colleague.
+	 * 
+	 * @param i
+	 *            the pair, between 0 and size() - 1
+	 * @return the vertex of the colleague
+	 */
+	public int colleague(int i) {
+		return pairs[2 * i + 1];
+	}
+
+	/**
+	 * Private Method: Finds, for every vertex, the most times any one
+	 * neighbor appears in its adjacency list. This is 1 for every vertex with
+	 * neighbors unless the cast list repeats entries.
+	 * 
+	 * @param G
+	 *            The graph.
+	 * @return An array whose entry v is the most edges between v and any one
+	 *         neighbor.
+	 */
+	private static int[] mostRepeats(Graph G) {
+		int[] targets = G.targets();
+		int[] most = new int[G.V()];
+		int[] mark = new int[G.V()]; // mark[w] = 1 + last vertex seen with w
+		int[] times = new int[G.V()]; // edges between w and that vertex
+		for (int v = 0; v < G.V(); v++) {
+			for (int i = G.adjStart(v), end = i + G.degree(v); i < end; i++) {
+				int w = targets[i];
+				if (mark[w] != v + 1) {
+					mark[w] = v + 1;
+					times[w] = 0;
+				}
+				most[v] = Math.max(most[v], ++times[w]);
+			}
+		}
+		return most;
+	}
+
+	/**
+	 * The state of one worker: its counters, and the best pairs among the
+	 * actors it has checked.
+	 */
+	private static class Worker {
+		private final Graph G;
+		private final int[] count; // count[a] = movies shared with a
+		private final int[] touched; // vertices whose count is not 0
+		private int best; // best count this worker has found
+		private int[] pairs = new int[16]; // pairs with that count
+		private int found;
+
+		Worker(Graph G) {
+			this.G = G;
+			count = new int[G.V()];
+			touched = new int[G.V()];
+		}
+
+		// claims blocks of ranks until the ranking is used up, skipping the
+		// actors that cannot share as many movies with anyone as the best
+		// count any worker has found
+		void run(DegreeRanking ranking, int[] repeats, AtomicInteger next,
+				AtomicInteger best) {
+			int[] targets = G.targets();
+			int actors = ranking.actorCount();
+			for (int from = next.getAndAdd(BLOCK); from < actors; from = next
+					.getAndAdd(BLOCK)) {
+				for (int r = from, end = Math.min(from + BLOCK, actors); r < end; r++) {
+					int actor = ranking.actor(r);
+					int most = 0; // most movies it can share with anyone
+					for (int i = G.adjStart(actor), last = i + G.degree(actor); i < last; i++) {
+						most += repeats[targets[i]];
+					}
+					if (most >= best.get())
+						check(actor, best);
+				}
+			}
+		}
+
+		// finds the top colleague of one actor and keeps the pair if it is
+		// at least as good as this worker's best
+		private void check(int actor, AtomicInteger best) {
+			int n = CoStarGraph.countColleagues(G, actor, count, touched);
+			if (n == 0) // no colleagues
+				return;
+			int top = touched[0];
+			for (int t = 1; t < n; t++) {
+				int a = touched[t];
+				if (count[a] > count[top] || (count[a] == count[top] && a < top))
+					top = a;
+			}
+			int shared = count[top];
+			for (int t = 0; t < n; t++) {
+				count[touched[t]] = 0;
+			}
+
+			int b = best.get();
+			while (shared > b && !best.compareAndSet(b, shared))
+				b = best.get(); // another worker raised it first
+			if (shared > this.best) {
+				this.best = shared;
+				found = 0;
+			}
+			if (shared == this.best) {
+				if (2 * found == pairs.length)
+					pairs = Arrays.copyOf(pairs, 2 * pairs.length);
+				pairs[2 * found] = actor;
+				pairs[2 * found + 1] = top;
+				found++;
+			}
+		}
+	}
+}
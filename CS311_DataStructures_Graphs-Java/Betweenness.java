@@ -0,0 +1,361 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The <tt>Betweenness</tt> class computes the betweenness centrality of every
+ * vertex of a {@link Graph}: the number of shortest paths between other
+ * pairs of vertices that pass through it, each pair's paths sharing one unit
+ * between them. In a {@link SymbolGraph} the actors and movies that score
+ * highest are the ones that bridge otherwise separate parts of the industry.
+ * <p>
+ * It uses Brandes' algorithm: a breadth-first search from each source counts
+ * the shortest paths to every vertex, and a pass back over the vertices in
+ * the reverse of the order they were found adds up each vertex's dependency,
+ * the share of the source's paths that go through it. A vertex's predecessors
+ * are found by scanning its edges for neighbors one level closer, so no
+ * predecessor lists are kept. The sources are handed out, a few at a time, to
+ * one task per thread of a {@link ForkJoinPool}; each task adds into its own
+ * array of totals, and the arrays are summed at the end, so no locks are
+ * taken.
+ * <p>
+ * The exact computation searches from every vertex, and takes time
+ * proportional to <em>V</em> <em>E</em>. For graphs too large for that, the
+ * sampling constructor searches from sources drawn at random and scales the
+ * totals up. The number of sources is chosen by Hoeffding's inequality, with
+ * a union bound over the vertices, so that with probability at least
+ * 1 - <em>delta</em> every vertex's {@link #normalized(int)} centrality is
+ * within <em>epsilon</em> of its exact value.
+ *
+ * @author Cameron Stanavige
+ */
+public class Betweenness {
+	private static final int CHUNK = 16; // sources taken by a task at a time
+
+	private final Graph G;
+	private final int[] sources; // the sources searched, repeats allowed
+	private final boolean exact;
+	private final double[] centrality; // centrality[v] = betweenness of v
+
+	/**
+	 * Computes the exact betweenness of every vertex.
+	 * 
+	 * @param G
+	 *            the graph
+	 * @param pool
+	 *            the pool to search on
+	 */
+	public Betweenness(Graph G, ForkJoinPool pool) {
+		this(G, everyVertex(G.V()), true, pool);
+	}
+
+	/**
+	 * Estimates the betweenness of every vertex from a sample of sources. If
+	 * the sample would need at least <em>V</em> sources, the exact
+	 * betweenness is computed instead.
+	 * 
+	 * @param G
+	 *            the graph
+	 * @param epsilon
+	 *            the largest error allowed in any vertex's normalized
+	 *            centrality
+	 * @param delta
+	 *            the chance allowed of any error being larger
+	 * @param seed
+	 *            the seed of the random sources
+	 * @param pool
+	 *            the pool to search on
+	 * @throws java.lang.IllegalArgumentException
+	 *             unless 0 < epsilon < 1 and 0 < delta < 1
+	 */
+	public Betweenness(Graph G, double epsilon, double delta, long seed,
+			ForkJoinPool pool) {
+		this(G, sample(G.V(), epsilon, delta, seed), false, pool);
+	}
+
+	/**
+	 * Private Method: Searches from the given sources and scales the totals
+	 * to the whole graph.
+	 * 
+	 * @param G
+	 *            The graph.
+	 * @param sources
+	 *            The sources, or null for every vertex.
+	 * @param exact
+	 *            True if the sources are every vertex.
+	 * @param pool
+	 *            The pool to search on.
+	 */
+	private Betweenness(Graph G, int[] sources, boolean exact,
+			ForkJoinPool pool) {
+		this.G = G;
+		G.freeze();
+		this.exact = exact || sources == null;
+		this.sources = (sources == null) ? everyVertex(G.V()) : sources;
+		centrality = search(pool);
+		// each pair is counted once from either end, and a sample stands
+		// for V / k times as many sources
+		double scale = 0.5 * G.V() / Math.max(1, this.sources.length);
+		for (int v = 0; v < centrality.length; v++) {
+			centrality[v] *= scale;
+		}
+	}
+
+	/**
+	 * Returns the number of sources that would be sampled for an accuracy.
+	 * 
+	 * @param V
+	 *            the number of vertices
+	 * @param epsilon
+	 *            the largest error allowed in a normalized centrality
+	 * @param delta
+	 *            the chance allowed of any error being larger
+	 * @return ln(2V / delta) / (2 epsilon<sup>2</sup>), rounded up
+	 * @throws java.lang.IllegalArgumentException
+	 *             unless 0 < epsilon < 1 and 0 < delta < 1
+	 */
+	public static long sampleSize(int V, double epsilon, double delta) {
+		if (!(epsilon > 0 && epsilon < 1) || !(delta > 0 && delta < 1))
+			throw new IllegalArgumentException(
+					"epsilon and delta must be between 0 and 1: " + epsilon
+							+ ", " + delta);
+		return (long) Math.ceil(Math.log(2.0 * Math.max(1, V) / delta)
+				/ (2 * epsilon * epsilon));
+	}
+
+	/**
+	 * Is the betweenness exact, rather than estimated from a sample?
+	 * 
+	 * @return true if every vertex was a source
+	 */
+	public boolean isExact() {
+		return exact;
+	}
+
+	/**
+	 * Returns the number of searches made.
+	 * 
+	 * @return the number of sources
+	 */
+	public int sources() {
+		return sources.length;
+	}
+
+	/**
+	 * Returns the betweenness of <tt>v</tt>: over the pairs of other
+	 * vertices, the share of each pair's shortest paths that pass through
+	 * <tt>v</tt>.
+	 * 
+	 * @param v
+	 *            the vertex
+	 * @return the betweenness, or its estimate
+	 */
+	public double centrality(int v) {
+		return centrality[v];
+	}
+
+	/**
+	 * Returns the betweenness of <tt>v</tt> as a share of the pairs of other
+	 * vertices, (V-1)(V-2)/2, the most it could be.
+	 * 
+	 * @param v
+	 *            the vertex
+	 * @return the normalized betweenness, between 0 and 1
+	 */
+	public double normalized(int v) {
+		int V = G.V();
+		if (V < 3)
+			return 0;
+		return centrality[v] / ((V - 1) * (V - 2.0) / 2);
+	}
+
+	/**
+	 * Returns the vertices of highest betweenness among some of the
+	 * vertices.
+	 * 
+	 * @param n
+	 *            the most vertices to return
+	 * @param include
+	 *            include[v] is true if <tt>v</tt> may be returned, such as
+	 *            the marks of the actors; null for every vertex
+	 * @return the vertices, highest betweenness first; ties in vertex order
+	 */
+	public int[] top(int n, boolean[] include) {
+		int count = 0;
+		for (int v = 0; v < G.V(); v++) {
+			if (include == null || include[v])
+				count++;
+		}
+		Integer[] order = new Integer[count];
+		count = 0;
+		for (int v = 0; v < G.V(); v++) {
+			if (include == null || include[v])
+				order[count++] = v;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Double.compare(centrality[b], centrality[a]);
+			}
+		});
+		int[] top = new int[Math.max(0, Math.min(n, count))];
+		for (int i = 0; i < top.length; i++) {
+			top[i] = order[i];
+		}
+		return top;
+	}
+
+	/**
+	 * Private Method: Runs Brandes' algorithm from every source, one task per
+	 * thread of the pool, each taking the next few sources until none are
+	 * left.
+	 * 
+	 * @param pool
+	 *            The pool to search on.
+	 * @return The sum of every source's dependencies, per vertex.
+	 */
+	private double[] search(ForkJoinPool pool) {
+		final AtomicInteger next = new AtomicInteger();
+		int chunks = (sources.length + CHUNK - 1) / CHUNK;
+		int threads = Math.max(1, Math.min(pool.getParallelism(), chunks));
+		List<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>();
+		for (int t = 0; t < threads; t++) {
+			tasks.add(new Callable<double[]>() {
+				public double[] call() {
+					Searcher searcher = new Searcher();
+					for (int i; (i = next.getAndAdd(CHUNK)) < sources.length;) {
+						for (int end = Math.min(i + CHUNK, sources.length); i < end; i++) {
+							searcher.search(sources[i]);
+						}
+					}
+					return searcher.total;
+				}
+			});
+		}
+		double[] sum = null;
+		for (double[] total : ParallelTasks.invokeAll(pool, tasks)) {
+			if (sum == null) {
+				sum = total;
+			} else {
+				for (int v = 0; v < sum.length; v++) {
+					sum[v] += total[v];
+				}
+			}
+		}
+		return (sum == null) ? new double[G.V()] : sum;
+	}
+
+	/**
+	 * The working arrays and the totals of one thread, reused source after
+	 * source.
+	 */
+	private class Searcher {
+		final int[] distance = new int[G.V()]; // -1 until reached
+		final double[] paths = new double[G.V()]; // shortest paths to v
+		final double[] dependency = new double[G.V()];
+		final int[] order = new int[G.V()]; // vertices in the order reached
+		final double[] total = new double[G.V()];
+
+		Searcher() {
+			Arrays.fill(distance, -1);
+		}
+
+		// adds the dependencies of every vertex on source s to the totals
+		void search(int s) {
+			int[] targets = G.targets();
+			distance[s] = 0;
+			paths[s] = 1;
+			order[0] = s;
+			int tail = 1;
+			for (int head = 0; head < tail; head++) {
+				int v = order[head];
+				for (int i = G.adjStart(v), end = i + G.degree(v); i < end; i++) {
+					int w = targets[i];
+					if (distance[w] < 0) {
+						distance[w] = distance[v] + 1;
+						order[tail++] = w;
+					}
+					if (distance[w] == distance[v] + 1)
+						paths[w] += paths[v];
+				}
+			}
+			// back from the farthest vertices, each passing its share on
+			// to the neighbors one level closer
+			for (int q = tail - 1; q > 0; q--) {
+				int w = order[q];
+				double share = (1 + dependency[w]) / paths[w];
+				for (int i = G.adjStart(w), end = i + G.degree(w); i < end; i++) {
+					int v = targets[i];
+					if (distance[v] == distance[w] - 1)
+						dependency[v] += paths[v] * share;
+				}
+				total[w] += dependency[w];
+			}
+			for (int q = 0; q < tail; q++) { // only what was reached
+				int v = order[q];
+				distance[v] = -1;
+				paths[v] = 0;
+				dependency[v] = 0;
+			}
+		}
+	}
+
+	// the sources 0 to V-1
+	private static int[] everyVertex(int V) {
+		int[] sources = new int[V];
+		for (int v = 0; v < V; v++) {
+			sources[v] = v;
+		}
+		return sources;
+	}
+
+	// sources drawn with replacement, or null if the sample would be at
+	// least V sources and every vertex should be searched instead
+	private static int[] sample(int V, double epsilon, double delta, long seed) {
+		long k = sampleSize(V, epsilon, delta);
+		if (k >= V)
+			return null;
+		Random random = new Random(seed);
+		int[] sources = new int[(int) k];
+		for (int i = 0; i < sources.length; i++) {
+			sources[i] = random.nextInt(V);
+		}
+		return sources;
+	}
+
+	/**
+	 * Loads a cast list and prints the actors and the movies of highest
+	 * betweenness.
+	 * 
+	 * @param args
+	 *            the file, as for {@link SymbolGraph#open(String, String)},
+	 *            then optionally the number of each to list (10), and epsilon
+	 *            and delta to sample instead of computing exactly
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		SymbolGraph sg = SymbolGraph.open(args[0], "\\|");
+		int n = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+		double epsilon = (args.length > 2) ? Double.parseDouble(args[2]) : 0;
+		double delta = (args.length > 3) ? Double.parseDouble(args[3]) : 0.1;
+		long start = System.nanoTime();
+		Betweenness b = sg.betweenness(epsilon, delta);
+		System.out.printf("%s betweenness from %d sources in %.1f s%n",
+				b.isExact() ? "exact" : "sampled", b.sources(),
+				(System.nanoTime() - start) / 1e9);
+		System.out.println("bridging actors:");
+		for (String name : sg.topBridges(b, n, true)) {
+			System.out.println("  " + name);
+		}
+		System.out.println("bridging movies:");
+		for (String name : sg.topBridges(b, n, false)) {
+			System.out.println("  " + name);
+		}
+	}
+}
@@ -0,0 +1,259 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * The <tt>CastListParser</tt> class reads a cast list, one performer per line,
+ * in a single pass. Each line holds the performer's name followed by the
+ * movies they acted in, separated by a one-byte delimiter:
+ *
+ * <pre>
+ * Bacon, Kevin|Apollo 13 (1995)|Tremors (1990)
+ * </pre>
+ *
+ * Every name gets the next free index the first time it is seen, the first
+ * name on each line is marked as an actor, and an edge from the actor to each
+ * of the other names on the line is buffered as a pair of ints. This is the
+ * same numbering and the same edge order as reading the file twice (once to
+ * number the names and once to add the edges), so the finished {@link Graph}
+ * is identical.
+ * <p>
+ * Lines are split by scanning the raw bytes for the delimiter and for
+ * <tt>'\n'</tt> (an <tt>'\r'</tt> before it is dropped), without regular
+ * expressions. Names that are pure ASCII are looked up straight from the bytes,
+ * so a <tt>String</tt> is only built for a name the first time it appears.
+ * Other names are decoded as UTF-8. Empty lines and empty names are skipped.
+ *
+ * @author Cameron Stanavige
+ */
+public class CastListParser {
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final byte delimiter;
+
+	private NameIndex names; // name -> index
+	private boolean[] actors; // true if actor
+	private int[] edges; // actor-movie pairs, two entries per edge
+	private int E; // number of edges
+
+	private byte[] scratch; // bytes of the name being looked up
+
+	/**
+	 * Initializes a parser with no names or edges.
+	 * 
+	 * @param delimiter
+	 *            the delimiter between fields: a single ASCII character,
+	 *            optionally escaped for a regular expression as in
+	 *            <tt>"\\|"</tt>
+	 * @throws java.lang.IllegalArgumentException
+	 *             if <tt>delimiter</tt> is not a single ASCII character
+	 */
+	public CastListParser(String delimiter) {
+		this.delimiter = delimiterByte(delimiter);
+		names = new NameIndex();
+		actors = new boolean[16];
+		edges = new int[16];
+		E = 0;
+		scratch = new byte[64];
+	}
+
+	/**
+	 * Reads every line of <tt>in</tt>. The stream is not closed.
+	 * 
+	 * @param in
+	 *            the cast list
+	 * @throws IOException
+	 *             if reading from <tt>in</tt> fails
+	 */
+	public void parse(InputStream in) throws IOException {
+		byte[] buf = new byte[1 << 16];
+		ByteBuffer wrapped = ByteBuffer.wrap(buf);
+		int n = 0; // bytes in buf
+		int read;
+		while ((read = in.read(buf, n, buf.length - n)) != -1) {
+			n += read;
+			int done = parse(wrapped, 0, n, false);
+			if (done == 0 && n == buf.length) { // line longer than buf
+				buf = Arrays.copyOf(buf, 2 * buf.length);
+				wrapped = ByteBuffer.wrap(buf);
+			} else { // keep the unfinished line
+				System.arraycopy(buf, done, buf, 0, n - done);
+				n -= done;
+			}
+		}
+		parse(wrapped, 0, n, true);
+	}
+
+	/**
+	 * Reads the lines in bytes <tt>start</tt> through <tt>end</tt> - 1 of
+	 * <tt>buf</tt>. A line with no <tt>'\n'</tt> after it is only read if
+	 * <tt>last</tt> is true; otherwise it is left for the caller to pass in
+	 * again once the rest of it is available.
+	 * 
+	 * @param buf
+	 *            the buffer to read from (its position is not used)
+	 * @param start
+	 *            the first byte to read
+	 * @param end
+	 *            one past the last byte to read
+	 * @param last
+	 *            true if no more input follows <tt>end</tt>
+	 * @return one past the last byte that was read
+	 */
+	public int parse(ByteBuffer buf, int start, int end, boolean last) {
+		int lineStart = start;
+		for (int i = start; i < end; i++) {
+			if (buf.get(i) == '\n') {
+				parseLine(buf, lineStart, i);
+				lineStart = i + 1;
+			}
+		}
+		if (last && lineStart < end) {
+			parseLine(buf, lineStart, end);
+			lineStart = end;
+		}
+		return lineStart;
+	}
+
+	/**
+	 * Returns the number of names read so far.
+	 * 
+	 * @return the number of distinct names read so far
+	 */
+	public int size() {
+		return names.size();
+	}
+
+	/**
+	 * Returns the number of edges read so far.
+	 * 
+	 * @return the number of actor-movie edges read so far
+	 */
+	public int E() {
+		return E;
+	}
+
+	/**
+	 * Returns the index of the names read so far. The parser keeps adding to
+	 * it if more input is parsed.
+	 * 
+	 * @return the name index
+	 */
+	public NameIndex names() {
+		return names;
+	}
+
+	/**
+	 * Returns which of the names read so far are actors.
+	 * 
+	 * @return an array of length {@link #size()} whose entry <tt>v</tt> is
+	 *         true if the name with index <tt>v</tt> began a line
+	 */
+	public boolean[] actors() {
+		return Arrays.copyOf(actors, names.size());
+	}
+
+	/**
+	 * Returns the edges read so far, two entries per edge in the order they
+	 * were read. It is the client's responsibility not to mutate the array.
+	 * 
+	 * @return the buffered edges; only the first 2 * {@link #E()} entries are
+	 *         used
+	 */
+	public int[] edges() {
+		return edges;
+	}
+
+	/**
+	 * Builds the graph of the names and edges read so far.
+	 * 
+	 * @return a frozen graph with {@link #size()} vertices and {@link #E()}
+	 *         edges
+	 */
+	public Graph graph() {
+		Graph G = new Graph(names.size(), edges, E);
+		G.freeze(); // packs the edges without writing to the shared buffer
+		return G;
+	}
+
+	// splits one line, without its '\n', into names
+	private void parseLine(ByteBuffer buf, int start, int end) {
+		if (end > start && buf.get(end - 1) == '\r')
+			end--;
+		int actor = -1;
+		int nameStart = start;
+		for (int i = start; i <= end; i++) {
+			if (i == end || buf.get(i) == delimiter) {
+				if (i > nameStart) {
+					int v = index(buf, nameStart, i);
+					if (actor < 0) { // first name on the line
+						actor = v;
+						actors[actor] = true;
+					} else {
+						addEdge(actor, v);
+					}
+				}
+				nameStart = i + 1;
+			}
+		}
+	}
+
+	// returns the index of the name in bytes start .. end - 1, adding it if
+	// it is new
+	private int index(ByteBuffer buf, int start, int end) {
+		int len = end - start;
+		if (len > scratch.length)
+			scratch = new byte[Math.max(len, 2 * scratch.length)];
+		boolean ascii = true;
+		for (int j = 0; j < len; j++) {
+			byte b = buf.get(start + j);
+			scratch[j] = b;
+			ascii &= b >= 0;
+		}
+		int v;
+		if (ascii) {
+			v = names.get(scratch, 0, len);
+			if (v < 0)
+				v = names.put(new String(scratch, 0, len, ASCII));
+		} else {
+			v = names.put(new String(scratch, 0, len, UTF8));
+		}
+		if (v == actors.length)
+			actors = Arrays.copyOf(actors, 2 * actors.length);
+		return v;
+	}
+
+	// buffers the edge v-w
+	private void addEdge(int v, int w) {
+		if (2 * E + 2 > edges.length)
+			edges = Arrays.copyOf(edges, 2 * edges.length);
+		edges[2 * E] = v;
+		edges[2 * E + 1] = w;
+		E++;
+	}
+
+	/**
+	 * Returns the byte a delimiter string stands for. Besides a plain single
+	 * character, a character escaped with a backslash for a regular expression
+	 * (<tt>"\\|"</tt>, as used with <tt>String.split</tt>) is accepted.
+	 * 
+	 * @param delimiter
+	 *            the delimiter
+	 * @return the delimiter as a byte
+	 * @throws java.lang.IllegalArgumentException
+	 *             if <tt>delimiter</tt> is not a single ASCII character
+	 */
+	public static byte delimiterByte(String delimiter) {
+		String d = delimiter;
+		if (d.length() == 2 && d.charAt(0) == '\\'
+				&& !Character.isLetterOrDigit(d.charAt(1)))
+			d = d.substring(1);
+		if (d.length() != 1 || d.charAt(0) > 127 || d.charAt(0) == '\n')
+			throw new IllegalArgumentException("Delimiter \"" + delimiter
+					+ "\" is not a single ASCII character");
+		return (byte) d.charAt(0);
+	}
+}
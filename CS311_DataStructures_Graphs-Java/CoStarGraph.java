@@ -0,0 +1,530 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The <tt>CoStarGraph</tt> class is the co-star projection of a movie
+ * {@link Graph}: a weighted graph on the same vertices in which two actors are
+ * joined if they have been in a movie together, and the weight of the edge is
+ * the number of movies they share. Movie vertices have no edges.
+ * <p>
+ * The edges are kept in compressed rows like those of {@link Graph}: the
+ * colleagues of actor <em>v</em> are <tt>neighbors()[adjStart(v)]</tt> up to
+ * <tt>neighbors()[adjStart(v) + degree(v) - 1]</tt>, sorted by index, with
+ * the matching movie counts at the same positions of <tt>weights()</tt>. Each
+ * edge is stored in the rows of both of its actors.
+ * <p>
+ * The projection can follow its movie graph as it grows: {@link #addCast}
+ * counts the pairs a movie's new performers make with the rest of its cast.
+ * As in {@link Graph}, a row that is full is moved to the end of the arrays
+ * with room to double, and the rows are packed again when the arrays fill
+ * up, so the rows are no longer contiguous once the projection has grown.
+ * <p>
+ * The projection is built in two parallel passes on a {@link ForkJoinPool}.
+ * The first counts the colleagues of every actor, so that the rows can be
+ * laid out and the size checked before anything large is allocated; the
+ * second counts again and fills the rows. Workers claim blocks of actors in
+ * {@link DegreeRanking} order and count into a reused dense <tt>int[]</tt>,
+ * clearing only the entries they touched. The projection can be much larger
+ * than the movie graph, since a movie with <em>c</em> performers adds
+ * <em>c</em>(<em>c</em> - 1) entries, so the build refuses to go past a limit
+ * on the number of entries. The busiest actors are counted first, so a
+ * projection that is too large is usually given up on early.
+ *
+ * @author Cameron Stanavige
+ */
+public class CoStarGraph {
+	/**
+	 * The default limit on the number of entries, 2<sup>28</sup>, about 2 GB
+	 * of rows.
+	 */
+	public static final long DEFAULT_LIMIT = 1L << 28;
+
+	/**
+	 * Returns the limit on the number of entries for a projection built on
+	 * this JVM: {@link #DEFAULT_LIMIT}, or fewer if the rows, at 8 bytes an
+	 * entry, would take more than a quarter of the largest heap the JVM may
+	 * use.
+	 * 
+	 * @return the limit
+	 */
+	public static long memoryLimit() {
+		return Math.min(DEFAULT_LIMIT, Runtime.getRuntime().maxMemory() / 4 / 8);
+	}
+
+	private static final int BLOCK = 64; // actors claimed at a time
+
+	private final long limit; // the most entries the rows may hold
+	private int V;
+	private int[] start; // row v starts at start[v]
+	private int[] degree; // and runs for degree[v] entries
+	private int[] room; // room[v] = capacity of v's row; null if all are full
+	private int[] neighbors;
+	private int[] weights;
+	private int used; // neighbors[used..] is free
+	private int entries; // entries in the rows
+
+	/**
+	 * Builds the co-star projection of <tt>G</tt>.
+	 * 
+	 * @param G
+	 *            the movie graph
+	 * @param ranking
+	 *            the ranking of the vertices of <tt>G</tt>
+	 * @param pool
+	 *            the pool to build on
+	 * @param limit
+	 *            the most entries the projection may have
+	 * @throws IllegalStateException
+	 *             if the projection would have more than <tt>limit</tt>
+	 *             entries
+	 */
+	public CoStarGraph(final Graph G, final DegreeRanking ranking,
+			ForkJoinPool pool, long limit) {
+		final long most = Math.min(limit, Integer.MAX_VALUE - 8);
+		this.limit = most;
+		if (largestCast(G, ranking) > most)
+			throw new IllegalStateException(
+					"Co-star graph would have more than " + most + " entries");
+
+		// the workers' buffers only once the largest cast is known to fit
+		int workers = Math.min(pool.getParallelism(),
+				(ranking.actorCount() + BLOCK - 1) / BLOCK);
+		final List<Worker> all = new ArrayList<Worker>();
+		for (int w = 0; w < workers; w++) {
+			all.add(new Worker(G));
+		}
+
+		// first pass: the size of every row
+		final int[] size = new int[G.V()];
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicLong total = new AtomicLong();
+		List<Callable<Void>> sizing = new ArrayList<Callable<Void>>();
+		for (final Worker worker : all) {
+			sizing.add(new Callable<Void>() {
+				public Void call() {
+					worker.size(ranking, next, size, total, most);
+					return null;
+				}
+			});
+		}
+		ParallelTasks.invokeAll(pool, sizing);
+		if (total.get() > most)
+			throw new IllegalStateException(
+					"Co-star graph would have more than " + most + " entries");
+		entries = (int) total.get();
+
+		final int[] offsets = new int[G.V() + 1];
+		for (int v = 0; v < G.V(); v++) {
+			offsets[v + 1] = offsets[v] + size[v];
+		}
+		neighbors = new int[entries];
+		weights = new int[entries];
+		V = G.V();
+		start = Arrays.copyOf(offsets, V);
+		degree = size;
+		used = entries;
+
+		// second pass: fill the rows
+		final AtomicInteger again = new AtomicInteger();
+		List<Callable<Void>> filling = new ArrayList<Callable<Void>>();
+		for (final Worker worker : all) {
+			filling.add(new Callable<Void>() {
+				public Void call() {
+					worker.fill(ranking, again, offsets, neighbors, weights);
+					return null;
+				}
+			});
+		}
+		ParallelTasks.invokeAll(pool, filling);
+	}
+
+	/**
+	 * Adds the pairs made by the performers added to a movie of <tt>G</tt>
+	 * since this projection last saw it, each of whom must be at the end of
+	 * the movie's adjacency list, and grows the projection to the vertices
+	 * of <tt>G</tt>. Takes time proportional to the new performers times the
+	 * cast, times the length of the rows they touch.
+	 * 
+	 * @param G
+	 *            the movie graph, grown since the projection was built
+	 * @param movie
+	 *            the movie
+	 * @param oldDegree
+	 *            the number of performers the movie had before
+	 * @throws IllegalStateException
+	 *             if the projection could grow past its limit; it is not
+	 *             changed
+	 */
+	public void addCast(Graph G, int movie, int oldDegree) {
+		long most = entries;
+		for (int k = oldDegree; k < G.degree(movie); k++) {
+			most += 2L * k;
+		}
+		if (most > limit)
+			throw new IllegalStateException(
+					"Co-star graph would have more than " + limit + " entries");
+		if (G.V() > start.length) {
+			int n = Math.max(G.V(), 2 * start.length);
+			start = Arrays.copyOf(start, n);
+			degree = Arrays.copyOf(degree, n);
+			if (room != null)
+				room = Arrays.copyOf(room, n);
+		}
+		for (; V < G.V(); V++) {
+			start[V] = used;
+			degree[V] = 0;
+			if (room != null)
+				room[V] = 0;
+		}
+
+		int[] targets = G.targets();
+		int first = G.adjStart(movie);
+		for (int k = oldDegree; k < G.degree(movie); k++) {
+			int a = targets[first + k];
+			for (int j = 0; j < k; j++) {
+				int b = targets[first + j];
+				if (b != a) {
+					addWeight(a, b);
+					addWeight(b, a);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Private Method: Counts one more movie shared in <tt>v</tt>'s row,
+	 * adding <tt>w</tt> to the row in order if it is not there yet, after
+	 * moving the row to the end of the arrays if it is full.
+	 * 
+	 * @param v
+	 *            The vertex whose row changes.
+	 * @param w
+	 *            The colleague.
+	 */
+	private void addWeight(int v, int w) {
+		int i = Arrays.binarySearch(neighbors, start[v], start[v] + degree[v],
+				w);
+		if (i >= 0) {
+			weights[i]++;
+			return;
+		}
+		if (room == null) // every row is packed full
+			room = Arrays.copyOf(degree, start.length);
+		if (degree[v] == room[v]) {
+			int capacity = Math.max(4, 2 * degree[v]);
+			if (used + capacity > neighbors.length)
+				pack(capacity);
+			System.arraycopy(neighbors, start[v], neighbors, used, degree[v]);
+			System.arraycopy(weights, start[v], weights, used, degree[v]);
+			start[v] = used;
+			room[v] = capacity;
+			used += capacity;
+			i = Arrays.binarySearch(neighbors, start[v], start[v]
+					+ degree[v], w);
+		}
+		int at = -i - 1;
+		int after = start[v] + degree[v] - at;
+		System.arraycopy(neighbors, at, neighbors, at + 1, after);
+		System.arraycopy(weights, at, weights, at + 1, after);
+		neighbors[at] = w;
+		weights[at] = 1;
+		degree[v]++;
+		entries++;
+	}
+
+	/**
+	 * Private Method: Packs the rows into new arrays with no gaps between
+	 * them, leaving room at the end for rows to move to.
+	 * 
+	 * @param needed
+	 *            The free room the caller needs at the end.
+	 */
+	private void pack(int needed) {
+		long length = Math.max(16, entries + entries / 2 + 2L * needed);
+		length = Math.min(length, Integer.MAX_VALUE - 8);
+		int[] packedNeighbors = new int[(int) length];
+		int[] packedWeights = new int[(int) length];
+		int next = 0;
+		for (int v = 0; v < V; v++) {
+			System.arraycopy(neighbors, start[v], packedNeighbors, next,
+					degree[v]);
+			System.arraycopy(weights, start[v], packedWeights, next,
+					degree[v]);
+			start[v] = next;
+			room[v] = degree[v];
+			next += degree[v];
+		}
+		neighbors = packedNeighbors;
+		weights = packedWeights;
+		used = next;
+	}
+
+	/**
+	 * Private Method: Finds the number of entries the largest cast alone adds
+	 * to the projection, a lower bound on its size that takes time
+	 * proportional to E to find.
+	 * 
+	 * @param G
+	 *            The movie graph.
+	 * @param ranking
+	 *            The ranking of the vertices of G.
+	 * @return c(c - 1), for the movie with the most distinct performers c.
+	 */
+	private static long largestCast(Graph G, DegreeRanking ranking) {
+		int[] targets = G.targets();
+		int[] mark = new int[G.V()]; // mark[a] = 1 + last movie seen with a
+		long largest = 0;
+		for (int r = 0; r < ranking.movieCount(); r++) {
+			int movie = ranking.movie(r);
+			if (G.degree(movie) <= largest)
+				break; // ranked by degree, so no later cast is larger
+			int cast = 0;
+			for (int i = G.adjStart(movie), end = i + G.degree(movie); i < end; i++) {
+				if (mark[targets[i]] != movie + 1) {
+					mark[targets[i]] = movie + 1;
+					cast++;
+				}
+			}
+			largest = Math.max(largest, cast);
+		}
+		return largest * (largest - 1);
+	}
+
+	/**
+	 * Counts the movies <tt>actor</tt> shares with each of its colleagues.
+	 * Afterwards <tt>touched[0..n)</tt> are the colleagues, in no particular
+	 * order, and <tt>count[a]</tt> is the number of movies shared with
+	 * colleague <em>a</em>. The caller must set those entries of
+	 * <tt>count</tt> back to 0 before the next call.
+	 * 
+	 * @param G
+	 *            the movie graph
+	 * @param actor
+	 *            the actor
+	 * @param count
+	 *            a V-entry array of zeros
+	 * @param touched
+	 *            a V-entry array
+	 * @return the number of colleagues, <em>n</em>
+	 */
+	public static int countColleagues(Graph G, int actor, int[] count,
+			int[] touched) {
+		int[] targets = G.targets();
+		int n = 0;
+		for (int i = G.adjStart(actor), end = i + G.degree(actor); i < end; i++) {
+			int movie = targets[i];
+			for (int j = G.adjStart(movie), last = j + G.degree(movie); j < last; j++) {
+				int a = targets[j];
+				if (a != actor && count[a]++ == 0)
+					touched[n++] = a;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Returns the number of vertices.
+	 * 
+	 * @return the number of vertices
+	 */
+	public int V() {
+		return V;
+	}
+
+	/**
+	 * Returns the number of entries in the rows, twice the number of pairs of
+	 * actors who have been in a movie together.
+	 * 
+	 * @return the number of entries
+	 */
+	public int entries() {
+		return entries;
+	}
+
+	/**
+	 * Returns the number of colleagues of <tt>v</tt>.
+	 * 
+	 * @param v
+	 *            the vertex
+	 * @return the number of actors <tt>v</tt> has been in a movie with
+	 * @throws java.lang.IndexOutOfBoundsException
+	 *             unless 0 <= v < V
+	 */
+	public int degree(int v) {
+		validateVertex(v);
+		return degree[v];
+	}
+
+	/**
+	 * Returns the position of the first entry of <tt>v</tt>'s row.
+	 * 
+	 * @param v
+	 *            the vertex
+	 * @return the position in neighbors() and weights() where the row starts
+	 * @throws java.lang.IndexOutOfBoundsException
+	 *             unless 0 <= v < V
+	 */
+	public int adjStart(int v) {
+		validateVertex(v);
+		return start[v];
+	}
+
+	/**
+	 * Returns the colleague array, shared with this graph; it must not be
+	 * changed, and is replaced when the projection grows.
+	 * 
+	 * @return the colleague of every entry
+	 */
+	public int[] neighbors() {
+		return neighbors;
+	}
+
+	/**
+	 * Returns the weight array, shared with this graph; it must not be
+	 * changed, and is replaced when the projection grows.
+	 * 
+	 * @return the number of movies shared, for every entry
+	 */
+	public int[] weights() {
+		return weights;
+	}
+
+	/**
+	 * Returns the number of movies two actors have been in together.
+	 * 
+	 * @param v
+	 *            one actor
+	 * @param w
+	 *            the other actor
+	 * @return the number of movies shared, 0 if none
+	 * @throws java.lang.IndexOutOfBoundsException
+	 *             unless both vertices are between 0 and V - 1
+	 */
+	public int weight(int v, int w) {
+		validateVertex(v);
+		validateVertex(w);
+		int i = Arrays.binarySearch(neighbors, start[v], start[v] + degree[v],
+				w);
+		return (i < 0) ? 0 : weights[i];
+	}
+
+	/**
+	 * Finds the <tt>n</tt> pairs of actors who have been in the most movies
+	 * together, strongest first. Pairs with the same count are listed in order
+	 * of their first actor's index, then their second's.
+	 * 
+	 * @param n
+	 *            the number of pairs
+	 * @return the pairs, as <tt>v, w, v, w, ...</tt> with <em>v</em> &lt;
+	 *         <em>w</em>; fewer than <tt>n</tt> if there are not that many
+	 */
+	public int[] strongestPairs(int n) {
+		n = Math.max(0, Math.min(n, entries / 2));
+		if (n == 0)
+			return new int[0];
+		// each pair as its count, then the order it was met in inverted so
+		// that the earlier of two equal pairs has the larger key, and the
+		// pair itself; weakest on top
+		PriorityQueue<long[]> heap = new PriorityQueue<long[]>(n,
+				new Comparator<long[]>() {
+					public int compare(long[] a, long[] b) {
+						return Long.compare(a[0], b[0]);
+					}
+				});
+		int met = 0;
+		for (int v = 0; v < V; v++) {
+			for (int i = start[v], end = i + degree[v]; i < end; i++) {
+				if (neighbors[i] < v) // the pair is also in row neighbors[i]
+					continue;
+				long key = ((long) weights[i] << 32)
+						| (Integer.MAX_VALUE - met++);
+				if (heap.size() < n) {
+					heap.add(new long[] { key, v, neighbors[i] });
+				} else if (key > heap.peek()[0]) {
+					heap.poll();
+					heap.add(new long[] { key, v, neighbors[i] });
+				}
+			}
+		}
+		int[] pairs = new int[2 * heap.size()];
+		for (int k = pairs.length - 2; k >= 0; k -= 2) {
+			long[] pair = heap.poll();
+			pairs[k] = (int) pair[1];
+			pairs[k + 1] = (int) pair[2];
+		}
+		return pairs;
+	}
+
+	// throw an IndexOutOfBoundsException unless 0 <= v < V
+	private void validateVertex(int v) {
+		if (v < 0 || v >= V)
+			throw new IndexOutOfBoundsException("vertex " + v
+					+ " is not between 0 and " + (V - 1));
+	}
+
+	/**
+	 * The counters of one worker, used for both passes.
+	 */
+	private static class Worker {
+		private final Graph G;
+		private final int[] count;
+		private final int[] touched;
+
+		Worker(Graph G) {
+			this.G = G;
+			count = new int[G.V()];
+			touched = new int[G.V()];
+		}
+
+		// first pass: claims blocks of actors and records the size of each
+		// row, until the ranking is used up or the rows pass the limit
+		void size(DegreeRanking ranking, AtomicInteger next, int[] size,
+				AtomicLong total, long limit) {
+			int actors = ranking.actorCount();
+			for (int from = next.getAndAdd(BLOCK); from < actors; from = next
+					.getAndAdd(BLOCK)) {
+				for (int r = from, end = Math.min(from + BLOCK, actors); r < end; r++) {
+					int actor = ranking.actor(r);
+					int n = countColleagues(G, actor, count, touched);
+					size[actor] = n;
+					clear(n);
+					if (total.addAndGet(n) > limit)
+						return; // too large; no need to count the rest
+				}
+			}
+		}
+
+		// second pass: claims blocks of actors and fills their rows
+		void fill(DegreeRanking ranking, AtomicInteger next, int[] offsets,
+				int[] neighbors, int[] weights) {
+			int actors = ranking.actorCount();
+			for (int from = next.getAndAdd(BLOCK); from < actors; from = next
+					.getAndAdd(BLOCK)) {
+				for (int r = from, end = Math.min(from + BLOCK, actors); r < end; r++) {
+					int actor = ranking.actor(r);
+					int n = countColleagues(G, actor, count, touched);
+					Arrays.sort(touched, 0, n);
+					for (int t = 0, i = offsets[actor]; t < n; t++, i++) {
+						neighbors[i] = touched[t];
+						weights[i] = count[touched[t]];
+					}
+					clear(n);
+				}
+			}
+		}
+
+		// sets the counts of the last row's n colleagues back to 0
+		private void clear(int n) {
+			for (int t = 0; t < n; t++) {
+				count[touched[t]] = 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,248 @@
+import java.util.Arrays;
+
+/**
+ * The <tt>Components</tt> class finds the connected components of a
+ * {@link SymbolGraph}, so that whether two actors are connected at all is
+ * known in constant time, without a search.
+ * <p>
+ * The components are found by union-find, one union per edge, with union by
+ * size and path halving. The links are then flattened so that every vertex
+ * points straight at the representative of its component, and a query only
+ * reads them. Each component is named by its representative vertex, and
+ * counts its vertices and, separately, its actors.
+ * <p>
+ * The components follow a growing graph: {@link #addVertex(boolean)} and
+ * {@link #addEdge(int, int)} merge them as vertices and edges are added,
+ * without starting over. Merging links one representative under the other,
+ * so after additions a query may follow a few links, never more than the
+ * logarithm of the component's size; a representative can also change, so
+ * ids found before an addition should not be kept. Queries must not run
+ * while vertices or edges are being added.
+ *
+ * @author Cameron Stanavige
+ */
+public class Components {
+	private int[] parent; // parent[v] = v's link toward its representative
+	private int[] size; // size[r] = vertices in r's component
+	private int[] actors; // actors[r] = actors in r's component
+	private int V; // vertices in the graph
+	private int actorCount; // actors in the graph
+	private int count; // number of components
+	private int giant; // representative of the component with most actors
+
+	/**
+	 * Finds the components of <tt>G</tt>.
+	 * 
+	 * @param G
+	 *            the graph
+	 * @param isActor
+	 *            isActor[v] is true if vertex v is an actor, false if it is a
+	 *            movie
+	 */
+	public Components(Graph G, boolean[] isActor) {
+		V = G.V();
+		parent = new int[V];
+		size = new int[V];
+		actors = new int[V];
+		for (int v = 0; v < V; v++) {
+			parent[v] = v;
+			size[v] = 1;
+		}
+		count = V;
+		int[] targets = G.targets();
+		for (int v = 0; v < V; v++) {
+			for (int i = G.adjStart(v), end = i + G.degree(v); i < end; i++) {
+				if (targets[i] > v) // each edge once
+					union(v, targets[i]);
+			}
+		}
+
+		int n = 0;
+		for (int v = 0; v < V; v++) {
+			parent[v] = find(v); // flatten
+			if (isActor[v]) {
+				actors[parent[v]]++;
+				n++;
+			}
+		}
+		actorCount = n;
+		giant = -1;
+		for (int v = 0; v < V; v++) {
+			if (parent[v] == v && (giant < 0 || actors[v] > actors[giant]))
+				giant = v;
+		}
+	}
+
+	/**
+	 * Returns the number of components.
+	 * 
+	 * @return the number of components
+	 */
+	public int count() {
+		return count;
+	}
+
+	/**
+	 * Returns the component of vertex <tt>v</tt>.
+	 * 
+	 * @param v
+	 *            the vertex
+	 * @return the representative vertex of the component holding <tt>v</tt>
+	 */
+	public int id(int v) {
+		while (parent[v] != v) // one step, unless vertices have been added
+			v = parent[v];
+		return v;
+	}
+
+	/**
+	 * Are <tt>v</tt> and <tt>w</tt> connected by a path?
+	 * 
+	 * @param v
+	 *            one vertex
+	 * @param w
+	 *            the other vertex
+	 * @return true if they are in the same component
+	 */
+	public boolean connected(int v, int w) {
+		return id(v) == id(w);
+	}
+
+	/**
+	 * Returns the number of vertices in the component of <tt>v</tt>.
+	 * 
+	 * @param v
+	 *            the vertex
+	 * @return the number of vertices, <tt>v</tt> included
+	 */
+	public int size(int v) {
+		return size[id(v)];
+	}
+
+	/**
+	 * Returns the number of actors in the component of <tt>v</tt>.
+	 * 
+	 * @param v
+	 *            the vertex
+	 * @return the number of actors
+	 */
+	public int actors(int v) {
+		return actors[id(v)];
+	}
+
+	/**
+	 * Returns the component with the most actors. Of components tied when
+	 * the graph was loaded, it is the one with the lowest representative.
+	 * 
+	 * @return the representative vertex of the giant component, or -1 if the
+	 *         graph has no vertices
+	 */
+	public int giant() {
+		return giant;
+	}
+
+	/**
+	 * Returns the share of all actors that are in the giant component.
+	 * 
+	 * @return the share, between 0 and 1; 0 if there are no actors
+	 */
+	public double giantShare() {
+		if (actorCount == 0)
+			return 0;
+		return (double) actors[giant] / actorCount;
+	}
+
+	/**
+	 * Returns the number of actors in each component, largest first.
+	 * Components with no actors, such as a movie with no cast, are left out.
+	 * 
+	 * @return the actor counts
+	 */
+	public int[] actorCounts() {
+		int n = 0;
+		for (int v = 0; v < V; v++) {
+			if (parent[v] == v && actors[v] > 0)
+				n++;
+		}
+		int[] counts = new int[n];
+		n = 0;
+		for (int v = 0; v < V; v++) {
+			if (parent[v] == v && actors[v] > 0)
+				counts[n++] = -actors[v]; // negated to sort descending
+		}
+		Arrays.sort(counts);
+		for (int i = 0; i < n; i++) {
+			counts[i] = -counts[i];
+		}
+		return counts;
+	}
+
+	/**
+	 * Adds a vertex, in a component of its own, as the next vertex of the
+	 * graph.
+	 * 
+	 * @param isActor
+	 *            true if the vertex is an actor, false if it is a movie
+	 * @return the new vertex
+	 */
+	public int addVertex(boolean isActor) {
+		if (V == parent.length) {
+			int n = Math.max(16, 2 * V);
+			parent = Arrays.copyOf(parent, n);
+			size = Arrays.copyOf(size, n);
+			actors = Arrays.copyOf(actors, n);
+		}
+		parent[V] = V;
+		size[V] = 1;
+		actors[V] = isActor ? 1 : 0;
+		if (isActor)
+			actorCount++;
+		count++;
+		if (giant < 0 || actors[V] > actors[giant])
+			giant = V;
+		return V++;
+	}
+
+	/**
+	 * Adds an edge, merging the components of its ends.
+	 * 
+	 * @param v
+	 *            one end of the edge
+	 * @param w
+	 *            the other end
+	 */
+	public void addEdge(int v, int w) {
+		int r = union(v, w);
+		// the merged component holds the giant's actors if it held the giant
+		if (actors[r] > actors[giant] || id(giant) == r)
+			giant = r;
+	}
+
+	// follows the links up to v's representative, halving the path
+	private int find(int v) {
+		while (parent[v] != v) {
+			parent[v] = parent[parent[v]];
+			v = parent[v];
+		}
+		return v;
+	}
+
+	// merges the components of v and w, the smaller under the larger, and
+	// returns the representative of the merged component
+	private int union(int v, int w) {
+		int r = find(v);
+		int s = find(w);
+		if (r == s)
+			return r;
+		if (size[r] < size[s]) {
+			int t = r;
+			r = s;
+			s = t;
+		}
+		parent[s] = r;
+		size[r] += size[s];
+		actors[r] += actors[s];
+		count--;
+		return r;
+	}
+}
@@ -0,0 +1,193 @@
+import java.util.Arrays;
+
+/**
+ * The <tt>DegreeRanking</tt> class ranks the actors and the movies of a
+ * {@link SymbolGraph} by degree: actors by how many movies they have been in,
+ * movies by how many performers they have. Each kind of vertex is sorted once,
+ * when the ranking is built, so the top <em>n</em> of either kind is a slice
+ * of an array and takes time proportional to <em>n</em>.
+ * <p>
+ * Vertices of equal degree are ranked by vertex index, lowest first, which is
+ * the order their names first appear in the cast list.
+ * <p>
+ * Each kind is kept as a sorted array of keys, one per vertex, with the
+ * inverted degree in the high half and the index in the low half. When a
+ * vertex gains edges or a vertex is added, its key is found by binary search
+ * and moved to its new place, shifting only the keys in between, so the
+ * ranking follows a growing graph without being sorted again.
+ *
+ * @author Cameron Stanavige
+ */
+public class DegreeRanking {
+	private long[] actors; // keys of actor vertices, most movies first
+	private long[] movies; // keys of movie vertices, most performers first
+	private int actorCount;
+	private int movieCount;
+
+	/**
+	 * Ranks the vertices of <tt>G</tt>.
+	 * 
+	 * @param G
+	 *            the graph
+	 * @param isActor
+	 *            isActor[v] is true if vertex v is an actor, false if it is a
+	 *            movie
+	 */
+	public DegreeRanking(Graph G, boolean[] isActor) {
+		for (int v = 0; v < G.V(); v++) {
+			if (isActor[v])
+				actorCount++;
+		}
+		movieCount = G.V() - actorCount;
+		actors = rank(G, isActor, true, actorCount);
+		movies = rank(G, isActor, false, movieCount);
+	}
+
+	/**
+	 * Returns the number of actors.
+	 * 
+	 * @return the number of actors
+	 */
+	public int actorCount() {
+		return actorCount;
+	}
+
+	/**
+	 * Returns the number of movies.
+	 * 
+	 * @return the number of movies
+	 */
+	public int movieCount() {
+		return movieCount;
+	}
+
+	/**
+	 * Returns the actor of the given rank.
+	 * 
+	 * @param rank
+	 *            the rank, 0 for the actor in the most movies
+	 * @return the vertex of the actor
+	 * @throws java.lang.IndexOutOfBoundsException
+	 *             unless 0 <= rank < actorCount()
+	 */
+	public int actor(int rank) {
+		if (rank >= actorCount)
+			throw new IndexOutOfBoundsException("rank " + rank
+					+ " is not between 0 and " + (actorCount - 1));
+		return (int) actors[rank];
+	}
+
+	/**
+	 * Returns the movie of the given rank.
+	 * 
+	 * @param rank
+	 *            the rank, 0 for the movie with the most performers
+	 * @return the vertex of the movie
+	 * @throws java.lang.IndexOutOfBoundsException
+	 *             unless 0 <= rank < movieCount()
+	 */
+	public int movie(int rank) {
+		if (rank >= movieCount)
+			throw new IndexOutOfBoundsException("rank " + rank
+					+ " is not between 0 and " + (movieCount - 1));
+		return (int) movies[rank];
+	}
+
+	/**
+	 * Ranks a vertex that has just been added to the graph.
+	 * 
+	 * @param v
+	 *            the new vertex
+	 * @param actor
+	 *            true if it is an actor, false if it is a movie
+	 * @param degree
+	 *            its degree
+	 */
+	public void add(int v, boolean actor, int degree) {
+		if (actor) {
+			if (actorCount == actors.length)
+				actors = Arrays.copyOf(actors, Math.max(16, 2 * actorCount));
+			actorCount = insert(actors, actorCount, key(v, degree));
+		} else {
+			if (movieCount == movies.length)
+				movies = Arrays.copyOf(movies, Math.max(16, 2 * movieCount));
+			movieCount = insert(movies, movieCount, key(v, degree));
+		}
+	}
+
+	/**
+	 * Moves a vertex whose degree has changed to its new rank.
+	 * 
+	 * @param v
+	 *            the vertex
+	 * @param actor
+	 *            true if it is an actor, false if it is a movie
+	 * @param oldDegree
+	 *            the degree it was ranked with
+	 * @param newDegree
+	 *            its degree now
+	 * @throws java.lang.IllegalArgumentException
+	 *             if the vertex is not ranked with <tt>oldDegree</tt>
+	 */
+	public void update(int v, boolean actor, int oldDegree, int newDegree) {
+		long[] keys = actor ? actors : movies;
+		int count = actor ? actorCount : movieCount;
+		int from = Arrays.binarySearch(keys, 0, count, key(v, oldDegree));
+		if (from < 0)
+			throw new IllegalArgumentException("vertex " + v
+					+ " is not ranked with degree " + oldDegree);
+		if (newDegree == oldDegree) // already in place
+			return;
+		long key = key(v, newDegree);
+		int to = -Arrays.binarySearch(keys, 0, count, key) - 1;
+		// shift the keys in between over the old place
+		if (to > from) {
+			to--;
+			System.arraycopy(keys, from + 1, keys, from, to - from);
+		} else {
+			System.arraycopy(keys, to, keys, to + 1, from - to);
+		}
+		keys[to] = key;
+	}
+
+	/**
+	 * Private Method: Sorts the vertices of one kind by degree, highest first,
+	 * then by index. Each vertex is packed into a long with the inverted
+	 * degree in the high half and the index in the low half, so a single
+	 * primitive sort puts them in rank order.
+	 * 
+	 * @param G
+	 *            The graph.
+	 * @param isActor
+	 *            Which vertices are actors.
+	 * @param actor
+	 *            True to rank the actors, false to rank the movies.
+	 * @param count
+	 *            The number of vertices of that kind.
+	 * @return The keys of the vertices of that kind, in rank order.
+	 */
+	private static long[] rank(Graph G, boolean[] isActor, boolean actor,
+			int count) {
+		long[] keys = new long[count];
+		int k = 0;
+		for (int v = 0; v < G.V(); v++) {
+			if (isActor[v] == actor)
+				keys[k++] = key(v, G.degree(v));
+		}
+		Arrays.sort(keys);
+		return keys;
+	}
+
+	// sorts higher degrees first, then lower indices
+	private static long key(int v, int degree) {
+		return ((long) (Integer.MAX_VALUE - degree) << 32) | v;
+	}
+
+	// inserts a key into keys[0..count), which has room for it
+	private static int insert(long[] keys, int count, long key) {
+		int i = -Arrays.binarySearch(keys, 0, count, key) - 1;
+		System.arraycopy(keys, i, keys, i + 1, count - i);
+		keys[i] = key;
+		return count + 1;
+	}
+}
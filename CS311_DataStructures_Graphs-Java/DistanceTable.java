@@ -0,0 +1,206 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The <tt>DistanceTable</tt> class holds the result of one full breadth-first
+ * search of a {@link Graph}: the distance from a source vertex to every
+ * vertex, and the vertex before each one on a shortest path back to the
+ * source. Once it is built, the distance to any vertex is found in constant
+ * time and a shortest path in time proportional to its length.
+ * <p>
+ * {@link SymbolGraph} builds these for the source actors it has pinned, such
+ * as "Bacon, Kevin", so the queries that start there do not search at all.
+ * A table is only changed by {@link #update(Graph, int[])}, as the graph
+ * grows, so apart from that it can be shared between threads. On a large
+ * graph the search can be split across a pool's threads
+ * by {@link ParallelBfs}; the distances are the same, though the links may
+ * pick a different one of several shortest paths.
+ *
+ * @author Cameron Stanavige
+ */
+public class DistanceTable {
+	private final int source;
+	private int[] distance; // distance[v] = edges from source, or -1
+	private int[] parent; // parent[v] = previous vertex toward source
+
+	/**
+	 * Computes the distance from <tt>source</tt> to every vertex of
+	 * <tt>G</tt>.
+	 * 
+	 * @param G
+	 *            the graph
+	 * @param source
+	 *            the source vertex
+	 * @throws java.lang.IndexOutOfBoundsException
+	 *             unless 0 <= source < V
+	 */
+	public DistanceTable(Graph G, int source) {
+		if (source < 0 || source >= G.V())
+			throw new IndexOutOfBoundsException("vertex " + source
+					+ " is not between 0 and " + (G.V() - 1));
+		this.source = source;
+		distance = new int[G.V()];
+		parent = new int[G.V()];
+		Arrays.fill(distance, -1);
+		distance[source] = 0;
+		parent[source] = source;
+		int[] queue = new int[G.V()];
+		queue[0] = source;
+		search(G, queue, 1);
+	}
+
+	/**
+	 * Computes the distance from <tt>source</tt> to every vertex of
+	 * <tt>G</tt> with a parallel search on <tt>pool</tt>.
+	 * 
+	 * @param G
+	 *            the graph
+	 * @param source
+	 *            the source vertex
+	 * @param pool
+	 *            the pool to search on
+	 * @throws java.lang.IndexOutOfBoundsException
+	 *             unless 0 <= source < V
+	 */
+	public DistanceTable(Graph G, int source, ForkJoinPool pool) {
+		ParallelBfs bfs = new ParallelBfs(G, source, pool);
+		this.source = source;
+		distance = bfs.distances();
+		parent = bfs.parents();
+	}
+
+	/**
+	 * Returns the source vertex.
+	 * 
+	 * @return the source vertex
+	 */
+	public int source() {
+		return source;
+	}
+
+	/**
+	 * Is there a path from the source to <tt>v</tt>?
+	 * 
+	 * @param v
+	 *            the vertex
+	 * @return true if <tt>v</tt> can be reached from the source
+	 */
+	public boolean hasPathTo(int v) {
+		return distance[v] >= 0;
+	}
+
+	/**
+	 * Returns the number of edges on a shortest path from the source to
+	 * <tt>v</tt>.
+	 * 
+	 * @param v
+	 *            the vertex
+	 * @return the distance to <tt>v</tt>, or -1 if there is no path
+	 */
+	public int distance(int v) {
+		return distance[v];
+	}
+
+	/**
+	 * Returns the vertex before <tt>v</tt> on a shortest path from the source.
+	 * 
+	 * @param v
+	 *            a vertex that can be reached from the source
+	 * @return the next vertex toward the source (the source itself if
+	 *         <tt>v</tt> is the source)
+	 */
+	public int parent(int v) {
+		return parent[v];
+	}
+
+	/**
+	 * Counts the marked vertices at each distance from the source.
+	 * 
+	 * @param marked
+	 *            which vertices to count
+	 * @return an array whose entry <tt>d</tt> is the number of marked vertices
+	 *         at distance <tt>d</tt>; unreachable vertices are not counted
+	 */
+	public int[] histogram(boolean[] marked) {
+		int max = 0;
+		for (int v = 0; v < distance.length; v++) {
+			if (marked[v])
+				max = Math.max(max, distance[v]);
+		}
+		int[] counts = new int[max + 1];
+		for (int v = 0; v < distance.length; v++) {
+			if (marked[v] && distance[v] >= 0)
+				counts[distance[v]]++;
+		}
+		return counts;
+	}
+
+	/**
+	 * Brings the table up to date after vertices and edges have been added to
+	 * the graph. Adding edges can only shorten paths, so the search starts
+	 * again only from the ends of the new edges, and only goes on through
+	 * vertices that it brings closer to the source; the rest of the table is
+	 * kept. New vertices start out unreachable. The table must not be read
+	 * while it is being updated.
+	 * 
+	 * @param G
+	 *            the graph, after the additions
+	 * @param touched
+	 *            every vertex that an added edge ends at
+	 */
+	public void update(Graph G, int[] touched) {
+		int old = distance.length;
+		if (G.V() > old) {
+			distance = Arrays.copyOf(distance, G.V());
+			parent = Arrays.copyOf(parent, G.V());
+			Arrays.fill(distance, old, G.V(), -1);
+		}
+		// start from the reachable ends, nearest first, so the queue stays
+		// in order of distance
+		long[] starts = new long[touched.length];
+		int n = 0;
+		for (int v : touched) {
+			if (distance[v] >= 0)
+				starts[n++] = ((long) distance[v] << 32) | v;
+		}
+		Arrays.sort(starts, 0, n);
+		int[] queue = new int[16]; // grows as the change spreads
+		int[] targets = G.targets();
+		int head = 0, tail = 0;
+		for (int s = 0; s < n || head < tail;) {
+			int v;
+			if (s < n && (head == tail
+					|| (int) (starts[s] >>> 32) <= distance[queue[head]]))
+				v = (int) starts[s++];
+			else
+				v = queue[head++];
+			for (int i = G.adjStart(v), end = i + G.degree(v); i < end; i++) {
+				int w = targets[i];
+				if (distance[w] < 0 || distance[w] > distance[v] + 1) {
+					distance[w] = distance[v] + 1;
+					parent[w] = v;
+					if (tail == queue.length)
+						queue = Arrays.copyOf(queue, 2 * queue.length);
+					queue[tail++] = w;
+				}
+			}
+		}
+	}
+
+	// breadth-first search from the vertices in queue[0..tail), whose
+	// distances are already set
+	private void search(Graph G, int[] queue, int tail) {
+		int[] targets = G.targets();
+		for (int head = 0; head < tail; head++) {
+			int v = queue[head];
+			for (int i = G.adjStart(v), end = i + G.degree(v); i < end; i++) {
+				int w = targets[i];
+				if (distance[w] < 0) {
+					distance[w] = distance[v] + 1;
+					parent[w] = v;
+					queue[tail++] = w;
+				}
+			}
+		}
+	}
+}
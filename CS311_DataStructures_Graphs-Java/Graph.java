@@ -1,4 +1,6 @@
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 //
 //Graph.java
@@ -49,10 +51,29 @@ import java.util.Arrays;
  * It also provides methods for returning the number of vertices <em>V</em> and
  * the number of edges <em>E</em>. Parallel edges and self-loops are permitted.
  * <p>
- * This implementation uses an adjacency-lists representation, which is a
- * vertex-indexed array of {@link Bag} objects. All operations take constant
- * time (in the worst case) except iterating over the vertices adjacent to a
- * given vertex, which takes time proportional to the number of such vertices.
+ * This implementation uses a compressed-sparse-row representation: the
+ * vertices adjacent to <em>v</em> are stored contiguously in a single
+ * <tt>int[]</tt> targets array, starting at <tt>start[v]</tt> and running for
+ * <tt>degree[v]</tt> entries. Edges are buffered as vertex pairs while the
+ * graph is being built, and the first call to {@link #freeze()} (or to any
+ * method that reads the adjacency lists) packs them into the arrays. All
+ * operations take constant time (in the worst case) except iterating over the
+ * vertices adjacent to a given vertex, which takes time proportional to the
+ * number of such vertices, and freezing, which takes time proportional to
+ * <em>V</em> + <em>E</em>.
+ * <p>
+ * A frozen graph can still grow. {@link #addVertex()} appends a vertex, and an
+ * edge added after freezing goes at the end of both of its adjacency lists. A
+ * list that is full is moved to the end of the targets array with room to
+ * double, so adding an edge takes constant amortized time; the space left
+ * behind is reclaimed by packing all the lists again when the array fills
+ * up. The graph must not be read while it is growing: a reader that walks
+ * the lists while a writer adds to them may see a moved list or a stale
+ * array.
+ * <p>
+ * Hot loops should use {@link #adjStart(int)}, {@link #degree(int)} and
+ * {@link #targets()} to walk an adjacency list without boxing; {@link #adj(int)}
+ * is kept for convenience.
  * <p>
  * For additional documentation, see <a
  * href="http://algs4.cs.princeton.edu/41undirected">Section 4.1</a> of
@@ -63,9 +84,16 @@ import java.util.Arrays;
  * @author Modified by Cameron Stanavige for a specific structure
  */
 public class Graph {
-	private final int V;
+	private int V;
 	private int E;
-	private Bag<Integer>[] adj;
+
+	private int[] start; // targets[start[v]] is the first vertex adjacent to v
+	private int[] degree; // degree[v] = vertices adjacent to v
+	private int[] room; // room[v] = capacity of v's list; null if all are full
+	private int[] targets; // adjacent vertices, grouped by vertex
+	private int used; // targets[used..] is free
+
+	private int[] edges; // v-w pairs added since construction, until frozen
 
 	/**
 	 * Initializes an empty graph with <tt>V</tt> vertices and 0 edges. param V
@@ -80,10 +108,80 @@ public class Graph {
 					"Number of vertices must be nonnegative");
 		this.V = V;
 		this.E = 0;
-		adj = (Bag<Integer>[]) new Bag[V];
+		edges = new int[16];
+	}
+
+	/**
+	 * Initializes a graph with <tt>V</tt> vertices whose <tt>E</tt> edges are
+	 * the pairs <tt>edges[2i]</tt>-<tt>edges[2i+1]</tt>, in the order they
+	 * would have been passed to {@link #addEdge(int, int)}. The array is taken
+	 * over by the graph rather than copied.
+	 * 
+	 * @param V
+	 *            the number of vertices
+	 * @param edges
+	 *            the endpoints of the edges, two entries per edge
+	 * @param E
+	 *            the number of edges
+	 * @throws java.lang.IndexOutOfBoundsException
+	 *             if the endpoints of any edge are not in prescribed range
+	 * @throws java.lang.IllegalArgumentException
+	 *             if the number of vertices or edges is negative, or
+	 *             <tt>edges</tt> holds fewer than <tt>E</tt> pairs
+	 */
+	public Graph(int V, int[] edges, int E) {
+		this(V);
+		if (E < 0)
+			throw new IllegalArgumentException(
+					"Number of edges must be nonnegative");
+		if (edges.length < 2 * E)
+			throw new IllegalArgumentException("Expected " + E
+					+ " edges but found " + edges.length / 2);
+		for (int e = 0; e < 2 * E; e++) {
+			validateVertex(edges[e]);
+		}
+		this.edges = edges;
+		this.E = E;
+	}
+
+	/**
+	 * Initializes a frozen graph from compressed-sparse-row arrays, as written
+	 * out by a snapshot. The vertices adjacent to <tt>v</tt> are
+	 * <tt>targets[offsets[v]]</tt> through <tt>targets[offsets[v+1] - 1]</tt>.
+	 * The arrays are taken over by the graph rather than copied.
+	 * 
+	 * @param offsets
+	 *            where each adjacency list starts, plus one entry for the end
+	 *            of the last list
+	 * @param targets
+	 *            the adjacency lists, one after the other
+	 * @throws java.lang.IllegalArgumentException
+	 *             if the offsets do not describe <tt>targets</tt>, or an
+	 *             adjacent vertex is not between 0 and <em>V</em> - 1
+	 */
+	Graph(int[] offsets, int[] targets) {
+		this(offsets.length - 1);
+		if (offsets[0] != 0 || offsets[V] != targets.length
+				|| targets.length % 2 != 0)
+			throw new IllegalArgumentException("Offsets do not match targets");
 		for (int v = 0; v < V; v++) {
-			adj[v] = new Bag<Integer>();
+			if (offsets[v] > offsets[v + 1])
+				throw new IllegalArgumentException("Offsets must not decrease");
 		}
+		for (int i = 0; i < targets.length; i++) {
+			if (targets[i] < 0 || targets[i] >= V)
+				throw new IllegalArgumentException("vertex " + targets[i]
+						+ " is not between 0 and " + (V - 1));
+		}
+		this.E = targets.length / 2;
+		this.start = Arrays.copyOf(offsets, V);
+		this.degree = new int[V];
+		for (int v = 0; v < V; v++) {
+			degree[v] = offsets[v + 1] - offsets[v];
+		}
+		this.targets = targets;
+		this.used = targets.length;
+		this.edges = null;
 	}
 
 	/**
@@ -119,17 +217,15 @@ public class Graph {
 	 */
 	public Graph(Graph G) {
 		this(G.V());
+		G.freeze();
 		this.E = G.E();
-		for (int v = 0; v < G.V(); v++) {
-			// reverse so that adjacency list is in same order as original
-			Stack<Integer> reverse = new Stack<Integer>();
-			for (int w : G.adj[v]) {
-				reverse.push(w);
-			}
-			for (int w : reverse) {
-				adj[v].add(w);
-			}
-		}
+		// copying the arrays keeps the adjacency lists in the same order
+		start = G.start.clone();
+		degree = G.degree.clone();
+		room = (G.room == null) ? null : G.room.clone();
+		targets = G.targets.clone();
+		used = G.used;
+		edges = null;
 	}
 
 	/**
@@ -158,7 +254,31 @@ public class Graph {
 	}
 
 	/**
-	 * Adds the undirected edge v-w to the graph.
+	 * Adds a vertex with no edges to the graph.
+	 * 
+	 * @return the new vertex, <em>V</em> - 1 of the grown graph
+	 */
+	public int addVertex() {
+		if (edges != null) // not frozen, so nothing to grow yet
+			return V++;
+		if (V == start.length) {
+			int n = Math.max(16, 2 * V);
+			start = Arrays.copyOf(start, n);
+			degree = Arrays.copyOf(degree, n);
+			if (room != null)
+				room = Arrays.copyOf(room, n);
+		}
+		start[V] = used;
+		degree[V] = 0;
+		if (room != null)
+			room[V] = 0;
+		return V++;
+	}
+
+	/**
+	 * Adds the undirected edge v-w to the graph. Before the graph is frozen
+	 * the edge is buffered; after, it is added to the end of the adjacency
+	 * lists of <tt>v</tt> and <tt>w</tt>.
 	 * 
 	 * @param v
 	 *            one vertex in the edge
@@ -170,13 +290,102 @@ public class Graph {
 	public void addEdge(int v, int w) {
 		validateVertex(v);
 		validateVertex(w);
+		if (edges == null) {
+			append(v, w);
+			append(w, v);
+			E++;
+			return;
+		}
+		if (2 * E + 2 > edges.length) {
+			edges = Arrays.copyOf(edges, 2 * edges.length);
+		}
+		edges[2 * E] = v;
+		edges[2 * E + 1] = w;
 		E++;
-		adj[v].add(w);
-		adj[w].add(v);
 	}
 
 	/**
-	 * Returns the vertices adjacent to vertex <tt>v</tt>.
+	 * Packs the edges added so far into the compressed-sparse-row arrays. Each
+	 * adjacency list holds the most recently added edge first, which is the
+	 * order the old bag-based lists were iterated in. Calling this method again
+	 * has no effect.
+	 */
+	public void freeze() {
+		if (edges == null)
+			return;
+		degree = new int[V];
+		for (int e = 0; e < 2 * E; e++) {
+			degree[edges[e]]++;
+		}
+		start = new int[V];
+		for (int v = 1; v < V; v++) {
+			start[v] = start[v - 1] + degree[v - 1];
+		}
+		// fill each list from its end so the newest edge comes first
+		int[] next = new int[V];
+		for (int v = 0; v < V; v++) {
+			next[v] = start[v] + degree[v];
+		}
+		targets = new int[2 * E];
+		for (int e = 0; e < 2 * E; e += 2) {
+			int v = edges[e];
+			int w = edges[e + 1];
+			targets[--next[v]] = w;
+			targets[--next[w]] = v;
+		}
+		used = 2 * E;
+		edges = null;
+	}
+
+	/**
+	 * Private Method: Adds a vertex to the end of a frozen adjacency list,
+	 * moving the list to the end of the targets array first if it is full.
+	 * 
+	 * @param v
+	 *            The vertex whose list grows.
+	 * @param w
+	 *            The vertex to add to it.
+	 */
+	private void append(int v, int w) {
+		if (room == null) // every list is packed full
+			room = Arrays.copyOf(degree, start.length);
+		if (degree[v] == room[v]) {
+			int capacity = Math.max(4, 2 * degree[v]);
+			if (used + capacity > targets.length)
+				pack(capacity);
+			System.arraycopy(targets, start[v], targets, used, degree[v]);
+			start[v] = used;
+			room[v] = capacity;
+			used += capacity;
+		}
+		targets[start[v] + degree[v]++] = w;
+	}
+
+	/**
+	 * Private Method: Packs the adjacency lists into a new targets array with
+	 * no gaps between them, leaving room at the end for lists to move to.
+	 * 
+	 * @param needed
+	 *            The free room the caller needs at the end.
+	 */
+	private void pack(int needed) {
+		int length = Math.max(16, 2 * (2 * E + 2 + needed));
+		int[] packed = new int[length];
+		int next = 0;
+		for (int v = 0; v < V; v++) {
+			System.arraycopy(targets, start[v], packed, next, degree[v]);
+			start[v] = next;
+			room[v] = degree[v];
+			next += degree[v];
+		}
+		targets = packed;
+		used = next;
+	}
+
+	/**
+	 * Returns the vertices adjacent to vertex <tt>v</tt>. Each vertex is boxed
+	 * as it is returned; see {@link #adjStart(int)} for the primitive way of
+	 * walking the list.
 	 * 
 	 * @return the vertices adjacent to vertex <tt>v</tt> as an Iterable
 	 * @param v
@@ -184,9 +393,14 @@ public class Graph {
 	 * @throws java.lang.IndexOutOfBoundsException
 	 *             unless 0 <= v < V
 	 */
-	public Iterable<Integer> adj(int v) {
+	public Iterable<Integer> adj(final int v) {
 		validateVertex(v);
-		return adj[v];
+		freeze();
+		return new Iterable<Integer>() {
+			public Iterator<Integer> iterator() {
+				return new AdjIterator(start[v], start[v] + degree[v]);
+			}
+		};
 	}
 
 	/**
@@ -200,7 +414,71 @@ public class Graph {
 	 */
 	public int degree(int v) {
 		validateVertex(v);
-		return adj[v].size();
+		freeze();
+		return degree[v];
+	}
+
+	/**
+	 * Returns the index in {@link #targets()} of the first vertex adjacent to
+	 * <tt>v</tt>. The <tt>degree(v)</tt> vertices adjacent to <tt>v</tt> are
+	 * stored from there on, so a client walks them with
+	 * 
+	 * <pre>
+	 * int[] targets = G.targets();
+	 * for (int i = G.adjStart(v), end = i + G.degree(v); i &lt; end; i++) {
+	 * 	int w = targets[i];
+	 * }
+	 * </pre>
+	 * 
+	 * @return the index of the first vertex adjacent to <tt>v</tt>
+	 * @param v
+	 *            the vertex
+	 * @throws java.lang.IndexOutOfBoundsException
+	 *             unless 0 <= v < V
+	 */
+	public int adjStart(int v) {
+		validateVertex(v);
+		freeze();
+		return start[v];
+	}
+
+	/**
+	 * Returns the array holding every adjacency list of the graph. It is the
+	 * client's responsibility not to mutate the array. A graph that has grown
+	 * since it was frozen may have gaps between its lists, and moves to a new
+	 * array as it grows, so the array must be fetched again after any change.
+	 * 
+	 * @return the adjacency lists, packed into one array of at least
+	 *         2<em>E</em> vertices
+	 */
+	public int[] targets() {
+		freeze();
+		return targets;
+	}
+
+	// an iterator over targets[i] .. targets[end - 1]
+	private class AdjIterator implements Iterator<Integer> {
+		private int i;
+		private final int end;
+
+		public AdjIterator(int start, int end) {
+			this.i = start;
+			this.end = end;
+		}
+
+		public boolean hasNext() {
+			return i < end;
+		}
+
+		public Integer next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			return targets[i++];
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
 	}
 
 	/**
@@ -211,13 +489,14 @@ public class Graph {
 	 *         edges <em>E</em>, followed by the <em>V</em> adjacency lists
 	 */
 	public String toString() {
+		freeze();
 		StringBuilder s = new StringBuilder();
 		String NEWLINE = System.getProperty("line.separator");
 		s.append(V + " vertices, " + E + " edges " + NEWLINE);
 		for (int v = 0; v < V; v++) {
 			s.append(v + ": ");
-			for (int w : adj[v]) {
-				s.append(w + " ");
+			for (int i = start[v], end = i + degree[v]; i < end; i++) {
+				s.append(targets[i] + " ");
 			}
 			s.append(NEWLINE);
 		}
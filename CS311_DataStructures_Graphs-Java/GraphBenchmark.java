@@ -0,0 +1,294 @@
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The <tt>GraphBenchmark</tt> class times the main {@link SymbolGraph}
+ * operations on a synthetic graph from a {@link MovieGraphGenerator}, and
+ * measures how much each one allocates.
+ * <p>
+ * Each benchmark is run for a number of warmup iterations, so that the JIT
+ * compiler has compiled it, and then for a number of measured iterations.
+ * For every measured iteration the time per operation and the bytes
+ * allocated per operation are recorded, the latter from the
+ * <tt>com.sun.management.ThreadMXBean</tt> where the JVM has one. The bytes
+ * are summed over every live thread, so the work the loaders and queries
+ * hand to the fork/join pool is counted; a thread that ends during an
+ * iteration, such as a read-ahead thread, takes its count with it, so the
+ * figure is a lower bound. The report gives the mean and the best of the
+ * iterations. Results are
+ * folded into a checksum that is printed at the end, so that the JIT cannot
+ * drop an operation whose result is unused. The generator and the queries
+ * are seeded, so every run does the same work.
+ *
+ * <pre>
+ *  % java GraphBenchmark [actors [movies [edges [warmup [iterations]]]]]
+ *  graph: 127390 vertices, 400000 edges, 8919135 bytes of cast list
+ *  B/op: every live thread; threads that end during an iteration are not counted
+ *  benchmark                       ops    ns/op (mean)    ns/op (best)         B/op
+ *  load (stream)                     1       292590356       263099921     29737344
+ *  ...
+ * </pre>
+ *
+ * @author Cameron Stanavige
+ */
+public class GraphBenchmark {
+	private final int warmup;
+	private final int iterations;
+	private long checksum; // results folded in, so none is dead code
+
+	/**
+	 * Sets up a run.
+	 * 
+	 * @param warmup
+	 *            the iterations run before measuring
+	 * @param iterations
+	 *            the iterations measured
+	 */
+	public GraphBenchmark(int warmup, int iterations) {
+		this.warmup = warmup;
+		this.iterations = iterations;
+	}
+
+	/**
+	 * One benchmark: an operation run some number of times per iteration.
+	 */
+	public static abstract class Benchmark {
+		private final String name;
+		private final int ops;
+
+		/**
+		 * Names a benchmark.
+		 * 
+		 * @param name
+		 *            the name to report
+		 * @param ops
+		 *            the operations per iteration
+		 */
+		protected Benchmark(String name, int ops) {
+			this.name = name;
+			this.ops = ops;
+		}
+
+		/**
+		 * Runs the operation once.
+		 * 
+		 * @param i
+		 *            the number of the operation in this iteration, to vary
+		 *            its input
+		 * @return a value derived from the result
+		 * @throws Exception
+		 *             if the operation fails
+		 */
+		protected abstract long run(int i) throws Exception;
+	}
+
+	/**
+	 * Runs a benchmark and prints its line of the report.
+	 * 
+	 * @param benchmark
+	 *            the benchmark
+	 * @throws Exception
+	 *             if an operation fails
+	 */
+	public void measure(Benchmark benchmark) throws Exception {
+		for (int it = 0; it < warmup; it++) {
+			iteration(benchmark);
+		}
+		double mean = 0, best = Double.MAX_VALUE, bytes = 0;
+		for (int it = 0; it < iterations; it++) {
+			long allocated = allocatedBytes();
+			long start = System.nanoTime();
+			iteration(benchmark);
+			double ns = (double) (System.nanoTime() - start) / benchmark.ops;
+			bytes += (double) (allocatedBytes() - allocated) / benchmark.ops;
+			mean += ns;
+			best = Math.min(best, ns);
+		}
+		mean /= iterations;
+		bytes /= iterations;
+		System.out.printf("%-28s %6d %15.0f %15.0f %12s%n", benchmark.name,
+				benchmark.ops, mean, best, (allocatedBytes() < 0) ? "n/a"
+						: String.format("%.0f", bytes));
+	}
+
+	/**
+	 * Returns the checksum of every result so far.
+	 * 
+	 * @return the checksum
+	 */
+	public long checksum() {
+		return checksum;
+	}
+
+	// runs one iteration of a benchmark
+	private void iteration(Benchmark benchmark) throws Exception {
+		long sum = 0;
+		for (int i = 0; i < benchmark.ops; i++) {
+			sum = 31 * sum + benchmark.run(i);
+		}
+		checksum += sum;
+	}
+
+	/**
+	 * Private Method: Returns the bytes the live threads have allocated so
+	 * far, the pool threads that run the parallel loaders and queries
+	 * included.
+	 * 
+	 * @return The bytes, or -1 if the JVM does not count them.
+	 */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory
+				.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		long[] bytes = ((com.sun.management.ThreadMXBean) bean)
+				.getThreadAllocatedBytes(bean.getAllThreadIds());
+		long sum = 0;
+		for (long b : bytes) {
+			if (b > 0) // -1 for a thread that has ended
+				sum += b;
+		}
+		return sum;
+	}
+
+	/**
+	 * Generates a graph and benchmarks loading it and querying it. The JVM's
+	 * options, such as a different collector or heap size, are left to the
+	 * command line, so that runs can be compared.
+	 * 
+	 * @param args
+	 *            the actors, movies and edges of the graph, then the warmup
+	 *            and measured iterations, all optional
+	 * @throws Exception
+	 *             if an operation fails
+	 */
+	public static void main(String[] args) throws Exception {
+		int actors = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+		int movies = (args.length > 1) ? Integer.parseInt(args[1]) : 30000;
+		int edges = (args.length > 2) ? Integer.parseInt(args[2]) : 4 * actors;
+		int warmup = (args.length > 3) ? Integer.parseInt(args[3]) : 5;
+		int iterations = (args.length > 4) ? Integer.parseInt(args[4]) : 10;
+
+		final byte[] castList = new MovieGraphGenerator(actors, movies, edges,
+				1.0, 0.8, 42).toBytes();
+		final SymbolGraph sg = load(castList);
+		System.out.printf(
+				"graph: %d vertices, %d edges, %d bytes of cast list%n", sg
+						.G().V(), sg.G().E(), castList.length);
+		System.out.println("B/op: every live thread; threads that end during"
+				+ " an iteration are not counted");
+		System.out.printf("%-28s %6s %15s %15s %12s%n", "benchmark", "ops",
+				"ns/op (mean)", "ns/op (best)", "B/op");
+
+		// the same query pairs every run
+		Random random = new Random(7);
+		final String[] from = new String[1024];
+		final String[] to = new String[1024];
+		for (int i = 0; i < from.length; i++) {
+			from[i] = MovieGraphGenerator.actorName(random.nextInt(actors));
+			to[i] = MovieGraphGenerator.actorName(random.nextInt(actors));
+		}
+
+		// the file SymbolGraph.open reads, and the snapshot it writes
+		final File file = File.createTempFile("graph-benchmark", ".txt");
+		final File snapshot = new File(file.getPath()
+				+ SymbolGraph.SNAPSHOT_SUFFIX);
+		file.deleteOnExit();
+		snapshot.deleteOnExit();
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(castList);
+		} finally {
+			out.close();
+		}
+
+		GraphBenchmark run = new GraphBenchmark(warmup, iterations);
+		run.measure(new Benchmark("load (stream)", 1) {
+			protected long run(int i) throws IOException {
+				return load(castList).G().E();
+			}
+		});
+		// the parallel loader, and writing the snapshot for the next start
+		run.measure(new Benchmark("open (parse)", 1) {
+			protected long run(int i) throws IOException {
+				snapshot.delete();
+				return SymbolGraph.open(file.getPath(), "\\|").G().E();
+			}
+		});
+		// the snapshot the last open wrote
+		run.measure(new Benchmark("open (snapshot)", 1) {
+			protected long run(int i) throws IOException {
+				return SymbolGraph.open(file.getPath(), "\\|").G().E();
+			}
+		});
+		run.measure(new Benchmark("getKBNumber", 256) {
+			protected long run(int i) throws Exception {
+				try {
+					return sg.getKBNumber(from[i], to[i], false).size();
+				} catch (PathNotFoundException e) {
+					return -1;
+				}
+			}
+		});
+		run.measure(new Benchmark("getPerformersMovies", 1024) {
+			protected long run(int i) {
+				// the names are in Last, First format; the query wants First
+				// Last, which it reformats back
+				String[] parts = from[i].split(", ");
+				return sg.getPerformersMovies(parts[1] + " " + parts[0])
+						.size();
+			}
+		});
+		run.measure(new Benchmark("topPerformers(100)", 1024) {
+			protected long run(int i) {
+				return top(sg.topPerformers(100));
+			}
+		});
+		run.measure(new Benchmark("topMovies(100)", 1024) {
+			protected long run(int i) {
+				return top(sg.topMovies(100));
+			}
+		});
+		// the first call builds the co-star projection, which the rest read
+		run.measure(new Benchmark("findTopActorPairings", 1) {
+			protected long run(int i) {
+				return sg.findTopActorPairings().size();
+			}
+		});
+		// the search done when there is no projection
+		final DegreeRanking ranking = new DegreeRanking(sg.G(),
+				actorMarks(sg));
+		run.measure(new Benchmark("ActorPairings (no co-stars)", 1) {
+			protected long run(int i) {
+				return new ActorPairings(sg.G(), ranking, ForkJoinPool
+						.commonPool()).size();
+			}
+		});
+		System.out.println("checksum " + run.checksum());
+	}
+
+	// loads a cast list held in memory
+	private static SymbolGraph load(byte[] castList) throws IOException {
+		return new SymbolGraph(new ByteArrayInputStream(castList), "|");
+	}
+
+	// the length of the first name, so the list is read
+	private static long top(List<String> names) {
+		return names.isEmpty() ? 0 : names.get(0).length();
+	}
+
+	private static boolean[] actorMarks(SymbolGraph sg) {
+		boolean[] marks = new boolean[sg.G().V()];
+		for (int v = 0; v < marks.length; v++) {
+			marks[v] = sg.isActor(v);
+		}
+		return marks;
+	}
+}
@@ -0,0 +1,500 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The <tt>GraphServer</tt> class answers queries on a {@link SymbolGraph}
+ * over HTTP, so that the graph is loaded once and queried by any number of
+ * clients, from any language. Every answer is JSON:
+ *
+ * <pre>
+ *  GET /movies?performer=Sean+Connery        the performer's movies
+ *  GET /resolve?name=Sean+Conery[&amp;n=10]     the actors whose names are
+ *                                            closest, for a misspelled name
+ *  GET /bacon?actor=Tom+Hanks[&amp;to=...]       the Bacon number and its movies;
+ *                                            to is Kevin Bacon by default
+ *  GET /top/performers?n=10                  the performers in most movies
+ *  GET /top/movies?n=10                      the movies with most performers
+ *  GET /top/pairings[?n=...]                 the actors sharing most movies
+ *  GET /metrics                              the graph's QueryMetrics
+ * </pre>
+ *
+ * A missing or malformed parameter is answered with 400, an unknown actor or
+ * an unconnected pair with 404, each with an <tt>"error"</tt> member. Any
+ * other failure is logged on the server and answered with 500 and a fixed
+ * message, so that no internal detail reaches the client.
+ * <p>
+ * Each request runs on a thread of its own: a virtual thread where the JVM
+ * has them (Java 21 and later), found by reflection so that this class still
+ * compiles and runs on older JVMs, which get a fixed pool of platform threads
+ * instead. Queries only read the graph, so they run side by side without
+ * locking. At most a fixed number of requests are in flight at once, by
+ * default as many as there is memory for the searches of;
+ * beyond that the server stops taking connections off the accept queue until
+ * one finishes, so a flood of clients waits in the kernel rather than in the
+ * heap.
+ * Lists are cut at {@link #MAX_RESULTS} entries, so no answer is unbounded.
+ *
+ * <pre>
+ *  % java GraphServer movies.txt 8080
+ *  Serving movies.txt on http://127.0.0.1:8080/ (virtual threads)
+ *  % curl 'http://127.0.0.1:8080/bacon?actor=Tom+Hanks'
+ *  {"from":"Tom Hanks","to":"Kevin Bacon","baconNumber":1,"movies":["Apollo 13 (1995)"]}
+ * </pre>
+ *
+ * @author Cameron Stanavige
+ */
+public class GraphServer {
+	/**
+	 * The most entries in any list returned.
+	 */
+	public static final int MAX_RESULTS = 1000;
+
+	/**
+	 * The most requests in flight at once, unless another limit is given or
+	 * {@link #maxInFlight(SymbolGraph)} finds too little memory for them.
+	 */
+	public static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String KEVIN_BACON = "Kevin Bacon";
+	private static final Logger LOG = Logger.getLogger(GraphServer.class
+			.getName());
+
+	private final SymbolGraph sg;
+	private final HttpServer server;
+	private final ExecutorService workers;
+	private final boolean virtual; // true if workers makes virtual threads
+
+	/**
+	 * Sets up a server for a graph; {@link #start()} starts it.
+	 * 
+	 * @param sg
+	 *            the graph to query; movies added to it while the server runs
+	 *            are seen by the requests that follow
+	 * @param address
+	 *            the address to listen on; port 0 picks a free port
+	 * @param maxInFlight
+	 *            the most requests handled at once
+	 * @throws IOException
+	 *             if the address cannot be bound
+	 * @throws java.lang.IllegalArgumentException
+	 *             if maxInFlight is less than 1
+	 */
+	public GraphServer(SymbolGraph sg, InetSocketAddress address,
+			int maxInFlight) throws IOException {
+		if (maxInFlight < 1)
+			throw new IllegalArgumentException(
+					"Need at least one request in flight: " + maxInFlight);
+		this.sg = sg;
+		ExecutorService threads = virtualThreads();
+		virtual = threads != null;
+		if (!virtual)
+			threads = Executors.newFixedThreadPool(
+					Math.min(maxInFlight, 4 * Runtime.getRuntime()
+							.availableProcessors()), new ThreadFactory() {
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "graph-server");
+							t.setDaemon(true);
+							return t;
+						}
+					});
+		workers = threads;
+		server = HttpServer.create(address, 0); // the system's backlog
+		server.setExecutor(new BoundedExecutor(workers, maxInFlight));
+		server.createContext("/movies", new Endpoint() {
+			String answer(Map<String, String> params)
+					throws ActorNotFoundException {
+				return movies(required(params, "performer"));
+			}
+		});
+		server.createContext("/resolve", new Endpoint() {
+			String answer(Map<String, String> params) {
+				return array(sg.resolve(required(params, "name"),
+						count(params, 10)));
+			}
+		});
+		server.createContext("/bacon", new Endpoint() {
+			String answer(Map<String, String> params)
+					throws ActorNotFoundException, PathNotFoundException {
+				String to = params.get("to");
+				return bacon(required(params, "actor"), (to == null) ? KEVIN_BACON
+						: to);
+			}
+		});
+		server.createContext("/top/performers", new Endpoint() {
+			String answer(Map<String, String> params) {
+				return array(sg.topPerformers(count(params, 10)));
+			}
+		});
+		server.createContext("/top/movies", new Endpoint() {
+			String answer(Map<String, String> params) {
+				return array(sg.topMovies(count(params, 10)));
+			}
+		});
+		server.createContext("/top/pairings", new Endpoint() {
+			String answer(Map<String, String> params) {
+				return pairings(count(params, MAX_RESULTS));
+			}
+		});
+		server.createContext("/metrics", new Endpoint() {
+			String answer(Map<String, String> params) {
+				return metrics();
+			}
+		});
+	}
+
+	/**
+	 * Starts answering requests, on threads of the server's own.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stops the server, letting the requests in flight finish.
+	 * 
+	 * @param delay
+	 *            the most seconds to wait for them
+	 */
+	public void stop(int delay) {
+		server.stop(delay);
+		workers.shutdown();
+	}
+
+	/**
+	 * Returns the address the server listens on, with the port it was given
+	 * if it asked for port 0.
+	 * 
+	 * @return the address
+	 */
+	public InetSocketAddress address() {
+		return server.getAddress();
+	}
+
+	/**
+	 * Does the server run each request on a virtual thread?
+	 * 
+	 * @return true on virtual threads, false on a pool of platform threads
+	 */
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	// the performer's movies
+	private String movies(String performer) throws ActorNotFoundException {
+		List<String> movies = sg.findPerformersMovies(performer);
+		return "{\"performer\":" + quote(performer) + ",\"movies\":"
+				+ array(movies) + "}";
+	}
+
+	// the movies between two actors
+	private String bacon(String from, String to) throws ActorNotFoundException,
+			PathNotFoundException {
+		List<String> movies = sg.getKBNumber(from, to, true);
+		return "{\"from\":" + quote(from) + ",\"to\":" + quote(to)
+				+ ",\"baconNumber\":" + movies.size() + ",\"movies\":"
+				+ array(movies) + "}";
+	}
+
+	// the first n top pairings
+	private String pairings(int n) {
+		List<Colleagues> top = sg.findTopActorPairings();
+		StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < top.size() && i < n; i++) {
+			Colleagues pair = top.get(i);
+			if (i > 0)
+				json.append(',');
+			json.append("{\"actor1\":").append(quote(pair.actor1))
+					.append(",\"actor2\":").append(quote(pair.actor2))
+					.append(",\"moviesShared\":").append(pair.numMoviesShared)
+					.append('}');
+		}
+		return json.append(']').toString();
+	}
+
+	// the query counts and latencies, in microseconds
+	private String metrics() {
+		QueryMetrics metrics = sg.metrics();
+		StringBuilder json = new StringBuilder("{");
+		for (int q = 0; q < QueryMetrics.QUERIES.length; q++) {
+			LogHistogram latency = metrics.latency(q);
+			json.append(quote(QueryMetrics.QUERIES[q])).append(":{\"count\":")
+					.append(latency.count()).append(",\"meanMicros\":")
+					.append((long) latency.mean() / 1000)
+					.append(",\"p99Micros\":")
+					.append(latency.percentile(99) / 1000).append("},");
+		}
+		return json.append("\"cacheHitRate\":")
+				.append(metrics.getCacheHitRate())
+				.append(",\"meanEdgesScanned\":")
+				.append(metrics.getMeanEdgesScanned()).append('}').toString();
+	}
+
+	/**
+	 * One kind of request: parses the query string, answers it, and turns
+	 * the exceptions of the graph's queries into HTTP statuses.
+	 */
+	private abstract static class Endpoint implements HttpHandler {
+		/**
+		 * Answers a request.
+		 * 
+		 * @param params
+		 *            the decoded parameters of the query string
+		 * @return the answer, in JSON
+		 * @throws ActorNotFoundException
+		 *             if an actor named is not in the graph
+		 * @throws PathNotFoundException
+		 *             if two actors named are not connected
+		 */
+		abstract String answer(Map<String, String> params)
+				throws ActorNotFoundException, PathNotFoundException;
+
+		public void handle(HttpExchange exchange) throws IOException {
+			int status = 200;
+			String body;
+			try {
+				if (!exchange.getRequestMethod().equals("GET")) {
+					exchange.getResponseHeaders().set("Allow", "GET");
+					status = 405;
+					body = error("Only GET is supported");
+				} else {
+					body = answer(parameters(exchange.getRequestURI()
+							.getRawQuery()));
+				}
+			} catch (IllegalArgumentException e) { // includes bad numbers
+				status = 400;
+				body = error(e.getMessage());
+			} catch (ActorNotFoundException e) {
+				status = 404;
+				body = error("Actor not found");
+			} catch (PathNotFoundException e) {
+				status = 404;
+				body = error("No path between the actors");
+			} catch (RuntimeException e) { // logged here, not shown to clients
+				LOG.log(Level.SEVERE, "Error answering "
+						+ exchange.getRequestURI(), e);
+				status = 500;
+				body = error("Internal error");
+			}
+			byte[] bytes = body.getBytes(UTF8);
+			exchange.getResponseHeaders().set("Content-Type",
+					"application/json; charset=utf-8");
+			exchange.sendResponseHeaders(status, bytes.length);
+			OutputStream out = exchange.getResponseBody();
+			try {
+				out.write(bytes);
+			} finally {
+				out.close(); // ends the exchange
+			}
+		}
+	}
+
+	/**
+	 * Hands requests to the worker threads, but only so many at once: past
+	 * the limit, the server's dispatching thread waits for a request to
+	 * finish before it takes another connection.
+	 */
+	private static class BoundedExecutor implements Executor {
+		private final Executor workers;
+		private final Semaphore inFlight;
+
+		BoundedExecutor(Executor workers, int limit) {
+			this.workers = workers;
+			this.inFlight = new Semaphore(limit);
+		}
+
+		public void execute(final Runnable request) {
+			inFlight.acquireUninterruptibly();
+			try {
+				workers.execute(new Runnable() {
+					public void run() {
+						try {
+							request.run();
+						} finally {
+							inFlight.release();
+						}
+					}
+				});
+			} catch (RuntimeException e) { // the workers were shut down
+				inFlight.release();
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Private Method: Makes an executor that starts a virtual thread per
+	 * task, if this JVM has virtual threads.
+	 * 
+	 * @return The executor, or null before Java 21 (or on Java 19 and 20
+	 *         without preview features).
+	 */
+	private static ExecutorService virtualThreads() {
+		try {
+			Method factory = Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null; // no such method, or a preview not enabled
+		}
+	}
+
+	// the decoded name=value pairs of a raw query string
+	private static Map<String, String> parameters(String query) {
+		Map<String, String> params = new HashMap<String, String>();
+		if (query == null)
+			return params;
+		for (String pair : query.split("&")) {
+			int eq = pair.indexOf('=');
+			if (eq < 0)
+				params.put(decode(pair), "");
+			else
+				params.put(decode(pair.substring(0, eq)),
+						decode(pair.substring(eq + 1)));
+		}
+		return params;
+	}
+
+	private static String decode(String s) {
+		try {
+			return URLDecoder.decode(s, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e); // every JVM has UTF-8
+		}
+	}
+
+	private static String required(Map<String, String> params, String name) {
+		String value = params.get(name);
+		if (value == null || value.trim().isEmpty())
+			throw new IllegalArgumentException("Missing parameter " + name);
+		return value.trim();
+	}
+
+	// the parameter n, between 0 and MAX_RESULTS
+	private static int count(Map<String, String> params, int byDefault) {
+		String n = params.get("n");
+		if (n == null)
+			return byDefault;
+		int count = Integer.parseInt(n.trim());
+		if (count < 0)
+			throw new IllegalArgumentException("n must not be negative: "
+					+ count);
+		return Math.min(count, MAX_RESULTS);
+	}
+
+	private static String error(String message) {
+		return "{\"error\":" + quote(message) + "}";
+	}
+
+	// a JSON array of strings
+	private static String array(List<String> strings) {
+		StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < strings.size() && i < MAX_RESULTS; i++) {
+			if (i > 0)
+				json.append(',');
+			json.append(quote(strings.get(i)));
+		}
+		return json.append(']').toString();
+	}
+
+	// a JSON string, escaped
+	private static String quote(String s) {
+		if (s == null)
+			return "null";
+		StringBuilder json = new StringBuilder(s.length() + 2).append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"':
+				json.append("\\\"");
+				break;
+			case '\\':
+				json.append("\\\\");
+				break;
+			case '\n':
+				json.append("\\n");
+				break;
+			case '\r':
+				json.append("\\r");
+				break;
+			case '\t':
+				json.append("\\t");
+				break;
+			default:
+				if (c < 0x20)
+					json.append(String.format("\\u%04x", (int) c));
+				else
+					json.append(c);
+			}
+		}
+		return json.append('"').toString();
+	}
+
+	/**
+	 * Loads a cast list and serves it on the loopback address until the JVM
+	 * is stopped.
+	 * 
+	 * @param args
+	 *            the file, as for {@link SymbolGraph#open(String, String)},
+	 *            then the port (8080 by default) and the most requests in
+	 *            flight, both optional
+	 * @throws IOException
+	 *             if the file cannot be read or the port bound
+	 */
+	/**
+	 * Returns the most requests to have in flight at once on a graph:
+	 * {@link #DEFAULT_MAX_IN_FLIGHT}, or fewer if the search state of that
+	 * many path queries, 24 bytes per vertex each, would take more than a
+	 * quarter of the largest heap the JVM may use, but never fewer than there
+	 * are cores.
+	 * 
+	 * @param sg
+	 *            the graph
+	 * @return the limit
+	 */
+	public static int maxInFlight(SymbolGraph sg) {
+		long search = 24L * Math.max(1, sg.G().V());
+		long fit = Runtime.getRuntime().maxMemory() / 4 / search;
+		return (int) Math.max(Runtime.getRuntime().availableProcessors(),
+				Math.min(DEFAULT_MAX_IN_FLIGHT, fit));
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("usage: java GraphServer file [port [maxInFlight]]");
+			System.exit(1);
+		}
+		int port = (args.length > 1) ? Integer.parseInt(args[1]) : 8080;
+		SymbolGraph sg = SymbolGraph.open(args[0], "\\|");
+		int maxInFlight = (args.length > 2) ? Integer.parseInt(args[2])
+				: maxInFlight(sg);
+		new JmxMetricsRegistry().register(args[0], sg.metrics());
+		GraphServer server = new GraphServer(sg, new InetSocketAddress(
+				InetAddress.getLoopbackAddress(), port), maxInFlight);
+		server.start();
+		System.out.println("Serving " + args[0] + " on http://"
+				+ server.address().getHostString() + ":"
+				+ server.address().getPort() + "/ ("
+				+ (server.isVirtual() ? "virtual threads" : "thread pool") + ")");
+	}
+}
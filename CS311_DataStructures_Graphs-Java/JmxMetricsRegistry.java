@@ -0,0 +1,84 @@
+import java.lang.management.ManagementFactory;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The <tt>JmxMetricsRegistry</tt> class publishes {@link QueryMetrics} as
+ * MXBeans on an MBean server, by default the platform's, where JConsole,
+ * VisualVM or any JMX client can read them. Each graph's statistics are named
+ * <tt>SymbolGraph:type=QueryMetrics,name=</tt><em>name</em>.
+ *
+ * @author Cameron Stanavige
+ */
+public class JmxMetricsRegistry implements MetricsRegistry {
+	private final MBeanServer server;
+
+	/**
+	 * Initializes a registry on the platform MBean server.
+	 */
+	public JmxMetricsRegistry() {
+		this(ManagementFactory.getPlatformMBeanServer());
+	}
+
+	/**
+	 * Initializes a registry on an MBean server.
+	 * 
+	 * @param server
+	 *            the server
+	 */
+	public JmxMetricsRegistry(MBeanServer server) {
+		this.server = server;
+	}
+
+	/**
+	 * Returns the name the statistics registered under <tt>name</tt> are
+	 * published as.
+	 * 
+	 * @param name
+	 *            the name they are registered under
+	 * @return the MBean's object name
+	 */
+	public static ObjectName objectName(String name) {
+		try {
+			return new ObjectName("SymbolGraph:type=QueryMetrics,name="
+					+ ObjectName.quote(name));
+		} catch (JMException e) {
+			throw new IllegalStateException(e); // quoted, so always valid
+		}
+	}
+
+	/**
+	 * @throws java.lang.IllegalStateException
+	 *             if the server refuses the MBean
+	 */
+	public void register(String name, QueryMetrics metrics) {
+		ObjectName objectName = objectName(name);
+		try {
+			if (server.isRegistered(objectName))
+				server.unregisterMBean(objectName);
+			server.registerMBean(metrics, objectName);
+		} catch (InstanceNotFoundException e) {
+			register(name, metrics); // unregistered by someone else meanwhile
+		} catch (JMException e) {
+			throw new IllegalStateException("Could not register " + objectName,
+					e);
+		}
+	}
+
+	/**
+	 * @throws java.lang.IllegalStateException
+	 *             if the server refuses to remove the MBean
+	 */
+	public void unregister(String name) {
+		try {
+			server.unregisterMBean(objectName(name));
+		} catch (InstanceNotFoundException e) {
+			// nothing was registered
+		} catch (JMException e) {
+			throw new IllegalStateException("Could not unregister " + name, e);
+		}
+	}
+}
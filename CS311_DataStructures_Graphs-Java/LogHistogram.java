@@ -0,0 +1,137 @@
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * The <tt>LogHistogram</tt> class counts nonnegative values, such as
+ * latencies in nanoseconds or the edges a search scanned, in buckets whose
+ * bounds are powers of two. Bucket <em>b</em> holds the values whose highest
+ * set bit is bit <em>b</em> - 1, so 64 buckets cover every <tt>long</tt>, and
+ * a percentile is known to within a factor of two.
+ * <p>
+ * Each bucket, the count and the sum are {@link LongAdder}s, so recording is
+ * a few uncontended additions with no locks, cheap enough to leave on in a
+ * busy server. Readers see a value once its recording has finished; a
+ * percentile taken while values are being recorded may miss the latest ones.
+ *
+ * @author Cameron Stanavige
+ */
+public class LogHistogram {
+	private static final int BUCKETS = 65; // 0, then one per bit
+
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(
+			new LongBinaryOperator() {
+				public long applyAsLong(long a, long b) {
+					return Math.max(a, b);
+				}
+			}, 0);
+
+	/**
+	 * Initializes an empty histogram.
+	 */
+	public LogHistogram() {
+		for (int b = 0; b < BUCKETS; b++) {
+			buckets[b] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Records a value. A negative value is recorded as 0.
+	 * 
+	 * @param value
+	 *            the value
+	 */
+	public void record(long value) {
+		value = Math.max(0, value);
+		buckets[64 - Long.numberOfLeadingZeros(value)].increment();
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	/**
+	 * Returns the number of values recorded.
+	 * 
+	 * @return the count
+	 */
+	public long count() {
+		return count.sum();
+	}
+
+	/**
+	 * Returns the sum of the values recorded.
+	 * 
+	 * @return the sum
+	 */
+	public long sum() {
+		return sum.sum();
+	}
+
+	/**
+	 * Returns the mean of the values recorded.
+	 * 
+	 * @return the mean, or 0 if no value has been recorded
+	 */
+	public double mean() {
+		long n = count.sum();
+		return (n == 0) ? 0 : (double) sum.sum() / n;
+	}
+
+	/**
+	 * Returns the largest value recorded.
+	 * 
+	 * @return the largest value, or 0 if no value has been recorded
+	 */
+	public long max() {
+		return max.get();
+	}
+
+	/**
+	 * Returns an upper bound on a percentile of the values recorded: the top
+	 * of the bucket that holds it, at most twice the percentile itself.
+	 * 
+	 * @param p
+	 *            the percentile, between 0 and 100
+	 * @return the bound, or 0 if no value has been recorded
+	 * @throws java.lang.IllegalArgumentException
+	 *             unless 0 <= p <= 100
+	 */
+	public long percentile(double p) {
+		if (!(p >= 0 && p <= 100))
+			throw new IllegalArgumentException("Percentile must be in [0, 100]: "
+					+ p);
+		long[] counts = new long[BUCKETS];
+		long n = 0;
+		for (int b = 0; b < BUCKETS; b++) {
+			counts[b] = buckets[b].sum();
+			n += counts[b];
+		}
+		if (n == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(p / 100 * n));
+		long seen = 0;
+		for (int b = 0; b < BUCKETS; b++) {
+			seen += counts[b];
+			if (seen >= rank) // bucket b holds values below 2^b
+				return Math.min(max.get(), (b == 64) ? Long.MAX_VALUE
+						: (1L << b) - 1);
+		}
+		return max.get();
+	}
+
+	/**
+	 * Forgets every value recorded. Values recorded while the histogram is
+	 * being reset may be kept or lost.
+	 */
+	public void reset() {
+		for (int b = 0; b < BUCKETS; b++) {
+			buckets[b].reset();
+		}
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+}
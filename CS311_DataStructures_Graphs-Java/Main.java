@@ -29,15 +29,27 @@ public class Main {
 					.println("Please pass this program the file to read, like this:");
 			System.out.println("\tjava Main movies_2000.txt");
 			System.out.println("or\n\t java Main movies_2000.txt print");
-			System.out.println("if you want to print a report");
+			System.out.println("if you want to print a report. The file may be");
+			System.out.println("gzipped (movies_2000.txt.gz), or - to read");
+			System.out.println("standard input.");
 			System.exit(1);
 		}
 		String infile = args[0];
-		System.out.println("Reading actors/actresses/movies from: " + infile);
+		System.out.println("Reading actors/actresses/movies from: "
+				+ (infile.equals(SymbolGraph.STANDARD_INPUT) ? "standard input"
+						: infile));
 
 		// Do what you need to do in order to have everything ready for the
 		// methods that follow
-		sg = new SymbolGraph(infile, "\\|");
+		try {
+			sg = SymbolGraph.open(infile, "\\|");
+		} catch (IOException e) {
+			System.out.println("Could not read " + infile + ": "
+					+ e.getMessage());
+			System.exit(1);
+		}
+		// query statistics, for JConsole or any other JMX client
+		new JmxMetricsRegistry().register(infile, sg.metrics());
 
 		// Print a report
 		if (args.length == 2 && args[1].equals("print")) {
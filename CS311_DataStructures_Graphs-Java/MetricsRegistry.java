@@ -0,0 +1,29 @@
+/**
+ * The <tt>MetricsRegistry</tt> interface is where the {@link QueryMetrics} of
+ * a {@link SymbolGraph} are published, so that they can be watched while the
+ * graph is being queried. {@link JmxMetricsRegistry} publishes them as JMX
+ * MBeans; another implementation could push them to a monitoring system.
+ *
+ * @author Cameron Stanavige
+ */
+public interface MetricsRegistry {
+	/**
+	 * Publishes a graph's statistics under a name, replacing any published
+	 * under the same name before.
+	 * 
+	 * @param name
+	 *            the name, such as the file the graph was loaded from
+	 * @param metrics
+	 *            the statistics
+	 */
+	void register(String name, QueryMetrics metrics);
+
+	/**
+	 * Stops publishing the statistics registered under a name. Does nothing
+	 * if there are none.
+	 * 
+	 * @param name
+	 *            the name they were registered under
+	 */
+	void unregister(String name);
+}
@@ -0,0 +1,197 @@
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * The <tt>MovieGraphGenerator</tt> class writes a synthetic cast list in the
+ * format {@link SymbolGraph} reads, one performer per line followed by their
+ * movies, for benchmarks and for trying out changes on graphs of any size.
+ * <p>
+ * Each edge joins an actor and a movie drawn at random, the movie from a Zipf
+ * distribution over the movies, so that the cast sizes follow a power law:
+ * the movie of rank <em>r</em> gets a cast proportional to
+ * 1/<em>r</em><sup><em>s</em></sup>. Actors are drawn the same way with their
+ * own exponent, so a few actors are in many movies and most in one or two.
+ * Every actor gets at least one movie, and no actor is joined to the same
+ * movie twice. The same parameters and seed always give the same file.
+ *
+ * @author Cameron Stanavige
+ */
+public class MovieGraphGenerator {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final int actors;
+	private final int movies;
+	private final int edges;
+	private final double castExponent;
+	private final double actorExponent;
+	private final long seed;
+
+	/**
+	 * Sets up a generator.
+	 * 
+	 * @param actors
+	 *            the number of actors
+	 * @param movies
+	 *            the number of movies; a movie no edge is drawn for is left
+	 *            out, so the graph may have fewer
+	 * @param edges
+	 *            the number of actor-movie edges
+	 * @param castExponent
+	 *            the Zipf exponent of the cast sizes, 0 for uniform
+	 * @param actorExponent
+	 *            the Zipf exponent of the number of movies per actor, 0 for
+	 *            uniform
+	 * @param seed
+	 *            the seed of the random numbers
+	 * @throws java.lang.IllegalArgumentException
+	 *             if there are no actors or movies, fewer edges than actors,
+	 *             more edges than half the actor-movie pairs (beyond which
+	 *             drawing pairs that are not taken yet slows down), or a
+	 *             negative exponent
+	 */
+	public MovieGraphGenerator(int actors, int movies, int edges,
+			double castExponent, double actorExponent, long seed) {
+		if (actors < 1 || movies < 1)
+			throw new IllegalArgumentException(
+					"Need at least one actor and one movie");
+		if (edges < actors || edges > (long) actors * movies / 2)
+			throw new IllegalArgumentException("Edges must be between "
+					+ actors + " and " + (long) actors * movies / 2 + ": "
+					+ edges);
+		if (castExponent < 0 || actorExponent < 0)
+			throw new IllegalArgumentException("Exponents must be nonnegative");
+		this.actors = actors;
+		this.movies = movies;
+		this.edges = edges;
+		this.castExponent = castExponent;
+		this.actorExponent = actorExponent;
+		this.seed = seed;
+	}
+
+	/**
+	 * Returns the name of an actor in the generated list.
+	 * 
+	 * @param i
+	 *            the actor's number, between 0 and actors - 1
+	 * @return the name, in Last, First format
+	 */
+	public static String actorName(int i) {
+		return "Actor" + i + ", Synthetic";
+	}
+
+	/**
+	 * Returns the title of a movie in the generated list.
+	 * 
+	 * @param j
+	 *            the movie's number, between 0 and movies - 1
+	 * @return the title
+	 */
+	public static String movieTitle(int j) {
+		return "Movie " + j + " (" + (1920 + j % 100) + ")";
+	}
+
+	/**
+	 * Writes the cast list. The stream is not closed.
+	 * 
+	 * @param out
+	 *            where to write it, as UTF-8
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public void write(OutputStream out) throws IOException {
+		int[][] filmography = generate();
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF8),
+				1 << 16);
+		for (int i = 0; i < actors; i++) {
+			writer.write(actorName(i));
+			for (int j : filmography[i]) {
+				writer.write('|');
+				writer.write(movieTitle(j));
+			}
+			writer.write('\n');
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Returns the cast list as bytes, to be read with
+	 * {@link SymbolGraph#SymbolGraph(java.io.InputStream, String)}.
+	 * 
+	 * @return the cast list, in UTF-8
+	 */
+	public byte[] toBytes() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			write(out);
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // not from a byte array
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Private Method: Draws the edges.
+	 * 
+	 * @return For each actor, the movies they are in, sorted.
+	 */
+	private int[][] generate() {
+		Random random = new Random(seed);
+		double[] movieCdf = zipf(movies, castExponent);
+		double[] actorCdf = zipf(actors, actorExponent);
+		int[] count = new int[actors];
+		int[][] filmography = new int[actors][];
+		Set<Long> drawn = new HashSet<Long>(2 * edges);
+
+		// one movie each, then the rest of the edges anywhere
+		for (int i = 0; i < actors; i++) {
+			int j = draw(movieCdf, random);
+			drawn.add((long) i * movies + j);
+			filmography[i] = new int[] { j, 0, 0, 0 };
+			count[i] = 1;
+		}
+		for (int e = actors; e < edges;) {
+			int i = draw(actorCdf, random);
+			int j = draw(movieCdf, random);
+			if (!drawn.add((long) i * movies + j))
+				continue; // already in it
+			if (count[i] == filmography[i].length)
+				filmography[i] = Arrays.copyOf(filmography[i], 2 * count[i]);
+			filmography[i][count[i]++] = j;
+			e++;
+		}
+		for (int i = 0; i < actors; i++) {
+			filmography[i] = Arrays.copyOf(filmography[i], count[i]);
+			Arrays.sort(filmography[i]);
+		}
+		return filmography;
+	}
+
+	// the cumulative Zipf distribution over ranks 1 to n, rank 1 first
+	private static double[] zipf(int n, double s) {
+		double[] cdf = new double[n];
+		double sum = 0;
+		for (int r = 0; r < n; r++) {
+			sum += 1 / Math.pow(r + 1, s);
+			cdf[r] = sum;
+		}
+		for (int r = 0; r < n; r++) {
+			cdf[r] /= sum;
+		}
+		return cdf;
+	}
+
+	// draws an index from a cumulative distribution
+	private static int draw(double[] cdf, Random random) {
+		int i = Arrays.binarySearch(cdf, random.nextDouble());
+		return Math.min(cdf.length - 1, (i >= 0) ? i : -i - 1);
+	}
+}
@@ -0,0 +1,443 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The <tt>MultiSourceBfs</tt> class measures the Bacon numbers between every
+ * pair of actors in a {@link SymbolGraph}'s {@link Graph}, or from a chosen
+ * set of actors to all the others, and keeps per actor the statistics built
+ * on them: how many actors it reaches, its average Bacon number, its
+ * eccentricity and its closeness, along with the distribution of Bacon
+ * numbers over all the pairs.
+ * <p>
+ * The searches are bit-parallel (the multi-source BFS of Then et al.): a batch
+ * of 64 &times; <em>words</em> sources is searched at once, each vertex
+ * keeping one bit per source in <em>words</em> longs for "seen", "in the
+ * frontier" and "in the next frontier". One scan of a frontier vertex's edges
+ * advances every search of the batch that has reached it, with a single OR
+ * per edge and word, so the edge scans that separate searches would repeat
+ * are shared. Batches are independent and are handed out to one task per
+ * thread of a {@link ForkJoinPool}; each task reuses its own bitmaps and
+ * writes only the statistics of its own sources, so no locks are taken.
+ * <p>
+ * The graph alternates actors and movies, so a Bacon number is half the
+ * length of a path. Each task takes time proportional to the levels searched
+ * times <em>V</em>, plus the edges, per batch; the whole computation takes
+ * about <em>S</em> / (64 <em>words</em>) times as long as one search, for
+ * <em>S</em> sources, divided by the threads.
+ *
+ * @author Cameron Stanavige
+ */
+public class MultiSourceBfs {
+	private final Graph G;
+	private final boolean[] isActor;
+	private final int[] sources;
+	private final int words; // longs per vertex per bitmap
+	private final int actorCount; // actors in the graph
+
+	private final int[] reached; // reached[v] = actors source v reaches
+	private final long[] distanceSum; // distanceSum[v] = their Bacon numbers
+	private final int[] eccentricity; // the largest; -1 for non-sources
+	private long[] distribution; // distribution[k] = pairs at Bacon number k
+
+	/**
+	 * Measures the Bacon numbers between every pair of actors.
+	 * 
+	 * @param G
+	 *            the graph
+	 * @param isActor
+	 *            isActor[v] is true if vertex v is an actor, false if it is a
+	 *            movie
+	 * @param words
+	 *            the longs of each bitmap per vertex, as for
+	 *            {@link #MultiSourceBfs(Graph, boolean[], int[], int, ForkJoinPool)}
+	 * @param pool
+	 *            the pool to search on
+	 * @throws java.lang.IllegalArgumentException
+	 *             if words is less than 1, or a bitmap of V &times; words
+	 *             longs would not fit in an array
+	 */
+	public MultiSourceBfs(Graph G, boolean[] isActor, int words,
+			ForkJoinPool pool) {
+		this(G, isActor, actorsOf(G, isActor), words, pool);
+	}
+
+	/**
+	 * Measures the Bacon numbers from some actors to every actor.
+	 * 
+	 * @param G
+	 *            the graph
+	 * @param isActor
+	 *            isActor[v] is true if vertex v is an actor, false if it is a
+	 *            movie
+	 * @param sources
+	 *            the actors to search from
+	 * @param words
+	 *            the longs of each bitmap per vertex, so that 64 &times;
+	 *            words sources are searched at once; more words share each
+	 *            edge scan among more sources, at 24 &times; words bytes per
+	 *            vertex for each thread
+	 * @param pool
+	 *            the pool to search on
+	 * @throws java.lang.IndexOutOfBoundsException
+	 *             unless every source is between 0 and V-1
+	 * @throws java.lang.IllegalArgumentException
+	 *             if a source is a movie, words is less than 1, or a bitmap of
+	 *             V &times; words longs would not fit in an array
+	 */
+	public MultiSourceBfs(Graph G, boolean[] isActor, int[] sources, int words,
+			ForkJoinPool pool) {
+		if (words < 1)
+			throw new IllegalArgumentException("Need at least one word: "
+					+ words);
+		int V = G.V();
+		if ((long) Math.max(V, 64) * words > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Bitmaps of " + words
+					+ " words for " + V + " vertices are too large");
+		for (int s : sources) {
+			if (s < 0 || s >= V)
+				throw new IndexOutOfBoundsException("vertex " + s
+						+ " is not between 0 and " + (V - 1));
+			if (!isActor[s])
+				throw new IllegalArgumentException("vertex " + s
+						+ " is a movie");
+		}
+		this.G = G;
+		this.isActor = isActor;
+		this.sources = sources.clone();
+		this.words = words;
+		G.freeze();
+		int n = 0;
+		for (int v = 0; v < V; v++) {
+			if (isActor[v])
+				n++;
+		}
+		actorCount = n;
+		reached = new int[V];
+		distanceSum = new long[V];
+		eccentricity = new int[V];
+		Arrays.fill(eccentricity, -1);
+		distribution = new long[1];
+		search(pool);
+	}
+
+	/**
+	 * Is <tt>v</tt> one of the sources searched from?
+	 * 
+	 * @param v
+	 *            the vertex
+	 * @return true if the statistics of <tt>v</tt> are known
+	 */
+	public boolean isSource(int v) {
+		return eccentricity[v] >= 0;
+	}
+
+	/**
+	 * Returns the number of other actors a source can reach.
+	 * 
+	 * @param v
+	 *            a source
+	 * @return the number of actors with a Bacon number from <tt>v</tt>,
+	 *         <tt>v</tt> not counted
+	 */
+	public int reached(int v) {
+		return reached[v];
+	}
+
+	/**
+	 * Returns the sum of a source's Bacon numbers to the actors it reaches.
+	 * 
+	 * @param v
+	 *            a source
+	 * @return the sum
+	 */
+	public long distanceSum(int v) {
+		return distanceSum[v];
+	}
+
+	/**
+	 * Returns the average Bacon number from a source to the actors it
+	 * reaches.
+	 * 
+	 * @param v
+	 *            a source
+	 * @return the average, or 0 if it reaches no one
+	 */
+	public double averageDistance(int v) {
+		return (reached[v] == 0) ? 0 : (double) distanceSum[v] / reached[v];
+	}
+
+	/**
+	 * Returns the largest Bacon number from a source to an actor it reaches.
+	 * 
+	 * @param v
+	 *            a source
+	 * @return the eccentricity, 0 if it reaches no one, or -1 if <tt>v</tt>
+	 *         is not a source
+	 */
+	public int eccentricity(int v) {
+		return eccentricity[v];
+	}
+
+	/**
+	 * Returns the closeness centrality of a source: the inverse of its
+	 * average Bacon number, scaled by the share of the other actors it
+	 * reaches (Wasserman and Faust), so that an actor close to everyone in a
+	 * small component does not outrank one in the giant component.
+	 * 
+	 * @param v
+	 *            a source
+	 * @return the closeness, between 0 and 1
+	 */
+	public double closeness(int v) {
+		if (reached[v] == 0)
+			return 0;
+		return (double) reached[v] / distanceSum[v] * reached[v]
+				/ (actorCount - 1);
+	}
+
+	/**
+	 * Returns the number of (source, actor) pairs at each Bacon number. With
+	 * every actor a source, each unordered pair is counted twice.
+	 * 
+	 * @return an array whose entry k is the number of pairs k apart; entry 0
+	 *         is 0, since a source is not paired with itself
+	 */
+	public long[] distribution() {
+		return distribution.clone();
+	}
+
+	/**
+	 * Returns the largest eccentricity of any source, which with every actor
+	 * a source is the diameter of the graph in Bacon numbers.
+	 * 
+	 * @return the largest eccentricity, or -1 if there are no sources
+	 */
+	public int diameter() {
+		int max = -1;
+		for (int s : sources) {
+			max = Math.max(max, eccentricity[s]);
+		}
+		return max;
+	}
+
+	/**
+	 * Returns the average Bacon number over all the pairs measured.
+	 * 
+	 * @return the average, or 0 if no pair is connected
+	 */
+	public double averageDistance() {
+		long pairs = 0, sum = 0;
+		for (int k = 0; k < distribution.length; k++) {
+			pairs += distribution[k];
+			sum += k * distribution[k];
+		}
+		return (pairs == 0) ? 0 : (double) sum / pairs;
+	}
+
+	/**
+	 * Returns the sources of highest closeness.
+	 * 
+	 * @param n
+	 *            the most sources to return
+	 * @return the sources, highest closeness first; ties in the order of the
+	 *         sources given
+	 */
+	public int[] mostCentral(int n) {
+		Integer[] order = new Integer[sources.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = sources[i];
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Double.compare(closeness(b), closeness(a));
+			}
+		});
+		int[] top = new int[Math.max(0, Math.min(n, order.length))];
+		for (int i = 0; i < top.length; i++) {
+			top[i] = order[i];
+		}
+		return top;
+	}
+
+	/**
+	 * Private Method: Searches every batch of sources, one task per thread
+	 * of the pool, each taking the next batch until none are left.
+	 * 
+	 * @param pool
+	 *            The pool to search on.
+	 */
+	private void search(ForkJoinPool pool) {
+		final int batch = 64 * words;
+		final int batches = (sources.length + batch - 1) / batch;
+		final AtomicInteger next = new AtomicInteger();
+		List<Callable<long[]>> tasks = new ArrayList<Callable<long[]>>();
+		int threads = Math.max(1, Math.min(pool.getParallelism(), batches));
+		for (int t = 0; t < threads; t++) {
+			tasks.add(new Callable<long[]>() {
+				public long[] call() {
+					Searcher searcher = new Searcher();
+					for (int b; (b = next.getAndIncrement()) < batches;) {
+						searcher.search(b * batch,
+								Math.min(batch, sources.length - b * batch));
+					}
+					return searcher.distribution;
+				}
+			});
+		}
+		for (long[] counts : ParallelTasks.invokeAll(pool, tasks)) {
+			if (counts.length > distribution.length)
+				distribution = Arrays.copyOf(distribution, counts.length);
+			for (int k = 0; k < counts.length; k++) {
+				distribution[k] += counts[k];
+			}
+		}
+	}
+
+	/**
+	 * The bitmaps of one thread, reused batch after batch.
+	 */
+	private class Searcher {
+		final long[] seen = new long[G.V() * words];
+		final long[] visit = new long[G.V() * words];
+		final long[] visitNext = new long[G.V() * words];
+		final long[] levelSeen = new long[words]; // sources that found actors
+		final int[] batchReached = new int[64 * words];
+		final long[] batchSum = new long[64 * words];
+		final int[] batchEccentricity = new int[64 * words];
+		long[] distribution = new long[16];
+
+		/**
+		 * Searches from sources[first..first+n) at once, bit i of word k
+		 * standing for sources[first + 64k + i].
+		 */
+		void search(int first, int n) {
+			int V = G.V();
+			Arrays.fill(seen, 0);
+			Arrays.fill(visit, 0);
+			Arrays.fill(batchReached, 0, n, 0);
+			Arrays.fill(batchSum, 0, n, 0);
+			Arrays.fill(batchEccentricity, 0, n, 0);
+			for (int i = 0; i < n; i++) {
+				int at = sources[first + i] * words + (i >>> 6);
+				seen[at] |= 1L << i;
+				visit[at] |= 1L << i;
+			}
+			int[] targets = G.targets();
+			boolean active = true;
+			for (int d = 1; active; d++) {
+				// every search of the batch that reached v moves past it
+				for (int v = 0, at = 0; v < V; v++, at += words) {
+					for (int k = 0; k < words; k++) {
+						long x = visit[at + k];
+						if (x == 0)
+							continue;
+						for (int i = G.adjStart(v), end = i + G.degree(v); i < end; i++) {
+							visitNext[targets[i] * words + k] |= x;
+						}
+					}
+				}
+				active = false;
+				boolean actors = d % 2 == 0; // levels alternate
+				if (actors)
+					Arrays.fill(levelSeen, 0);
+				for (int v = 0, at = 0; v < V; v++, at += words) {
+					for (int k = 0; k < words; k++) {
+						long x = visitNext[at + k] & ~seen[at + k];
+						visitNext[at + k] = 0;
+						visit[at + k] = x;
+						if (x == 0)
+							continue;
+						seen[at + k] |= x;
+						active = true;
+						if (actors && isActor[v])
+							found(k, x, d / 2);
+					}
+				}
+				if (actors) {
+					for (int k = 0; k < words; k++) {
+						for (long x = levelSeen[k]; x != 0; x &= x - 1) {
+							batchEccentricity[64 * k
+									+ Long.numberOfTrailingZeros(x)] = d / 2;
+						}
+					}
+				}
+			}
+			for (int i = 0; i < n; i++) { // sources are in one batch only
+				int s = sources[first + i];
+				reached[s] = batchReached[i];
+				distanceSum[s] = batchSum[i];
+				eccentricity[s] = batchEccentricity[i];
+			}
+		}
+
+		// counts an actor found at Bacon number kb by the sources in x
+		void found(int k, long x, int kb) {
+			if (kb >= distribution.length)
+				distribution = Arrays.copyOf(distribution, 2 * kb);
+			distribution[kb] += Long.bitCount(x);
+			levelSeen[k] |= x;
+			for (; x != 0; x &= x - 1) {
+				int i = 64 * k + Long.numberOfTrailingZeros(x);
+				batchReached[i]++;
+				batchSum[i] += kb;
+			}
+		}
+	}
+
+	// every actor of the graph, in vertex order
+	private static int[] actorsOf(Graph G, boolean[] isActor) {
+		int n = 0;
+		for (int v = 0; v < G.V(); v++) {
+			if (isActor[v])
+				n++;
+		}
+		int[] actors = new int[n];
+		n = 0;
+		for (int v = 0; v < G.V(); v++) {
+			if (isActor[v])
+				actors[n++] = v;
+		}
+		return actors;
+	}
+
+	/**
+	 * Loads a cast list and prints its all-pairs Bacon number report: the
+	 * distribution, the average and the diameter, and the most central
+	 * actors.
+	 * 
+	 * @param args
+	 *            the file, as for {@link SymbolGraph#open(String, String)},
+	 *            then optionally the number of central actors to list (10)
+	 *            and the words per bitmap (1)
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		SymbolGraph sg = SymbolGraph.open(args[0], "\\|");
+		int top = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+		int words = (args.length > 2) ? Integer.parseInt(args[2]) : 1;
+		long start = System.nanoTime();
+		MultiSourceBfs stats = sg.baconStatistics(words);
+		System.out.printf("%d actors searched in %.1f s%n",
+				stats.sources.length, (System.nanoTime() - start) / 1e9);
+		long[] counts = stats.distribution();
+		for (int k = 1; k < counts.length; k++) {
+			if (counts[k] > 0)
+				System.out.printf("  Bacon number %2d: %d pairs%n", k, counts[k]);
+		}
+		System.out.printf("average Bacon number %.3f, diameter %d%n",
+				stats.averageDistance(), stats.diameter());
+		System.out.println("most central actors:");
+		for (int v : stats.mostCentral(top)) {
+			System.out.printf("  %-40s closeness %.4f  average %.3f  eccentricity %d%n",
+					sg.name(v), stats.closeness(v), stats.averageDistance(v),
+					stats.eccentricity(v));
+		}
+	}
+}
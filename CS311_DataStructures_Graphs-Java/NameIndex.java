@@ -0,0 +1,238 @@
+import java.util.Arrays;
+
+/**
+ * The <tt>NameIndex</tt> class maps vertex names to the integers 0 through
+ * <em>N</em> - 1, in the order the names were first added, and back again. It
+ * is the dictionary behind {@link SymbolGraph}: <em>put</em> hands out the
+ * next free index the first time a name is seen, <em>get</em> and
+ * <em>contains</em> look a name up, and <em>name</em> turns an index back into
+ * its name.
+ * <p>
+ * This implementation uses open addressing with linear probing. The table
+ * holds indices rather than strings, and the hash of every name is kept in an
+ * array parallel to the names, so a probe only calls <tt>equals()</tt> when
+ * the full hashes match and growing the table never rehashes a string. The
+ * table is kept at most half full. The <em>put</em>, <em>get</em> and
+ * <em>contains</em> operations take constant expected time, independent of
+ * <em>N</em>; <em>name</em> and <em>size</em> take constant time.
+ *
+ * @author Cameron Stanavige
+ */
+public class NameIndex {
+	private String[] keys; // index -> name
+	private int[] hashes; // index -> hash of name
+	private int[] table; // slot -> index + 1, or 0 if the slot is empty
+	private int N; // number of names
+
+	/**
+	 * Initializes an empty index.
+	 */
+	public NameIndex() {
+		this(16);
+	}
+
+	/**
+	 * Initializes an empty index with room for <tt>capacity</tt> names before
+	 * it has to grow.
+	 * 
+	 * @param capacity
+	 *            the expected number of names
+	 * @throws java.lang.IllegalArgumentException
+	 *             if <tt>capacity</tt> < 0
+	 */
+	public NameIndex(int capacity) {
+		if (capacity < 0)
+			throw new IllegalArgumentException(
+					"Capacity must be nonnegative");
+		keys = new String[Math.max(capacity, 1)];
+		hashes = new int[keys.length];
+		table = new int[tableSize(keys.length)];
+		N = 0;
+	}
+
+	/**
+	 * Initializes an index holding <tt>names</tt>, where <tt>names[i]</tt> is
+	 * given index <tt>i</tt>.
+	 * 
+	 * @param names
+	 *            the names, which must be distinct
+	 * @throws java.lang.IllegalArgumentException
+	 *             if a name appears twice
+	 */
+	public NameIndex(String[] names) {
+		this(names.length);
+		for (int i = 0; i < names.length; i++) {
+			if (put(names[i]) != i)
+				throw new IllegalArgumentException("Duplicate name "
+						+ names[i]);
+		}
+	}
+
+	/**
+	 * Returns the number of names in the index.
+	 * 
+	 * @return the number of names in the index
+	 */
+	public int size() {
+		return N;
+	}
+
+	/**
+	 * Does the index contain the name <tt>s</tt>?
+	 * 
+	 * @param s
+	 *            the name
+	 * @return <tt>true</tt> if <tt>s</tt> is in the index, and <tt>false</tt>
+	 *         otherwise
+	 * @throws NullPointerException
+	 *             if <tt>s</tt> is <tt>null</tt>
+	 */
+	public boolean contains(String s) {
+		return get(s) >= 0;
+	}
+
+	/**
+	 * Returns the index of the name <tt>s</tt>.
+	 * 
+	 * @param s
+	 *            the name
+	 * @return the index of <tt>s</tt>, or -1 if <tt>s</tt> is not in the index
+	 * @throws NullPointerException
+	 *             if <tt>s</tt> is <tt>null</tt>
+	 */
+	public int get(String s) {
+		int h = hash(s);
+		int mask = table.length - 1;
+		for (int slot = h & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+			int i = table[slot] - 1;
+			if (hashes[i] == h && keys[i].equals(s))
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the index of the name spelled by the ASCII bytes
+	 * <tt>b[off]</tt> through <tt>b[off + len - 1]</tt>. This lets a parser
+	 * look up a name it has already seen without building a <tt>String</tt>
+	 * for it.
+	 * 
+	 * @param b
+	 *            the bytes, all of which must be between 0 and 127
+	 * @param off
+	 *            the first byte of the name
+	 * @param len
+	 *            the number of bytes in the name
+	 * @return the index of the name, or -1 if it is not in the index
+	 */
+	public int get(byte[] b, int off, int len) {
+		int h = 0; // same value as String.hashCode() for an ASCII string
+		for (int j = 0; j < len; j++)
+			h = 31 * h + b[off + j];
+		h ^= h >>> 16;
+		int mask = table.length - 1;
+		for (int slot = h & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+			int i = table[slot] - 1;
+			if (hashes[i] == h && equals(keys[i], b, off, len))
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the index of the name <tt>s</tt>, adding it with the next free
+	 * index if it is not in the index yet.
+	 * 
+	 * @param s
+	 *            the name
+	 * @return the index of <tt>s</tt>
+	 * @throws NullPointerException
+	 *             if <tt>s</tt> is <tt>null</tt>
+	 */
+	public int put(String s) {
+		int h = hash(s);
+		int mask = table.length - 1;
+		int slot = h & mask;
+		for (; table[slot] != 0; slot = (slot + 1) & mask) {
+			int i = table[slot] - 1;
+			if (hashes[i] == h && keys[i].equals(s))
+				return i;
+		}
+		if (N == keys.length) {
+			keys = Arrays.copyOf(keys, 2 * N);
+			hashes = Arrays.copyOf(hashes, 2 * N);
+		}
+		keys[N] = s;
+		hashes[N] = h;
+		table[slot] = N + 1;
+		N++;
+		if (2 * N > table.length)
+			rehash(2 * table.length);
+		return N - 1;
+	}
+
+	/**
+	 * Returns the name with index <tt>i</tt>.
+	 * 
+	 * @param i
+	 *            the index (between 0 and <em>N</em> - 1)
+	 * @return the name with index <tt>i</tt>
+	 * @throws java.lang.IndexOutOfBoundsException
+	 *             unless 0 <= i < N
+	 */
+	public String name(int i) {
+		if (i < 0 || i >= N)
+			throw new IndexOutOfBoundsException("index " + i
+					+ " is not between 0 and " + (N - 1));
+		return keys[i];
+	}
+
+	/**
+	 * Returns the names in index order, as a new array of length <em>N</em>.
+	 * 
+	 * @return an array whose entry <tt>i</tt> is the name with index
+	 *         <tt>i</tt>
+	 */
+	public String[] keys() {
+		return Arrays.copyOf(keys, N);
+	}
+
+	// does s spell out the ASCII bytes b[off] .. b[off + len - 1]?
+	private static boolean equals(String s, byte[] b, int off, int len) {
+		if (s.length() != len)
+			return false;
+		for (int j = 0; j < len; j++) {
+			if (s.charAt(j) != b[off + j])
+				return false;
+		}
+		return true;
+	}
+
+	// rebuilds the table with the given power-of-two size from the stored
+	// hashes
+	private void rehash(int size) {
+		table = new int[size];
+		int mask = size - 1;
+		for (int i = 0; i < N; i++) {
+			int slot = hashes[i] & mask;
+			while (table[slot] != 0)
+				slot = (slot + 1) & mask;
+			table[slot] = i + 1;
+		}
+	}
+
+	// smallest power of two that keeps n names at most half the table
+	private static int tableSize(int n) {
+		int size = 16;
+		while (size < 2 * n)
+			size <<= 1;
+		return size;
+	}
+
+	// spreads the high bits of the string hash into the low bits that pick
+	// the slot
+	private static int hash(String s) {
+		int h = s.hashCode();
+		return h ^ (h >>> 16);
+	}
+}
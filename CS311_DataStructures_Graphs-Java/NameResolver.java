@@ -0,0 +1,421 @@
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The <tt>NameResolver</tt> class finds the names closest to a possibly
+ * misspelled or misformatted query, such as "kevin bacon" for "Bacon, Kevin"
+ * or "Jennifer Lawrence" for "Lawrence, Jennifer (III)".
+ * <p>
+ * Every name is first normalized: it is lower-cased, anything in parentheses
+ * is dropped, punctuation becomes spaces, and the words are sorted, so that
+ * "Bacon, Kevin (I)" and "Kevin Bacon" both become <tt>"bacon kevin"</tt>.
+ * The normalized name, padded with a space at each end, is cut into its
+ * distinct trigrams (runs of three characters), and an inverted index lists,
+ * for every trigram, the names that contain it. Characters are folded into a
+ * 64-letter alphabet (a to z, 0 to 9, space, and one code for everything
+ * else), so a trigram fits in 18 bits and the index is a flat array of
+ * 2<sup>18</sup> lists, with no hashing.
+ * <p>
+ * A query is scored against a name by the Dice coefficient of their trigram
+ * sets, 2|<em>Q</em> &cap; <em>N</em>| / (|<em>Q</em>| + |<em>N</em>|).
+ * Candidates are found by prefix filtering: a name can only reach the minimum
+ * score if it shares enough of the query's trigrams that it must appear in
+ * at least one of the query's rarest lists, so only those are merged, and
+ * the overlap with the longer lists is finished by binary search, stopping as
+ * soon as a name cannot reach the score. Each list is sorted by index, so the
+ * work is proportional to the rarest lists, not to the number of names. The
+ * merge counts into a dense array taken from a pool and cleared after use,
+ * so concurrent queries do not share state.
+ * <p>
+ * Names can be added after the index is built, each with a higher index than
+ * any before it. An added name waits in a short list that every query scores
+ * directly, and the waiting names are merged into the trigram lists once
+ * there are more of them than the square root of the lists' total length, so
+ * that neither the direct scoring nor the merging ever dominates.
+ *
+ * @author Cameron Stanavige
+ */
+public class NameResolver {
+	private static final int SPACE = 36; // letter codes: 0-25 a-z, 26-35 0-9
+	private static final int OTHER = 37;
+	private static final int GRAMS = 1 << 18;
+
+	private int[] offsets; // list of gram g is offsets[g] to offsets[g+1]
+	private int[] postings; // names containing each gram, by index
+	private int[] sizes; // sizes[i] = distinct grams of name i, or 0
+	private int last = -1; // highest index of a name indexed
+
+	// names added since the lists were laid out, and their sorted grams
+	private int[] added = new int[16];
+	private int[][] addedGrams = new int[16][];
+	private int addedCount;
+
+	// idle counters, one per query at a time, all zero
+	private final Queue<int[]> counters = new ConcurrentLinkedQueue<int[]>();
+
+	/**
+	 * Indexes the given names. A name that is not included gets no trigrams
+	 * and is never returned.
+	 * 
+	 * @param names
+	 *            the names, by index
+	 * @param included
+	 *            which names to index, or <tt>null</tt> for all of them
+	 */
+	public NameResolver(String[] names, boolean[] included) {
+		sizes = new int[names.length];
+		offsets = new int[GRAMS + 1];
+		int[] grams = new int[64];
+
+		// count each gram's list, then lay the lists out
+		for (int i = 0; i < names.length; i++) {
+			if (included != null && !included[i])
+				continue;
+			int n = grams(names[i], grams);
+			if (n > grams.length) { // more grams than fit; get them all
+				grams = new int[n];
+				n = grams(names[i], grams);
+			}
+			sizes[i] = n;
+			last = i;
+			for (int j = 0; j < n; j++) {
+				offsets[grams[j] + 1]++;
+			}
+		}
+		for (int g = 0; g < GRAMS; g++) {
+			offsets[g + 1] += offsets[g];
+		}
+		postings = new int[offsets[GRAMS]];
+		int[] next = Arrays.copyOf(offsets, GRAMS);
+		for (int i = 0; i < names.length; i++) {
+			if (sizes[i] == 0)
+				continue;
+			int n = grams(names[i], grams);
+			for (int j = 0; j < n; j++) {
+				postings[next[grams[j]]++] = i;
+			}
+		}
+	}
+
+	/**
+	 * Adds a name to the index.
+	 * 
+	 * @param i
+	 *            the index of the name, higher than that of every name
+	 *            indexed so far
+	 * @param name
+	 *            the name
+	 * @throws java.lang.IllegalArgumentException
+	 *             unless <tt>i</tt> is higher than every index so far
+	 */
+	public void add(int i, String name) {
+		if (i <= last)
+			throw new IllegalArgumentException("Name " + i
+					+ " is not after the last name indexed, " + last);
+		int[] grams = new int[64];
+		int n = grams(name, grams);
+		if (n > grams.length) { // more grams than fit; get them all
+			grams = new int[n];
+			n = grams(name, grams);
+		}
+		if (i >= sizes.length)
+			sizes = Arrays.copyOf(sizes, Math.max(i + 1, 2 * sizes.length));
+		sizes[i] = n;
+		last = i;
+		if (n == 0)
+			return; // nothing to match
+		if (addedCount == added.length) {
+			added = Arrays.copyOf(added, 2 * addedCount);
+			addedGrams = Arrays.copyOf(addedGrams, 2 * addedCount);
+		}
+		added[addedCount] = i;
+		addedGrams[addedCount] = Arrays.copyOf(grams, n);
+		addedCount++;
+		if ((long) addedCount * addedCount > postings.length)
+			merge();
+	}
+
+	/**
+	 * Finds the names closest to <tt>query</tt>.
+	 * 
+	 * @param query
+	 *            the text to look up
+	 * @param k
+	 *            the most names to return
+	 * @param minScore
+	 *            the lowest Dice coefficient, between 0 and 1, a name may
+	 *            have and still be returned; the lower it is, the more lists
+	 *            are merged and the longer the query takes
+	 * @return the indices of at most <tt>k</tt> names scoring at least
+	 *         <tt>minScore</tt>, best first; names with the same score are
+	 *         listed by index
+	 * @throws java.lang.IllegalArgumentException
+	 *             unless 0 &lt; minScore &lt;= 1
+	 */
+	public int[] resolve(String query, int k, double minScore) {
+		if (!(minScore > 0 && minScore <= 1))
+			throw new IllegalArgumentException("minScore must be in (0, 1]: "
+					+ minScore);
+		int[] grams = new int[Math.max(1, query.length() + 2)];
+		int m = grams(query, grams);
+		if (m == 0 || k <= 0)
+			return new int[0];
+
+		// rarest grams first
+		long[] byLength = new long[m];
+		for (int j = 0; j < m; j++) {
+			int g = grams[j];
+			byLength[j] = ((long) (offsets[g + 1] - offsets[g]) << 32) | g;
+		}
+		Arrays.sort(byLength);
+
+		// a name scoring minScore shares at least minScore * m / (2 -
+		// minScore) grams, so it is in one of the m - need + 1 rarest lists
+		int need = Math.max(1, (int) Math.ceil(minScore * m / (2 - minScore)
+				- 1e-9));
+		int prefix = m - need + 1;
+		int total = 0;
+		for (int j = 0; j < prefix; j++) {
+			total += (int) (byLength[j] >>> 32);
+		}
+		int[] candidates = new int[total];
+		int[] count = counters.poll(); // count[i] = rare lists holding name i
+		if (count == null || count.length < sizes.length) // or names added
+			count = new int[sizes.length];
+		int distinct = 0;
+		for (int j = 0; j < prefix; j++) {
+			int g = (int) byLength[j];
+			for (int i = offsets[g]; i < offsets[g + 1]; i++) {
+				if (count[postings[i]]++ == 0)
+					candidates[distinct++] = postings[i];
+			}
+		}
+
+		// score each candidate, starting from its overlap with the rare lists
+		long[] best = new long[Math.min(k, distinct + addedCount)];
+		int found = 0;
+		for (int c = 0; c < distinct; c++) {
+			int name = candidates[c];
+			int overlap = count[name];
+			count[name] = 0;
+			// a name of n grams needs minScore * (m + n) / 2 in common
+			int needed = (int) Math.ceil(minScore * (m + sizes[name]) / 2 - 1e-9);
+			for (int j = prefix; j < m && overlap + (m - j) >= needed; j++) {
+				int g = (int) byLength[j];
+				if (Arrays.binarySearch(postings, offsets[g], offsets[g + 1],
+						name) >= 0)
+					overlap++;
+			}
+			if (overlap < needed)
+				continue; // cannot score enough
+			double score = 2.0 * overlap / (m + sizes[name]);
+			// higher score, then lower index, gives the larger key
+			long key = ((long) (score * (1 << 30)) << 32)
+					| (Integer.MAX_VALUE - name);
+			found = insert(best, found, key);
+		}
+		counters.offer(count); // every entry is back to 0
+
+		// then each name added since the lists were laid out
+		for (int a = 0; a < addedCount; a++) {
+			int name = added[a];
+			int size = sizes[name];
+			int overlap = overlap(grams, m, addedGrams[a], size);
+			int needed = (int) Math.ceil(minScore * (m + size) / 2 - 1e-9);
+			if (overlap < needed)
+				continue;
+			double score = 2.0 * overlap / (m + size);
+			long key = ((long) (score * (1 << 30)) << 32)
+					| (Integer.MAX_VALUE - name);
+			found = insert(best, found, key);
+		}
+		int[] names = new int[found];
+		for (int i = 0; i < found; i++) {
+			names[i] = Integer.MAX_VALUE - (int) best[i];
+		}
+		return names;
+	}
+
+	/**
+	 * Returns the Dice coefficient of two strings' trigram sets, after both
+	 * are normalized the way names are.
+	 * 
+	 * @param a
+	 *            one string
+	 * @param b
+	 *            the other string
+	 * @return the score, between 0 and 1
+	 */
+	public static double score(String a, String b) {
+		int[] x = new int[a.length() + 2];
+		int[] y = new int[b.length() + 2];
+		int m = grams(a, x);
+		int n = grams(b, y);
+		if (m + n == 0)
+			return 0;
+		return 2.0 * overlap(x, m, y, n) / (m + n);
+	}
+
+	// the number of grams two sorted lists of distinct grams have in common
+	private static int overlap(int[] x, int m, int[] y, int n) {
+		int overlap = 0;
+		for (int i = 0, j = 0; i < m && j < n;) {
+			if (x[i] < y[j]) {
+				i++;
+			} else if (x[i] > y[j]) {
+				j++;
+			} else {
+				overlap++;
+				i++;
+				j++;
+			}
+		}
+		return overlap;
+	}
+
+	/**
+	 * Private Method: Lays the trigram lists out again with the added names
+	 * at the end of each list they belong to, which keeps every list sorted
+	 * by index since they were added in order.
+	 */
+	private void merge() {
+		int[] merged = new int[GRAMS + 1];
+		for (int g = 0; g < GRAMS; g++) {
+			merged[g + 1] = offsets[g + 1] - offsets[g];
+		}
+		for (int a = 0; a < addedCount; a++) {
+			for (int g : addedGrams[a]) {
+				merged[g + 1]++;
+			}
+		}
+		for (int g = 0; g < GRAMS; g++) {
+			merged[g + 1] += merged[g];
+		}
+		int[] lists = new int[merged[GRAMS]];
+		int[] next = Arrays.copyOf(merged, GRAMS);
+		for (int g = 0; g < GRAMS; g++) {
+			int length = offsets[g + 1] - offsets[g];
+			System.arraycopy(postings, offsets[g], lists, next[g], length);
+			next[g] += length;
+		}
+		for (int a = 0; a < addedCount; a++) {
+			for (int g : addedGrams[a]) {
+				lists[next[g]++] = added[a];
+			}
+		}
+		offsets = merged;
+		postings = lists;
+		Arrays.fill(addedGrams, 0, addedCount, null);
+		addedCount = 0;
+	}
+
+	/**
+	 * Private Method: Adds a key to a list kept in descending order, holding
+	 * at most best.length keys.
+	 * 
+	 * @param best
+	 *            The list.
+	 * @param found
+	 *            The number of keys in the list.
+	 * @param key
+	 *            The key to add.
+	 * @return The new number of keys in the list.
+	 */
+	private static int insert(long[] best, int found, long key) {
+		if (found == best.length && key <= best[found - 1])
+			return found; // not good enough
+		int i = Math.min(found, best.length - 1);
+		while (i > 0 && best[i - 1] < key) {
+			best[i] = best[i - 1];
+			i--;
+		}
+		best[i] = key;
+		return Math.min(found + 1, best.length);
+	}
+
+	/**
+	 * Private Method: Normalizes a name and finds its distinct trigrams.
+	 * 
+	 * @param name
+	 *            The name.
+	 * @param grams
+	 *            Where to put the trigrams, sorted; at least
+	 *            name.length() + 2 long to be sure of holding them all.
+	 * @return The number of distinct trigrams, which may be more than
+	 *         grams.length, in which case only the first are stored and the
+	 *         caller must try again with a larger array.
+	 */
+	private static int grams(String name, int[] grams) {
+		String text = normalize(name);
+		if (text.length() == 0)
+			return 0;
+		int n = 0;
+		int a = SPACE, b = code(text.charAt(0));
+		for (int i = 1; i <= text.length(); i++) {
+			int c = (i < text.length()) ? code(text.charAt(i)) : SPACE;
+			int g = (a << 12) | (b << 6) | c;
+			if (n < grams.length)
+				grams[n] = g;
+			n++;
+			a = b;
+			b = c;
+		}
+		if (n > grams.length)
+			return n;
+		Arrays.sort(grams, 0, n);
+		int distinct = 0;
+		for (int i = 0; i < n; i++) {
+			if (i == 0 || grams[i] != grams[i - 1])
+				grams[distinct++] = grams[i];
+		}
+		return distinct;
+	}
+
+	/**
+	 * Private Method: Lower-cases a name, drops anything in parentheses,
+	 * turns punctuation into spaces and sorts the words.
+	 * 
+	 * @param name
+	 *            The name.
+	 * @return The words of the name, sorted and separated by single spaces.
+	 */
+	private static String normalize(String name) {
+		StringBuilder text = new StringBuilder(name.length());
+		int depth = 0; // parentheses open
+		for (int i = 0; i < name.length(); i++) {
+			char ch = name.charAt(i);
+			if (ch == '(') {
+				depth++;
+			} else if (ch == ')') {
+				depth = Math.max(0, depth - 1);
+			} else if (depth == 0) {
+				text.append(Character.isLetterOrDigit(ch) ? Character
+						.toLowerCase(ch) : ' ');
+			}
+		}
+		String trimmed = text.toString().trim();
+		if (trimmed.length() == 0)
+			return trimmed;
+		String[] words = trimmed.split(" +");
+		Arrays.sort(words);
+		StringBuilder sorted = new StringBuilder(trimmed.length());
+		for (String word : words) {
+			if (sorted.length() > 0)
+				sorted.append(' ');
+			sorted.append(word);
+		}
+		return sorted.toString();
+	}
+
+	// the 6-bit code of a normalized character
+	private static int code(char ch) {
+		if (ch >= 'a' && ch <= 'z')
+			return ch - 'a';
+		if (ch >= '0' && ch <= '9')
+			return 26 + ch - '0';
+		if (ch == ' ')
+			return SPACE;
+		return OTHER;
+	}
+}
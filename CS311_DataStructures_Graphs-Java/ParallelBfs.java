@@ -0,0 +1,324 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The <tt>ParallelBfs</tt> class runs a breadth-first search of a
+ * {@link Graph} one level at a time, each level split across the cores of a
+ * {@link ForkJoinPool}, and finds the same distances as a sequential search.
+ * <p>
+ * Each level is searched in one of two directions. A <em>top-down</em> step
+ * scans the edges of the frontier and claims every unvisited neighbor; the
+ * visited marks are a bitmap whose words are set by compare-and-set, so each
+ * vertex is claimed by exactly one thread. A <em>bottom-up</em> step instead
+ * has every unvisited vertex look through its own edges for a neighbor in the
+ * frontier, and stops at the first one found; each thread owns whole 64-bit
+ * words of the bitmaps, so no atomic operations are needed. Bottom-up steps
+ * pay off when the frontier is large, since most of the unvisited vertices
+ * find a parent after a few edges.
+ * <p>
+ * The search switches to bottom-up when the frontier's edges outnumber
+ * 1/{@link #ALPHA} of the unvisited vertices' edges, and back to top-down when
+ * the frontier shrinks below 1/{@link #BETA} of the vertices (the heuristic
+ * of Beamer, Asanovi&#263; and Patterson). Either way a vertex's parent is a
+ * neighbor one level closer to the source, so the parents form a shortest
+ * path tree, though not always the one a sequential search would find.
+ *
+ * @author Cameron Stanavige
+ */
+public class ParallelBfs {
+	/**
+	 * Top-down steps switch to bottom-up once the frontier has more than
+	 * 1/ALPHA of the unvisited vertices' edges.
+	 */
+	public static final int ALPHA = 14;
+
+	/**
+	 * Bottom-up steps switch back to top-down once the frontier has fewer
+	 * than 1/BETA of the vertices.
+	 */
+	public static final int BETA = 24;
+
+	private static final int CHUNK = 1 << 12; // vertices per task, a multiple of 64
+
+	private final Graph G;
+	private final ForkJoinPool pool;
+	private final int source;
+	private final int[] distance; // distance[v] = edges from source, or -1
+	private final int[] parent; // parent[v] = previous vertex toward source
+	private final AtomicLongArray visited; // bit v set once v is claimed
+	private int levels; // levels searched
+	private int bottomUpLevels; // of which bottom-up
+
+	/**
+	 * Computes the distance from <tt>source</tt> to every vertex of
+	 * <tt>G</tt>.
+	 * 
+	 * @param G
+	 *            the graph
+	 * @param source
+	 *            the source vertex
+	 * @param pool
+	 *            the pool to search on
+	 * @throws java.lang.IndexOutOfBoundsException
+	 *             unless 0 <= source < V
+	 */
+	public ParallelBfs(Graph G, int source, ForkJoinPool pool) {
+		if (source < 0 || source >= G.V())
+			throw new IndexOutOfBoundsException("vertex " + source
+					+ " is not between 0 and " + (G.V() - 1));
+		this.G = G;
+		this.pool = pool;
+		this.source = source;
+		G.freeze();
+		int V = G.V();
+		distance = new int[V];
+		parent = new int[V];
+		Arrays.fill(distance, -1);
+		visited = new AtomicLongArray((V + 63) / 64);
+		distance[source] = 0;
+		parent[source] = source;
+		visited.set(source >>> 6, 1L << source);
+		search();
+	}
+
+	/**
+	 * Returns the source vertex.
+	 * 
+	 * @return the source vertex
+	 */
+	public int source() {
+		return source;
+	}
+
+	/**
+	 * Returns the number of edges on a shortest path from the source to
+	 * <tt>v</tt>.
+	 * 
+	 * @param v
+	 *            the vertex
+	 * @return the distance to <tt>v</tt>, or -1 if there is no path
+	 */
+	public int distance(int v) {
+		return distance[v];
+	}
+
+	/**
+	 * Returns the vertex before <tt>v</tt> on a shortest path from the source.
+	 * 
+	 * @param v
+	 *            a vertex that can be reached from the source
+	 * @return the next vertex toward the source (the source itself if
+	 *         <tt>v</tt> is the source)
+	 */
+	public int parent(int v) {
+		return parent[v];
+	}
+
+	/**
+	 * Returns the number of levels searched, and how many of them were
+	 * searched bottom-up.
+	 * 
+	 * @return an array of two entries: the levels, and the bottom-up levels
+	 */
+	public int[] levels() {
+		return new int[] { levels, bottomUpLevels };
+	}
+
+	// the distance and parent arrays, handed over to a DistanceTable
+	int[] distances() {
+		return distance;
+	}
+
+	int[] parents() {
+		return parent;
+	}
+
+	/**
+	 * Private Method: Searches level by level until a level finds no new
+	 * vertices, choosing the direction of each step.
+	 */
+	private void search() {
+		int V = G.V();
+		int[] frontier = { source }; // used by top-down steps
+		long[] front = null; // the same frontier as a bitmap, for bottom-up
+		int size = 1; // vertices in the frontier
+		long frontierEdges = G.degree(source);
+		long unvisitedEdges = 2L * G.E() - frontierEdges;
+		boolean bottomUp = false;
+		for (int d = 0; size > 0; d++) {
+			if (!bottomUp && frontierEdges > unvisitedEdges / ALPHA) {
+				bottomUp = true;
+				front = toBitmap(frontier, size, V);
+			} else if (bottomUp && size < V / BETA) {
+				bottomUp = false;
+				frontier = toList(front, size);
+			}
+			long[] counts; // vertices found, and their edges
+			if (bottomUp) {
+				long[] next = new long[front.length];
+				counts = bottomUpStep(front, next, d);
+				front = next;
+				bottomUpLevels++;
+			} else {
+				List<int[]> found = topDownStep(frontier, size, d);
+				counts = new long[2];
+				for (int[] part : found) {
+					counts[0] += part[0];
+				}
+				frontier = new int[(int) counts[0]];
+				int n = 0;
+				for (int[] part : found) {
+					System.arraycopy(part, 1, frontier, n, part[0]);
+					n += part[0];
+				}
+				for (int i = 0; i < n; i++) {
+					counts[1] += G.degree(frontier[i]);
+				}
+			}
+			levels++;
+			size = (int) counts[0];
+			frontierEdges = counts[1];
+			unvisitedEdges -= frontierEdges;
+		}
+	}
+
+	/**
+	 * Private Method: Claims the unvisited neighbors of the frontier.
+	 * 
+	 * @param frontier
+	 *            The frontier, in frontier[0..size).
+	 * @param size
+	 *            The number of vertices in the frontier.
+	 * @param d
+	 *            The distance of the frontier from the source.
+	 * @return For each task, the number of vertices it claimed followed by
+	 *         those vertices.
+	 */
+	private List<int[]> topDownStep(final int[] frontier, int size, final int d) {
+		List<Callable<int[]>> tasks = new ArrayList<Callable<int[]>>();
+		int chunk = chunkSize(size);
+		for (int lo = 0; lo < size; lo += chunk) {
+			final int from = lo, to = Math.min(lo + chunk, size);
+			tasks.add(new Callable<int[]>() {
+				public int[] call() {
+					int[] targets = G.targets();
+					int[] found = new int[1 + 16];
+					int n = 0;
+					for (int q = from; q < to; q++) {
+						int v = frontier[q];
+						for (int i = G.adjStart(v), end = i + G.degree(v); i < end; i++) {
+							int w = targets[i];
+							if (claim(w)) {
+								distance[w] = d + 1;
+								parent[w] = v;
+								if (n + 1 == found.length)
+									found = Arrays.copyOf(found, 2 * found.length);
+								found[++n] = w;
+							}
+						}
+					}
+					found[0] = n;
+					return found;
+				}
+			});
+		}
+		return ParallelTasks.invokeAll(pool, tasks);
+	}
+
+	/**
+	 * Private Method: Has every unvisited vertex look for a parent in the
+	 * frontier. Each task owns whole words of the bitmaps.
+	 * 
+	 * @param front
+	 *            The frontier as a bitmap.
+	 * @param next
+	 *            Where to mark the vertices found, all clear.
+	 * @param d
+	 *            The distance of the frontier from the source.
+	 * @return The number of vertices found, and the sum of their degrees.
+	 */
+	private long[] bottomUpStep(final long[] front, final long[] next,
+			final int d) {
+		final int V = G.V();
+		List<Callable<long[]>> tasks = new ArrayList<Callable<long[]>>();
+		int chunk = chunkSize(V);
+		for (int lo = 0; lo < V; lo += chunk) {
+			final int from = lo, to = Math.min(lo + chunk, V);
+			tasks.add(new Callable<long[]>() {
+				public long[] call() {
+					int[] targets = G.targets();
+					long found = 0, edges = 0;
+					for (int v = from; v < to; v++) {
+						if (distance[v] >= 0)
+							continue;
+						for (int i = G.adjStart(v), end = i + G.degree(v); i < end; i++) {
+							int w = targets[i];
+							if ((front[w >>> 6] & (1L << w)) != 0) {
+								distance[v] = d + 1;
+								parent[v] = w;
+								next[v >>> 6] |= 1L << v;
+								found++;
+								edges += G.degree(v);
+								break;
+							}
+						}
+					}
+					for (int word = from >>> 6; word < (to + 63) >>> 6; word++) {
+						if (next[word] != 0) // only this task writes the word
+							visited.set(word, visited.get(word) | next[word]);
+					}
+					return new long[] { found, edges };
+				}
+			});
+		}
+		long[] counts = new long[2];
+		for (long[] part : ParallelTasks.invokeAll(pool, tasks)) {
+			counts[0] += part[0];
+			counts[1] += part[1];
+		}
+		return counts;
+	}
+
+	// sets v's visited bit; true if this call set it
+	private boolean claim(int v) {
+		int word = v >>> 6;
+		long bit = 1L << v;
+		long old = visited.get(word);
+		while ((old & bit) == 0) {
+			if (visited.compareAndSet(word, old, old | bit))
+				return true;
+			old = visited.get(word);
+		}
+		return false;
+	}
+
+	// splits n items into a few tasks per thread, in multiples of 64
+	private int chunkSize(int n) {
+		int tasks = 4 * pool.getParallelism();
+		int chunk = Math.max(CHUNK, (n + tasks - 1) / tasks);
+		return (chunk + 63) & ~63;
+	}
+
+	private static long[] toBitmap(int[] frontier, int size, int V) {
+		long[] front = new long[(V + 63) / 64];
+		for (int i = 0; i < size; i++) {
+			front[frontier[i] >>> 6] |= 1L << frontier[i];
+		}
+		return front;
+	}
+
+	private static int[] toList(long[] front, int size) {
+		int[] frontier = new int[size];
+		int n = 0;
+		for (int word = 0; word < front.length; word++) {
+			for (long bits = front[word]; bits != 0; bits &= bits - 1) {
+				frontier[n++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+			}
+		}
+		return frontier;
+	}
+}
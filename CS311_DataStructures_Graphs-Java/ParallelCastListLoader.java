@@ -0,0 +1,216 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The <tt>ParallelCastListLoader</tt> class builds a {@link SymbolGraph} from a
+ * cast list file on several cores at once. The file is memory-mapped with
+ * {@link FileChannel#map}, cut into chunks that each end on a line boundary,
+ * and every chunk is parsed on a {@link ForkJoinPool} by its own
+ * {@link CastListParser}, which gives the names in that chunk local indices
+ * and buffers the chunk's edges.
+ * <p>
+ * A merge step then walks the chunks in file order and adds each chunk's
+ * names to one {@link NameIndex} in local index order. Since a parser numbers
+ * names in the order it first sees them, this hands out global indices in the
+ * order the names first appear in the file, exactly as the single-threaded
+ * constructor {@link SymbolGraph#SymbolGraph(String, String)} does. The edges
+ * of every chunk are then renumbered in parallel and laid end to end in file
+ * order, so the resulting graph is identical as well.
+ *
+ * @author Cameron Stanavige
+ */
+public class ParallelCastListLoader {
+	private static final int MIN_CHUNK = 1 << 20; // 1 MB
+	private static final int MAX_CHUNK = 1 << 28; // 256 MB
+
+	private final String delimiter;
+	private final ForkJoinPool pool;
+
+	/**
+	 * Initializes a loader that uses the common fork/join pool.
+	 * 
+	 * @param delimiter
+	 *            the delimiter between fields, as for
+	 *            {@link CastListParser#CastListParser(String)}
+	 */
+	public ParallelCastListLoader(String delimiter) {
+		this(delimiter, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Initializes a loader that parses on the given pool.
+	 * 
+	 * @param delimiter
+	 *            the delimiter between fields, as for
+	 *            {@link CastListParser#CastListParser(String)}
+	 * @param pool
+	 *            the pool to parse on
+	 */
+	public ParallelCastListLoader(String delimiter, ForkJoinPool pool) {
+		CastListParser.delimiterByte(delimiter); // fail early if it is bad
+		this.delimiter = delimiter;
+		this.pool = pool;
+	}
+
+	/**
+	 * Reads the cast list in <tt>filename</tt>.
+	 * 
+	 * @param filename
+	 *            the name of the file
+	 * @return the symbol graph of the file, identical to
+	 *         <tt>new SymbolGraph(filename, delimiter)</tt>
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public SymbolGraph load(String filename) throws IOException {
+		long start = System.nanoTime();
+		RandomAccessFile file = new RandomAccessFile(filename, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			List<ByteBuffer> chunks = map(channel);
+
+			// parse every chunk with local indices
+			List<Callable<CastListParser>> parses = new ArrayList<Callable<CastListParser>>();
+			for (final ByteBuffer chunk : chunks) {
+				parses.add(new Callable<CastListParser>() {
+					public CastListParser call() {
+						CastListParser parser = new CastListParser(delimiter);
+						parser.parse(chunk, 0, chunk.limit(), true);
+						return parser;
+					}
+				});
+			}
+			List<CastListParser> parsers = ParallelTasks.invokeAll(pool, parses);
+			long parsed = System.nanoTime();
+			SymbolGraph sg = merge(parsers);
+			sg.metrics().recordRead(parsed - start);
+			sg.metrics().recordBuild(System.nanoTime() - parsed); // merge too
+			return sg;
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Private Method: Maps the file as a list of read-only chunks, each ending
+	 * just after a <tt>'\n'</tt> (or at the end of the file).
+	 * 
+	 * @param channel
+	 *            The channel of the file.
+	 * @return The mapped chunks, in file order.
+	 * @throws IOException
+	 *             If the file cannot be read.
+	 */
+	private List<ByteBuffer> map(FileChannel channel) throws IOException {
+		long size = channel.size();
+		// a few chunks per thread balance the load; one thread needs just one
+		int parallelism = pool.getParallelism();
+		long target = size / (parallelism == 1 ? 1 : 4 * parallelism);
+		target = Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, target));
+		List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+		long start = 0;
+		while (start < size) {
+			long end = lineEnd(channel, Math.min(start + target, size));
+			MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY,
+					start, end - start);
+			chunks.add(chunk);
+			start = end;
+		}
+		return chunks;
+	}
+
+	/**
+	 * Private Method: Finds the end of the line that position <tt>p</tt> is
+	 * on.
+	 * 
+	 * @param channel
+	 *            The channel of the file.
+	 * @param p
+	 *            A position in the file.
+	 * @return The position just after the first <tt>'\n'</tt> at or after
+	 *         <tt>p</tt> - 1, or the size of the file if there is none.
+	 * @throws IOException
+	 *             If the file cannot be read.
+	 */
+	private static long lineEnd(FileChannel channel, long p)
+			throws IOException {
+		long size = channel.size();
+		if (p >= size)
+			return size;
+		ByteBuffer buf = ByteBuffer.allocate(8192);
+		for (long pos = p - 1; pos < size; pos += buf.limit()) {
+			buf.clear();
+			if (channel.read(buf, pos) <= 0)
+				break;
+			buf.flip();
+			for (int i = 0; i < buf.limit(); i++) {
+				if (buf.get(i) == '\n')
+					return pos + i + 1;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Private Method: Gives the names of every chunk global indices, in file
+	 * order, and renumbers and concatenates the edges of the chunks.
+	 * 
+	 * @param parsers
+	 *            The parser of every chunk, in file order.
+	 * @return The symbol graph of the whole file.
+	 */
+	private SymbolGraph merge(List<CastListParser> parsers) {
+		if (parsers.size() == 1) { // local indices are already global
+			CastListParser parser = parsers.get(0);
+			return new SymbolGraph(parser.names(), parser.actors(),
+					parser.graph());
+		}
+		NameIndex names = new NameIndex();
+		final int[][] global = new int[parsers.size()][];
+		int[] firstEdge = new int[parsers.size() + 1];
+		for (int c = 0; c < parsers.size(); c++) {
+			NameIndex local = parsers.get(c).names();
+			global[c] = new int[local.size()];
+			for (int i = 0; i < local.size(); i++) {
+				global[c][i] = names.put(local.name(i));
+			}
+			firstEdge[c + 1] = firstEdge[c] + parsers.get(c).E();
+		}
+
+		final boolean[] actors = new boolean[names.size()];
+		final int[] edges = new int[2 * firstEdge[parsers.size()]];
+		List<Callable<Void>> renumbers = new ArrayList<Callable<Void>>();
+		for (int c = 0; c < parsers.size(); c++) {
+			final int chunk = c;
+			final CastListParser parser = parsers.get(c);
+			final int offset = 2 * firstEdge[c];
+			renumbers.add(new Callable<Void>() {
+				public Void call() {
+					int[] map = global[chunk];
+					boolean[] local = parser.actors();
+					for (int i = 0; i < local.length; i++) {
+						if (local[i])
+							actors[map[i]] = true; // same value from any chunk
+					}
+					int[] localEdges = parser.edges();
+					for (int e = 0; e < 2 * parser.E(); e++) {
+						edges[offset + e] = map[localEdges[e]];
+					}
+					return null;
+				}
+			});
+		}
+		ParallelTasks.invokeAll(pool, renumbers);
+
+		Graph G = new Graph(names.size(), edges, edges.length / 2);
+		G.freeze();
+		return new SymbolGraph(names, actors, G);
+	}
+}
@@ -0,0 +1,56 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * The <tt>ParallelTasks</tt> class runs a list of tasks on a
+ * {@link ForkJoinPool} and waits for all of them, the way every parallel step
+ * in this package does: the loader's parse and merge, and the reports that
+ * split their work across cores.
+ *
+ * @author Cameron Stanavige
+ */
+public class ParallelTasks {
+
+	// this class only has static methods
+	private ParallelTasks() {
+	}
+
+	/**
+	 * Runs every task on <tt>pool</tt> and collects the results. An unchecked
+	 * exception thrown by a task is thrown again here; a checked one is
+	 * wrapped in an {@link IllegalStateException}.
+	 * 
+	 * @param pool
+	 *            the pool to run the tasks on
+	 * @param tasks
+	 *            the tasks
+	 * @return the result of every task, in the order of <tt>tasks</tt>
+	 * @throws IllegalStateException
+	 *             if the calling thread is interrupted while waiting
+	 */
+	public static <T> List<T> invokeAll(ForkJoinPool pool,
+			List<Callable<T>> tasks) {
+		List<Future<T>> futures = pool.invokeAll(tasks);
+		List<T> results = new ArrayList<T>(futures.size());
+		try {
+			for (Future<T> f : futures) {
+				results.add(f.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IllegalStateException(cause);
+		}
+		return results;
+	}
+}
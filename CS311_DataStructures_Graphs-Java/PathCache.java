@@ -0,0 +1,243 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The <tt>PathCache</tt> class remembers the answers to recent path queries
+ * between pairs of vertices, up to a fixed number of pairs, and forgets the
+ * least recently used pair when it is full. A path is stored as the
+ * <tt>int</tt> indices of the vertices between its two ends, and a pair with
+ * no path at all is remembered too, as {@link #NO_PATH}.
+ * <p>
+ * A pair is the same entry in either order: the path is stored as it runs
+ * from the higher-numbered vertex back to the lower one, and the caller
+ * reverses it when it asked the other way round.
+ * <p>
+ * The pairs are spread over several independently locked stripes, each a
+ * {@link LinkedHashMap} in access order, so threads looking up different
+ * pairs seldom wait for each other. Each stripe holds an equal share of the
+ * capacity, which makes the eviction order approximate: the pair dropped is
+ * the least recently used one in its stripe. Hits, misses and evictions are
+ * counted in {@link LongAdder}s.
+ *
+ * @author Cameron Stanavige
+ */
+public class PathCache {
+	/**
+	 * The path stored for a pair of vertices that are not connected. Compare
+	 * with <tt>==</tt>: the path of two adjacent vertices is empty as well.
+	 */
+	public static final int[] NO_PATH = new int[0];
+
+	private static final int STRIPES = 16;
+
+	private final Stripe[] stripes;
+	private final int capacity;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Initializes an empty cache.
+	 * 
+	 * @param capacity
+	 *            the most pairs to remember
+	 * @throws java.lang.IllegalArgumentException
+	 *             if <tt>capacity</tt> is less than 1
+	 */
+	public PathCache(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive: "
+					+ capacity);
+		int n = Math.min(STRIPES, capacity);
+		stripes = new Stripe[n];
+		for (int s = 0; s < n; s++) {
+			// spread the remainder over the first stripes
+			stripes[s] = new Stripe(capacity / n + (s < capacity % n ? 1 : 0));
+		}
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Looks up the path between two vertices.
+	 * 
+	 * @param v
+	 *            one vertex
+	 * @param w
+	 *            the other vertex
+	 * @return the stored path, from the higher of <tt>v</tt> and <tt>w</tt>
+	 *         to the lower; {@link #NO_PATH} if they are known not to be
+	 *         connected; or <tt>null</tt> if the pair is not in the cache
+	 */
+	public int[] get(int v, int w) {
+		long key = key(v, w);
+		Stripe stripe = stripe(key);
+		int[] path;
+		synchronized (stripe) {
+			path = stripe.get(key);
+		}
+		if (path == null)
+			misses.increment();
+		else
+			hits.increment();
+		return path;
+	}
+
+	/**
+	 * Stores the path between two vertices, replacing any path stored for
+	 * them before.
+	 * 
+	 * @param v
+	 *            one vertex
+	 * @param w
+	 *            the other vertex
+	 * @param path
+	 *            the path, from the higher of <tt>v</tt> and <tt>w</tt> to the
+	 *            lower, or {@link #NO_PATH}; it must not be changed afterwards
+	 */
+	public void put(int v, int w, int[] path) {
+		long key = key(v, w);
+		Stripe stripe = stripe(key);
+		synchronized (stripe) {
+			stripe.put(key, path);
+		}
+	}
+
+	/**
+	 * Forgets every pair, as when the graph the paths were found in has
+	 * changed. The counters are not reset.
+	 */
+	public void clear() {
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				stripe.clear();
+			}
+		}
+	}
+
+	/**
+	 * Forgets the pairs a filter matches, as when a change to the graph can
+	 * only have shortened some of the paths. The counters are not reset.
+	 * 
+	 * @param filter
+	 *            which pairs to forget
+	 */
+	public void forget(Filter filter) {
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				Iterator<Map.Entry<Long, int[]>> pairs = stripe.entrySet()
+						.iterator();
+				while (pairs.hasNext()) {
+					Map.Entry<Long, int[]> pair = pairs.next();
+					long key = pair.getKey();
+					if (filter.matches((int) (key >>> 32), (int) key,
+							pair.getValue()))
+						pairs.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of pairs stored.
+	 * 
+	 * @return the number of pairs
+	 */
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				size += stripe.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the most pairs this cache remembers.
+	 * 
+	 * @return the capacity
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the number of lookups that found their pair.
+	 * 
+	 * @return the number of hits
+	 */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of lookups that did not find their pair.
+	 * 
+	 * @return the number of misses
+	 */
+	public long misses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of pairs forgotten to make room for new ones.
+	 * 
+	 * @return the number of evictions
+	 */
+	public long evictions() {
+		return evictions.sum();
+	}
+
+	// the same key for (v, w) and (w, v)
+	private static long key(int v, int w) {
+		return ((long) Math.min(v, w) << 32) | Math.max(v, w);
+	}
+
+	// mixes both halves of the key, so pairs sharing a vertex spread out
+	private Stripe stripe(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return stripes[(int) ((h >>> 32) % stripes.length)];
+	}
+
+	/**
+	 * Chooses pairs to forget.
+	 */
+	public interface Filter {
+		/**
+		 * Returns true if the pair is to be forgotten.
+		 * 
+		 * @param v
+		 *            the lower vertex of the pair
+		 * @param w
+		 *            the higher vertex of the pair
+		 * @param path
+		 *            the stored path, from <tt>w</tt> to <tt>v</tt>, or
+		 *            {@link #NO_PATH}
+		 * @return true to forget the pair
+		 */
+		boolean matches(int v, int w, int[] path);
+	}
+
+	/**
+	 * One stripe: a map in access order that drops its eldest pair when it
+	 * grows past its share of the capacity.
+	 */
+	private class Stripe extends LinkedHashMap<Long, int[]> {
+		private static final long serialVersionUID = 1L;
+		private final int capacity;
+
+		Stripe(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+			if (size() <= capacity)
+				return false;
+			evictions.increment();
+			return true;
+		}
+	}
+}
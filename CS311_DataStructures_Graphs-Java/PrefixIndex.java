@@ -0,0 +1,394 @@
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The <tt>PrefixIndex</tt> class completes a prefix to the names that start
+ * with it, most connected first, for as-you-type suggestions.
+ * <p>
+ * The vertices are sorted once by name, ignoring case, so the names that
+ * start with any prefix are a contiguous run of that order, found by two
+ * binary searches that compare the prefix against the names in place. The
+ * index keeps only that order and the degrees; the names themselves are the
+ * caller's array, shared rather than copied.
+ * <p>
+ * A segment tree over the sorted order holds, for every range, the position
+ * of its vertex of highest degree. The top <em>k</em> of a run are then
+ * drawn from a small heap of ranges: take the range whose best vertex is
+ * best overall, report that vertex, and put back the two pieces of the range
+ * on either side of it. A query takes time proportional to
+ * <em>k</em> log <em>V</em> and allocates only its result and a heap of
+ * 2<em>k</em> + 1 entries, nothing per candidate. Vertices of equal degree
+ * are ranked by index, lowest first.
+ * <p>
+ * A degree that changes is put right in the tree in time proportional to
+ * log <em>V</em>. A vertex added after the index is built waits in a short
+ * list that every query checks directly, and the waiting vertices are merged
+ * into the sorted order once there are more of them than the square root of
+ * the number indexed, so that neither the checking nor the merging ever
+ * dominates.
+ *
+ * @author Cameron Stanavige
+ */
+public class PrefixIndex {
+	private String[] names; // by vertex
+	private int[] order; // vertices sorted by name, ignoring case
+	private int[] degree; // degree[i] = degree of order[i]
+	private int[] tree; // tree[node] = best position in node's range
+	private int leaves; // first leaf node; a power of two
+
+	// position[v] = position of v in order, -(a + 2) if v is added[a], or -1
+	private int[] position;
+
+	// vertices added since the order was sorted, and their degrees
+	private int[] added = new int[16];
+	private int[] addedDegree = new int[16];
+	private int addedCount;
+
+	/**
+	 * Indexes the names of the included vertices of <tt>G</tt>.
+	 * 
+	 * @param G
+	 *            the graph
+	 * @param names
+	 *            the name of every vertex, by index; not copied, so it must
+	 *            not change, except for names added to it or to a longer
+	 *            copy of it passed to {@link #add(String[], int, int)}
+	 * @param included
+	 *            which vertices to index, or <tt>null</tt> for all of them
+	 */
+	public PrefixIndex(Graph G, final String[] names, boolean[] included) {
+		this.names = names;
+		int n = 0;
+		for (int v = 0; v < names.length; v++) {
+			if (included == null || included[v])
+				n++;
+		}
+		Integer[] sorted = new Integer[n];
+		n = 0;
+		for (int v = 0; v < names.length; v++) {
+			if (included == null || included[v])
+				sorted[n++] = v;
+		}
+		Arrays.sort(sorted, new Comparator<Integer>() {
+			public int compare(Integer v, Integer w) {
+				return compareNames(names, v, w);
+			}
+		});
+		order = new int[n];
+		degree = new int[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = sorted[i];
+			degree[i] = G.degree(order[i]);
+		}
+		position = new int[names.length];
+		build();
+	}
+
+	/**
+	 * Returns the number of names indexed.
+	 * 
+	 * @return the number of names
+	 */
+	public int size() {
+		return order.length + addedCount;
+	}
+
+	/**
+	 * Adds a vertex to the index.
+	 * 
+	 * @param names
+	 *            the name of every vertex, by index, including <tt>v</tt>;
+	 *            not copied, and used from now on in place of the array
+	 *            given before
+	 * @param v
+	 *            the vertex
+	 * @param degree
+	 *            its degree
+	 * @throws java.lang.IllegalArgumentException
+	 *             if <tt>v</tt> is indexed already
+	 */
+	public void add(String[] names, int v, int degree) {
+		if (v < position.length && position[v] != -1)
+			throw new IllegalArgumentException("Vertex " + v
+					+ " is indexed already");
+		if (v >= position.length) {
+			int length = position.length;
+			position = Arrays.copyOf(position, Math.max(v + 1, 2 * length));
+			Arrays.fill(position, length, position.length, -1);
+		}
+		this.names = names;
+		if (addedCount == added.length) {
+			added = Arrays.copyOf(added, 2 * addedCount);
+			addedDegree = Arrays.copyOf(addedDegree, 2 * addedCount);
+		}
+		added[addedCount] = v;
+		addedDegree[addedCount] = degree;
+		position[v] = -(addedCount + 2);
+		addedCount++;
+		if ((long) addedCount * addedCount > order.length)
+			merge();
+	}
+
+	/**
+	 * Changes the degree of an indexed vertex.
+	 * 
+	 * @param v
+	 *            the vertex
+	 * @param degree
+	 *            its new degree
+	 * @throws java.lang.IllegalArgumentException
+	 *             unless <tt>v</tt> is indexed
+	 */
+	public void setDegree(int v, int degree) {
+		int p = (v >= 0 && v < position.length) ? position[v] : -1;
+		if (p == -1)
+			throw new IllegalArgumentException("Vertex " + v
+					+ " is not indexed");
+		if (p < 0) {
+			addedDegree[-p - 2] = degree;
+			return;
+		}
+		this.degree[p] = degree;
+		for (int node = (leaves + p) >>> 1; node >= 1; node >>>= 1) {
+			tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+		}
+	}
+
+	/**
+	 * Finds the vertices whose names start with <tt>prefix</tt>, ignoring
+	 * case, and returns those of highest degree.
+	 * 
+	 * @param prefix
+	 *            the prefix; the empty prefix matches every name
+	 * @param k
+	 *            the most vertices to return
+	 * @return at most <tt>k</tt> vertices, highest degree first
+	 */
+	public int[] complete(String prefix, int k) {
+		int lo = bound(prefix, false);
+		int hi = bound(prefix, true);
+
+		// the added vertices whose names start with the prefix, best first:
+		// higher degree, then lower vertex, gives the smaller key
+		long[] extra = new long[addedCount];
+		int matches = 0;
+		for (int a = 0; a < addedCount; a++) {
+			if (compare(prefix, names[added[a]]) == 0)
+				extra[matches++] = ((long) (Integer.MAX_VALUE - addedDegree[a])
+						<< 32) | added[a];
+		}
+		Arrays.sort(extra, 0, matches);
+
+		k = Math.max(0, Math.min(k, hi - lo + matches));
+		int[] top = new int[k];
+		if (k == 0)
+			return top;
+
+		// heap of ranges by their best position; each range is stored as
+		// its best position, start and end in three parallel arrays
+		int[] best = new int[2 * k + 1];
+		int[] from = new int[2 * k + 1];
+		int[] to = new int[2 * k + 1];
+		int heap = 0;
+		if (lo < hi)
+			heap = push(best, from, to, heap, query(lo, hi), lo, hi);
+		int e = 0; // next of the extra matches
+		for (int found = 0; found < k; found++) {
+			if (heap == 0 || (e < matches && !beats(best[0], extra[e]))) {
+				top[found] = (int) extra[e++];
+				continue;
+			}
+			int p = best[0], start = from[0], end = to[0];
+			top[found] = order[p];
+			heap--; // move the last range to the root and sink it
+			best[0] = best[heap];
+			from[0] = from[heap];
+			to[0] = to[heap];
+			sink(best, from, to, heap);
+			if (start < p)
+				heap = push(best, from, to, heap, query(start, p), start, p);
+			if (p + 1 < end)
+				heap = push(best, from, to, heap, query(p + 1, end), p + 1,
+						end);
+		}
+		return top;
+	}
+
+	/**
+	 * Private Method: Finds where the names starting with a prefix begin or
+	 * end in the sorted order.
+	 * 
+	 * @param prefix
+	 *            The prefix.
+	 * @param after
+	 *            False to find the first name starting with the prefix (or
+	 *            after it), true to find the first name after all of them.
+	 * @return The position.
+	 */
+	private int bound(String prefix, boolean after) {
+		int lo = 0, hi = order.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			int c = compare(prefix, names[order[mid]]);
+			if (c > 0 || (after && c == 0))
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	// compares a prefix with the start of a name, ignoring case as
+	// String.CASE_INSENSITIVE_ORDER does; 0 if the name starts with it
+	private static int compare(String prefix, String name) {
+		int n = Math.min(prefix.length(), name.length());
+		for (int i = 0; i < n; i++) {
+			char a = fold(prefix.charAt(i));
+			char b = fold(name.charAt(i));
+			if (a != b)
+				return a - b;
+		}
+		return (prefix.length() <= name.length()) ? 0 : 1;
+	}
+
+	private static char fold(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	/**
+	 * Private Method: Sorts the added vertices into the order and indexes
+	 * them with the rest.
+	 */
+	private void merge() {
+		Integer[] sorted = new Integer[addedCount];
+		for (int a = 0; a < addedCount; a++) {
+			sorted[a] = a;
+		}
+		final String[] names = this.names;
+		final int[] added = this.added;
+		Arrays.sort(sorted, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return compareNames(names, added[a], added[b]);
+			}
+		});
+		int n = order.length + addedCount;
+		int[] merged = new int[n];
+		int[] degrees = new int[n];
+		for (int i = 0, j = 0, out = 0; out < n; out++) {
+			if (j == addedCount || (i < order.length
+					&& compareNames(names, order[i], added[sorted[j]]) < 0)) {
+				merged[out] = order[i];
+				degrees[out] = degree[i++];
+			} else {
+				merged[out] = added[sorted[j]];
+				degrees[out] = addedDegree[sorted[j++]];
+			}
+		}
+		order = merged;
+		degree = degrees;
+		addedCount = 0;
+		build();
+	}
+
+	/**
+	 * Private Method: Builds the segment tree over the order and records
+	 * each vertex's position in it.
+	 */
+	private void build() {
+		int n = order.length;
+		int size = 1;
+		while (size < n)
+			size *= 2;
+		leaves = size;
+		tree = new int[2 * size];
+		Arrays.fill(tree, -1);
+		for (int i = 0; i < n; i++) {
+			tree[size + i] = i;
+		}
+		for (int node = size - 1; node >= 1; node--) {
+			tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+		}
+		Arrays.fill(position, -1);
+		for (int i = 0; i < n; i++) {
+			position[order[i]] = i;
+		}
+	}
+
+	// the order of the index: by name ignoring case, then by vertex
+	private static int compareNames(String[] names, int v, int w) {
+		int c = String.CASE_INSENSITIVE_ORDER.compare(names[v], names[w]);
+		return (c != 0) ? c : Integer.compare(v, w);
+	}
+
+	// is position p better than the added vertex with the given key?
+	private boolean beats(int p, long key) {
+		int d = Integer.MAX_VALUE - (int) (key >>> 32);
+		if (degree[p] != d)
+			return degree[p] > d;
+		return order[p] < (int) key;
+	}
+
+	// the better of two positions: higher degree, then lower vertex; -1 is
+	// no position
+	private int better(int i, int j) {
+		if (i < 0)
+			return j;
+		if (j < 0)
+			return i;
+		if (degree[i] != degree[j])
+			return (degree[i] > degree[j]) ? i : j;
+		return (order[i] < order[j]) ? i : j;
+	}
+
+	// the best position in [lo, hi), which must not be empty
+	private int query(int lo, int hi) {
+		int best = -1;
+		for (lo += leaves, hi += leaves; lo < hi; lo >>>= 1, hi >>>= 1) {
+			if ((lo & 1) == 1)
+				best = better(best, tree[lo++]);
+			if ((hi & 1) == 1)
+				best = better(best, tree[--hi]);
+		}
+		return best;
+	}
+
+	// adds a range to the heap and returns the new heap size
+	private int push(int[] best, int[] from, int[] to, int heap, int p,
+			int start, int end) {
+		int i = heap;
+		while (i > 0 && better(best[(i - 1) / 2], p) != best[(i - 1) / 2]) {
+			int parent = (i - 1) / 2;
+			best[i] = best[parent];
+			from[i] = from[parent];
+			to[i] = to[parent];
+			i = parent;
+		}
+		best[i] = p;
+		from[i] = start;
+		to[i] = end;
+		return heap + 1;
+	}
+
+	// restores the heap order below the root
+	private void sink(int[] best, int[] from, int[] to, int heap) {
+		int i = 0;
+		while (2 * i + 1 < heap) {
+			int child = 2 * i + 1;
+			if (child + 1 < heap
+					&& better(best[child], best[child + 1]) == best[child + 1])
+				child++;
+			if (better(best[i], best[child]) == best[i])
+				break;
+			swap(best, i, child);
+			swap(from, i, child);
+			swap(to, i, child);
+			i = child;
+		}
+	}
+
+	private static void swap(int[] a, int i, int j) {
+		int t = a[i];
+		a[i] = a[j];
+		a[j] = t;
+	}
+}
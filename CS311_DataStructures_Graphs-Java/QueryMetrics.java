@@ -0,0 +1,277 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The <tt>QueryMetrics</tt> class keeps the running statistics of one
+ * {@link SymbolGraph}: a latency histogram per kind of query, how many
+ * vertices and edges each path search visited, how often the path cache and
+ * the pinned sources answered without a search, and how long the graph took
+ * to read and to build.
+ * <p>
+ * Everything is kept in {@link LogHistogram}s and {@link LongAdder}s, so
+ * recording costs a clock read and a few uncontended additions per query,
+ * and queries on different threads never wait on each other to record. The
+ * statistics are published through {@link QueryMetricsMXBean} by a
+ * {@link MetricsRegistry}, such as {@link JmxMetricsRegistry}.
+ *
+ * @author Cameron Stanavige
+ */
+public class QueryMetrics implements QueryMetricsMXBean {
+	/**
+	 * The query {@link SymbolGraph#getKBNumber(String, String, boolean)}.
+	 */
+	public static final int KB_NUMBER = 0;
+
+	/**
+	 * The query {@link SymbolGraph#getPerformersMovies(String)}.
+	 */
+	public static final int PERFORMERS_MOVIES = 1;
+
+	/**
+	 * The query {@link SymbolGraph#topPerformers(int)}.
+	 */
+	public static final int TOP_PERFORMERS = 2;
+
+	/**
+	 * The query {@link SymbolGraph#topMovies(int)}.
+	 */
+	public static final int TOP_MOVIES = 3;
+
+	/**
+	 * The query {@link SymbolGraph#findTopActorPairings()}.
+	 */
+	public static final int TOP_PAIRINGS = 4;
+
+	/**
+	 * The batch queries {@link SymbolGraph#getKBNumbers}, timed per batch.
+	 */
+	public static final int KB_NUMBERS = 5;
+
+	/**
+	 * The names of the queries, indexed by the constants above.
+	 */
+	public static final String[] QUERIES = { "getKBNumber",
+			"getPerformersMovies", "topPerformers", "topMovies",
+			"findTopActorPairings", "getKBNumbers" };
+
+	private final LogHistogram[] latency = new LogHistogram[QUERIES.length];
+	private final LogHistogram verticesExpanded = new LogHistogram();
+	private final LogHistogram edgesScanned = new LogHistogram();
+	private final LongAdder pinnedAnswers = new LongAdder();
+	private final LongAdder disconnectedRejects = new LongAdder();
+	private final LongAdder cacheHits = new LongAdder();
+	private final LongAdder cacheMisses = new LongAdder();
+	private volatile long readNanos;
+	private volatile long buildNanos;
+
+	/**
+	 * Initializes empty statistics.
+	 */
+	public QueryMetrics() {
+		for (int q = 0; q < latency.length; q++) {
+			latency[q] = new LogHistogram();
+		}
+	}
+
+	/**
+	 * Records that a query has finished.
+	 * 
+	 * @param query
+	 *            the query, one of the constants of this class
+	 * @param start
+	 *            the {@link System#nanoTime()} at which the query started
+	 */
+	public void recordQuery(int query, long start) {
+		latency[query].record(System.nanoTime() - start);
+	}
+
+	/**
+	 * Records the work of one path search.
+	 * 
+	 * @param vertices
+	 *            the vertices whose edges were scanned
+	 * @param edges
+	 *            the edges scanned
+	 */
+	public void recordSearch(long vertices, long edges) {
+		verticesExpanded.record(vertices);
+		edgesScanned.record(edges);
+	}
+
+	/**
+	 * Records a path query answered from a pinned source's distance table.
+	 */
+	public void recordPinnedAnswer() {
+		pinnedAnswers.increment();
+	}
+
+	/**
+	 * Records a path query rejected because the actors are not connected.
+	 */
+	public void recordDisconnected() {
+		disconnectedRejects.increment();
+	}
+
+	/**
+	 * Records a path cache lookup.
+	 * 
+	 * @param hit
+	 *            true if the cache held the answer
+	 */
+	public void recordCacheLookup(boolean hit) {
+		if (hit)
+			cacheHits.increment();
+		else
+			cacheMisses.increment();
+	}
+
+	/**
+	 * Records how long reading the graph took.
+	 * 
+	 * @param nanos
+	 *            the nanoseconds spent reading and parsing the cast list, or
+	 *            the snapshot
+	 */
+	public void recordRead(long nanos) {
+		readNanos = nanos;
+	}
+
+	/**
+	 * Records how long building the graph took.
+	 * 
+	 * @param nanos
+	 *            the nanoseconds spent building the graph and its indexes
+	 */
+	public void recordBuild(long nanos) {
+		buildNanos = nanos;
+	}
+
+	/**
+	 * Returns the latency histogram of a query, in nanoseconds.
+	 * 
+	 * @param query
+	 *            the query, one of the constants of this class
+	 * @return the histogram
+	 */
+	public LogHistogram latency(int query) {
+		return latency[query];
+	}
+
+	/**
+	 * Returns the histogram of the vertices each path search expanded.
+	 * 
+	 * @return the histogram
+	 */
+	public LogHistogram verticesExpanded() {
+		return verticesExpanded;
+	}
+
+	/**
+	 * Returns the histogram of the edges each path search scanned.
+	 * 
+	 * @return the histogram
+	 */
+	public LogHistogram edgesScanned() {
+		return edgesScanned;
+	}
+
+	public Map<String, Long> getQueryCounts() {
+		Map<String, Long> map = new LinkedHashMap<String, Long>();
+		for (int q = 0; q < QUERIES.length; q++) {
+			map.put(QUERIES[q], latency[q].count());
+		}
+		return map;
+	}
+
+	public Map<String, Double> getMeanMicros() {
+		Map<String, Double> map = new LinkedHashMap<String, Double>();
+		for (int q = 0; q < QUERIES.length; q++) {
+			map.put(QUERIES[q], latency[q].mean() / 1000);
+		}
+		return map;
+	}
+
+	public Map<String, Long> getP50Micros() {
+		return percentileMicros(50);
+	}
+
+	public Map<String, Long> getP99Micros() {
+		return percentileMicros(99);
+	}
+
+	public Map<String, Long> getMaxMicros() {
+		Map<String, Long> map = new LinkedHashMap<String, Long>();
+		for (int q = 0; q < QUERIES.length; q++) {
+			map.put(QUERIES[q], latency[q].max() / 1000);
+		}
+		return map;
+	}
+
+	public long getSearches() {
+		return edgesScanned.count();
+	}
+
+	public double getMeanVerticesExpanded() {
+		return verticesExpanded.mean();
+	}
+
+	public double getMeanEdgesScanned() {
+		return edgesScanned.mean();
+	}
+
+	public long getP99EdgesScanned() {
+		return edgesScanned.percentile(99);
+	}
+
+	public long getPinnedAnswers() {
+		return pinnedAnswers.sum();
+	}
+
+	public long getDisconnectedRejects() {
+		return disconnectedRejects.sum();
+	}
+
+	public long getCacheHits() {
+		return cacheHits.sum();
+	}
+
+	public long getCacheMisses() {
+		return cacheMisses.sum();
+	}
+
+	public double getCacheHitRate() {
+		long hits = cacheHits.sum();
+		long lookups = hits + cacheMisses.sum();
+		return (lookups == 0) ? 0 : (double) hits / lookups;
+	}
+
+	public long getReadMillis() {
+		return readNanos / 1000000;
+	}
+
+	public long getBuildMillis() {
+		return buildNanos / 1000000;
+	}
+
+	public void reset() {
+		for (int q = 0; q < latency.length; q++) {
+			latency[q].reset();
+		}
+		verticesExpanded.reset();
+		edgesScanned.reset();
+		pinnedAnswers.reset();
+		disconnectedRejects.reset();
+		cacheHits.reset();
+		cacheMisses.reset();
+	}
+
+	// a percentile of every query's latency, in microseconds
+	private Map<String, Long> percentileMicros(double p) {
+		Map<String, Long> map = new LinkedHashMap<String, Long>();
+		for (int q = 0; q < QUERIES.length; q++) {
+			map.put(QUERIES[q], latency[q].percentile(p) / 1000);
+		}
+		return map;
+	}
+}
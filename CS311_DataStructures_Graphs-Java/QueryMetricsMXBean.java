@@ -0,0 +1,132 @@
+import java.util.Map;
+
+/**
+ * The management interface of {@link QueryMetrics}, as seen through JMX, for
+ * example in JConsole under <tt>SymbolGraph:type=QueryMetrics</tt>. Maps are
+ * keyed by the names in {@link QueryMetrics#QUERIES}; times are in
+ * microseconds, and percentiles are upper bounds within a factor of two.
+ *
+ * @author Cameron Stanavige
+ */
+public interface QueryMetricsMXBean {
+	/**
+	 * Returns how many times each query has run.
+	 * 
+	 * @return the counts, by query
+	 */
+	Map<String, Long> getQueryCounts();
+
+	/**
+	 * Returns the mean latency of each query.
+	 * 
+	 * @return the means in microseconds, by query
+	 */
+	Map<String, Double> getMeanMicros();
+
+	/**
+	 * Returns the median latency of each query.
+	 * 
+	 * @return the medians in microseconds, by query
+	 */
+	Map<String, Long> getP50Micros();
+
+	/**
+	 * Returns the 99th percentile latency of each query.
+	 * 
+	 * @return the percentiles in microseconds, by query
+	 */
+	Map<String, Long> getP99Micros();
+
+	/**
+	 * Returns the slowest latency of each query.
+	 * 
+	 * @return the maxima in microseconds, by query
+	 */
+	Map<String, Long> getMaxMicros();
+
+	/**
+	 * Returns the number of breadth-first searches run for path queries.
+	 * 
+	 * @return the number of searches
+	 */
+	long getSearches();
+
+	/**
+	 * Returns the mean number of vertices a search expanded.
+	 * 
+	 * @return the mean
+	 */
+	double getMeanVerticesExpanded();
+
+	/**
+	 * Returns the mean number of edges a search scanned.
+	 * 
+	 * @return the mean
+	 */
+	double getMeanEdgesScanned();
+
+	/**
+	 * Returns the 99th percentile of the edges a search scanned.
+	 * 
+	 * @return the percentile, an upper bound within a factor of two
+	 */
+	long getP99EdgesScanned();
+
+	/**
+	 * Returns the number of path queries answered from a pinned source's
+	 * distance table, with no search.
+	 * 
+	 * @return the number of answers
+	 */
+	long getPinnedAnswers();
+
+	/**
+	 * Returns the number of path queries rejected because the actors are in
+	 * different components.
+	 * 
+	 * @return the number of rejections
+	 */
+	long getDisconnectedRejects();
+
+	/**
+	 * Returns the number of path queries answered from the path cache.
+	 * 
+	 * @return the number of hits
+	 */
+	long getCacheHits();
+
+	/**
+	 * Returns the number of path queries the path cache could not answer.
+	 * 
+	 * @return the number of misses
+	 */
+	long getCacheMisses();
+
+	/**
+	 * Returns the share of path cache lookups that were hits.
+	 * 
+	 * @return the share, between 0 and 1; 0 if the cache was never asked
+	 */
+	double getCacheHitRate();
+
+	/**
+	 * Returns how long reading the cast list took when the graph was loaded.
+	 * 
+	 * @return the time in milliseconds
+	 */
+	long getReadMillis();
+
+	/**
+	 * Returns how long building the graph and its indexes took when it was
+	 * loaded.
+	 * 
+	 * @return the time in milliseconds
+	 */
+	long getBuildMillis();
+
+	/**
+	 * Forgets every query and search recorded so far. The load times are
+	 * kept.
+	 */
+	void reset();
+}
@@ -0,0 +1,223 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The <tt>ReadAheadInputStream</tt> class reads another stream on a thread of
+ * its own, a few chunks ahead of its reader, so that whatever work the other
+ * stream does to produce its bytes, such as inflating a gzip file, overlaps
+ * with the work of the thread consuming them.
+ * <p>
+ * The chunks go round between two bounded queues: the reading thread takes an
+ * empty chunk, fills it and hands it over; the consumer drains it and gives it
+ * back. So no more than a fixed number of chunks are ever allocated, and a
+ * reader that falls behind holds the reading thread up rather than letting it
+ * buffer the whole stream. An error on the reading thread is thrown to the
+ * consumer once the chunks read before it have been drained. The reading
+ * thread is the only one that touches the other stream, and closes it when
+ * it stops.
+ *
+ * @author Cameron Stanavige
+ */
+public class ReadAheadInputStream extends InputStream {
+	private static final int CHUNK = 1 << 16;
+	private static final int CHUNKS = 8;
+
+	private final InputStream in;
+	private final BlockingQueue<Chunk> full; // filled, in stream order
+	private final BlockingQueue<Chunk> empty; // ready to be filled
+	private final Thread reader;
+	private Chunk current; // being drained; null before the first chunk
+	private int position; // next byte of current to return
+	private boolean done; // the end of the stream, or an error, was reached
+	private volatile boolean closed; // the consumer has closed this stream
+	private volatile IOException closeError; // from closing in, or null
+
+	/**
+	 * Starts reading <tt>in</tt> ahead, in 64 KB chunks, at most eight chunks
+	 * ahead.
+	 * 
+	 * @param in
+	 *            the stream to read
+	 */
+	public ReadAheadInputStream(InputStream in) {
+		this(in, CHUNK, CHUNKS);
+	}
+
+	/**
+	 * Starts reading <tt>in</tt> ahead.
+	 * 
+	 * @param in
+	 *            the stream to read
+	 * @param chunkSize
+	 *            the bytes in a chunk
+	 * @param chunks
+	 *            the most chunks read ahead
+	 * @throws java.lang.IllegalArgumentException
+	 *             if <tt>chunkSize</tt> or <tt>chunks</tt> is less than 1
+	 */
+	public ReadAheadInputStream(InputStream in, int chunkSize, int chunks) {
+		if (chunkSize < 1 || chunks < 1)
+			throw new IllegalArgumentException(
+					"Chunk size and count must be positive");
+		this.in = in;
+		// one more chunk than can be queued, for the consumer to drain
+		full = new ArrayBlockingQueue<Chunk>(chunks + 1);
+		empty = new ArrayBlockingQueue<Chunk>(chunks + 1);
+		for (int i = 0; i <= chunks; i++) {
+			empty.add(new Chunk(chunkSize));
+		}
+		reader = new Thread(new Runnable() {
+			public void run() {
+				fill();
+			}
+		}, "read-ahead");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	public int read() throws IOException {
+		if (!next())
+			return -1;
+		return current.bytes[position++] & 0xFF;
+	}
+
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || len > b.length - off)
+			throw new IndexOutOfBoundsException();
+		if (len == 0)
+			return 0;
+		if (!next())
+			return -1;
+		int n = Math.min(len, current.length - position);
+		System.arraycopy(current.bytes, position, b, off, n);
+		position += n;
+		return n;
+	}
+
+	public int available() {
+		return (current == null) ? 0 : current.length - position;
+	}
+
+	/**
+	 * Stops the reading thread and waits for it to close the stream being
+	 * read. If the thread is in the middle of reading the other stream, that
+	 * read is let finish first, so the stream is never closed under it.
+	 * 
+	 * @throws IOException
+	 *             if closing the stream fails
+	 */
+	public void close() throws IOException {
+		done = true;
+		closed = true;
+		reader.interrupt(); // wakes it if it waits on a queue
+		try {
+			reader.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		if (closeError != null)
+			throw closeError;
+	}
+
+	/**
+	 * Private Method: Makes sure there is a byte to return, waiting for the
+	 * next chunk if the current one has been drained.
+	 * 
+	 * @return False at the end of the stream.
+	 * @throws IOException
+	 *             If reading the stream failed.
+	 */
+	private boolean next() throws IOException {
+		while (current == null || position == current.length) {
+			if (done)
+				return false;
+			if (current != null)
+				empty.add(current); // never full: there are only so many
+			try {
+				current = full.take();
+			} catch (InterruptedException e) {
+				current = null;
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+			position = 0;
+			if (current.length < 0) { // the end, or an error
+				done = true;
+				IOException error = current.error;
+				current = null;
+				if (error != null)
+					throw error;
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Private Method: Runs on the reading thread, filling chunks until the
+	 * end of the stream, an error, or the consumer closes this stream, and
+	 * then closes the stream being read. The last chunk handed over has a
+	 * length of -1.
+	 */
+	private void fill() {
+		try {
+			while (!closed) {
+				Chunk chunk = empty.take();
+				chunk.length = 0;
+				int n = 0;
+				// fill the whole chunk, so the consumer wakes less often
+				while (!closed && chunk.length < chunk.bytes.length
+						&& (n = in.read(chunk.bytes, chunk.length,
+								chunk.bytes.length - chunk.length)) != -1) {
+					chunk.length += n;
+				}
+				if (chunk.length > 0)
+					full.put(chunk);
+				else
+					empty.put(chunk);
+				if (n == -1) {
+					full.put(Chunk.end(null));
+					return;
+				}
+			}
+		} catch (IOException e) {
+			try {
+				full.put(Chunk.end(e));
+			} catch (InterruptedException stopped) {
+				// closed; no one is left to tell
+			}
+		} catch (InterruptedException e) {
+			// closed by the consumer
+		} finally {
+			try {
+				in.close();
+			} catch (IOException e) {
+				closeError = e;
+			}
+		}
+	}
+
+	/**
+	 * A buffer of bytes read from the stream, or the mark of its end.
+	 */
+	private static class Chunk {
+		final byte[] bytes;
+		int length; // bytes filled; -1 marks the end
+		IOException error; // why the stream ended early, or null
+
+		Chunk(int size) {
+			bytes = new byte[size];
+		}
+
+		static Chunk end(IOException error) {
+			Chunk chunk = new Chunk(0);
+			chunk.length = -1;
+			chunk.error = error;
+			return chunk;
+		}
+	}
+}
@@ -0,0 +1,254 @@
+import java.util.Arrays;
+
+/**
+ * The <tt>SearchContext</tt> class holds the working state of one search over
+ * a {@link Graph}: visited marks, <em>edgeTo</em> links and queues for a
+ * search out from a start vertex and a second search back from a target. The
+ * graph itself is never written to, so any number of threads can search the
+ * same graph at once as long as each one uses its own context.
+ * {@link SymbolGraph} keeps a pool of contexts and lends one to each query.
+ * <p>
+ * A vertex counts as visited when its mark equals the current epoch, so
+ * {@link #reset()} takes constant time: it only moves to the next epoch. All
+ * arrays are allocated once, in the constructor, so the search state costs
+ * nothing per query; only the path a query returns, and its list of movies,
+ * are allocated for that query.
+ *
+ * @author Cameron Stanavige
+ */
+public class SearchContext {
+	private final int[] visited; // == epoch if seen from the start
+	private final int[] visitedFrom; // == epoch if seen from the target
+	private final int[] edgeTo; // edgeTo[v] = previous vertex toward start
+	private final int[] edgeFrom; // edgeFrom[v] = next vertex toward target
+	private int epoch;
+
+	// each vertex enters a queue at most once per search, so the queues
+	// never need more than V entries
+	private final int[] queueTo;
+	private final int[] queueFrom;
+
+	// the edge on which the two searches met
+	private int meetFrom;
+	private int meetTo;
+
+	// the work done by the last call to findPath
+	private long verticesExpanded;
+	private long edgesScanned;
+
+	/**
+	 * Initializes a context for searching graphs of <tt>V</tt> vertices.
+	 * 
+	 * @param V
+	 *            the number of vertices
+	 */
+	public SearchContext(int V) {
+		visited = new int[V];
+		visitedFrom = new int[V];
+		edgeTo = new int[V];
+		edgeFrom = new int[V];
+		queueTo = new int[V];
+		queueFrom = new int[V];
+		epoch = 0;
+	}
+
+	/**
+	 * Returns the number of vertices this context can search.
+	 * 
+	 * @return the number of vertices
+	 */
+	public int V() {
+		return visited.length;
+	}
+
+	/**
+	 * Resets all the vertices back to not having been visited, by both
+	 * searches, in constant time. Moving to the next epoch makes every
+	 * earlier mark stale; the marks are only cleared when the epoch wraps
+	 * around.
+	 */
+	public void reset() {
+		if (epoch == Integer.MAX_VALUE) {
+			Arrays.fill(visited, 0);
+			Arrays.fill(visitedFrom, 0);
+			epoch = 0;
+		}
+		epoch++;
+	}
+
+	/**
+	 * Returns the vertex before <tt>v</tt> on the path found by the last call
+	 * to {@link #findPath}, walking from the target back to the start.
+	 * 
+	 * @param v
+	 *            a vertex on the path, other than the start
+	 * @return the next vertex toward the start
+	 */
+	public int edgeTo(int v) {
+		return edgeTo[v];
+	}
+
+	/**
+	 * Returns the number of vertices whose edges the last call to
+	 * {@link #findPath} scanned, on both sides.
+	 * 
+	 * @return the number of vertices expanded
+	 */
+	public long verticesExpanded() {
+		return verticesExpanded;
+	}
+
+	/**
+	 * Returns the number of edges the last call to {@link #findPath} scanned,
+	 * on both sides.
+	 * 
+	 * @return the number of edges scanned
+	 */
+	public long edgesScanned() {
+		return edgesScanned;
+	}
+
+	/**
+	 * Finds a shortest path between two vertices. Two searches run at once,
+	 * one out from the start and one back from the target, and each round
+	 * expands one whole level of whichever search has the smaller frontier.
+	 * The first edge found between the two searches joins them on a shortest
+	 * path: any shorter path would have met at an earlier level. The target's
+	 * half of the path is then linked into edgeTo so {@link #edgeTo(int)} can
+	 * walk it back from the target all the way to the start.
+	 * 
+	 * @param G
+	 *            the graph to search
+	 * @param start
+	 *            the starting vertex
+	 * @param target
+	 *            the vertex to find the path to
+	 * @return true if a path was found
+	 */
+	public boolean findPath(Graph G, int start, int target) {
+		reset();
+		verticesExpanded = 0;
+		edgesScanned = 0;
+		visited[start] = epoch;
+		visitedFrom[target] = epoch;
+		queueTo[0] = start;
+		queueFrom[0] = target;
+		int headTo = 0, tailTo = 1; // current level is queueTo[headTo..tailTo)
+		int headFrom = 0, tailFrom = 1;
+		while (headTo < tailTo && headFrom < tailFrom) {
+			if (tailTo - headTo <= tailFrom - headFrom) {
+				int next = expandLevel(G, queueTo, headTo, tailTo, visited,
+						edgeTo, visitedFrom);
+				if (next < 0) { // met the target's search
+					linkPath(meetFrom, meetTo, target);
+					return true;
+				}
+				headTo = tailTo;
+				tailTo = next;
+			} else {
+				int next = expandLevel(G, queueFrom, headFrom, tailFrom,
+						visitedFrom, edgeFrom, visited);
+				if (next < 0) { // met the start's search
+					linkPath(meetTo, meetFrom, target);
+					return true;
+				}
+				headFrom = tailFrom;
+				tailFrom = next;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Searches out from a start vertex until every one of a set of targets
+	 * has been reached, so that one search answers many path queries from
+	 * the same start: afterwards {@link #edgeTo(int)} walks back from each
+	 * target reached along a shortest path. Every target in the start's
+	 * component is reached; the search stops as soon as the last target is
+	 * found, or when the start's component runs out.
+	 * 
+	 * @param G
+	 *            the graph to search
+	 * @param start
+	 *            the starting vertex
+	 * @param targets
+	 *            the vertices to reach; repeats and the start are allowed
+	 * @return true if every target was reached
+	 */
+	public boolean findTargets(Graph G, int start, int[] targets) {
+		reset();
+		verticesExpanded = 0;
+		edgesScanned = 0;
+		int remaining = 0;
+		for (int t : targets) { // visitedFrom marks the targets left
+			if (t != start && visitedFrom[t] != epoch) {
+				visitedFrom[t] = epoch;
+				remaining++;
+			}
+		}
+		visited[start] = epoch;
+		queueTo[0] = start;
+		int head = 0, tail = 1;
+		int[] adj = G.targets();
+		while (remaining > 0 && head < tail) {
+			int v = queueTo[head++];
+			verticesExpanded++;
+			int first = G.adjStart(v);
+			for (int i = first, last = i + G.degree(v); i < last; i++) {
+				int w = adj[i];
+				if (visited[w] != epoch) {
+					edgeTo[w] = v;
+					visited[w] = epoch;
+					queueTo[tail++] = w;
+					if (visitedFrom[w] == epoch && --remaining == 0) {
+						edgesScanned += i - first + 1;
+						return true;
+					}
+				}
+			}
+			edgesScanned += G.degree(v);
+		}
+		return remaining == 0;
+	}
+
+	// expands queue[head..tail) of one search, adding unvisited neighbors
+	// after tail; returns the new end of the queue, or -1 if an edge
+	// meetFrom-meetTo to a vertex seen by the other search was found
+	private int expandLevel(Graph G, int[] queue, int head, int tail,
+			int[] seen, int[] parent, int[] otherSeen) {
+		int[] targets = G.targets();
+		int end = tail;
+		for (int q = head; q < tail; q++) {
+			int v = queue[q];
+			int first = G.adjStart(v);
+			for (int i = first, last = i + G.degree(v); i < last; i++) {
+				int w = targets[i];
+				if (otherSeen[w] == epoch) {
+					meetFrom = v;
+					meetTo = w;
+					verticesExpanded += q - head + 1;
+					edgesScanned += i - first + 1;
+					return -1;
+				}
+				if (seen[w] != epoch) {
+					parent[w] = v;
+					seen[w] = epoch;
+					queue[end++] = w;
+				}
+			}
+			edgesScanned += G.degree(v);
+		}
+		verticesExpanded += tail - head;
+		return end;
+	}
+
+	// joins the two searches across the edge f-g, f seen from the start and
+	// g from the target, and points edgeTo along the target's half of the
+	// path
+	private void linkPath(int f, int g, int target) {
+		edgeTo[g] = f;
+		for (int x = g; x != target; x = edgeFrom[x]) {
+			edgeTo[edgeFrom[x]] = x;
+		}
+	}
+}
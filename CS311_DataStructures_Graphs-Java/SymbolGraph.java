@@ -1,8 +1,24 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.zip.GZIPInputStream;
 
 //
 //SymbolGraph.java
@@ -14,7 +30,10 @@ import java.util.List;
 /*************************************************************************
  *  Compilation:  javac SymbolGraph.java
  *  Execution:    java SymbolGraph filename.txt delimiter
- *  Dependencies: ST.java Graph.java In.java StdIn.java StdOut.java
+ *  Dependencies: NameIndex.java CastListParser.java Graph.java
+ *                DegreeRanking.java ActorPairings.java CoStarGraph.java
+ *                Components.java ReadAheadInputStream.java
+ *                QueryMetrics.java StdOut.java
  *  Data files:   http://algs4.cs.princeton.edu/41undirected/routes.txt
  *                http://algs4.cs.princeton.edu/41undirected/movies.txt
  *                http://algs4.cs.princeton.edu/41undirected/moviestiny.txt
@@ -61,11 +80,38 @@ import java.util.List;
  * data type, which assumes the vertex names are integers between 0 and
  * <em>V</em> - 1. It also supports initializing a symbol graph from a file.
  * <p>
- * This implementation uses an {@link ST} to map from strings to integers, an
- * array to map from integers to strings, and a {@link Graph} to store the
- * underlying graph. The <em>index</em> and <em>contains</em> operations take
- * time proportional to log <em>V</em>, where <em>V</em> is the number of
- * vertices. The <em>name</em> operation takes constant time.
+ * This implementation uses a {@link NameIndex} hash table to map from strings
+ * to integers, an array to map from integers to strings, and a {@link Graph}
+ * to store the underlying graph. The <em>index</em> and <em>contains</em>
+ * operations take constant expected time, independent of the number of
+ * vertices <em>V</em>. The <em>name</em> operation takes constant time.
+ * A {@link DegreeRanking} built at load time answers <em>topPerformers</em>
+ * and <em>topMovies</em> in time proportional to the number asked for, and
+ * the {@link Components} found at the same time tell at once when two actors
+ * are not connected, so that no search is made to find it out. The
+ * co-star queries read a {@link CoStarGraph} that is built the first time one
+ * of them runs and kept alongside the graph.
+ * <p>
+ * Queries never change the graph. Their working state (visited marks, path
+ * links and queues) lives in {@link SearchContext} objects that are pooled
+ * and lent to one query at a time, so any number of threads can query the
+ * same symbol graph at once. They take no lock: each runs as an optimistic
+ * read of a {@link StampedLock}, and its answer is kept unless a movie was
+ * added while it ran, in which case it runs again holding the read lock.
+ * The indexes built on first use are published through volatile fields, so
+ * once built they are read without locking too.
+ * <p>
+ * Each query records its latency, and each path search the work it did, in
+ * the graph's {@link QueryMetrics}, along with how long the graph took to
+ * load; a {@link MetricsRegistry} publishes them.
+ * <p>
+ * New movies are added with {@link #addMovie(String, List)}, which grows the
+ * graph in place. The ranking, the components, the tables of pinned actors
+ * and, once they are built, the co-star projection and the name indexes are
+ * brought up to date as it goes, and the cached paths the new edges could
+ * have shortened are forgotten. Adding a movie is the one operation that
+ * writes; it takes the write lock, so it waits for the queries holding the
+ * read lock, and the optimistic queries it overlaps run again.
  * <p>
  * For additional documentation, see <a
  * href="http://algs4.cs.princeton.edu/41undirected">Section 4.1</a> of
@@ -76,67 +122,266 @@ import java.util.List;
  * @author Altered by Cameron Stanavige for a specific structure.
  */
 public class SymbolGraph {
-	private ST<String, Integer> st; // string -> index
-	private String[] keys; // index -> vertex
-	private Graph G;
+	/**
+	 * The suffix {@link #open(String, String)} adds to a file name to name its
+	 * snapshot.
+	 */
+	public static final String SNAPSHOT_SUFFIX = ".snapshot";
 
-	private boolean[] actors; // true if actor
+	/**
+	 * The suffix of the file names {@link #open(String, String)} reads as
+	 * gzip-compressed cast lists.
+	 */
+	public static final String GZIP_SUFFIX = ".gz";
 
-	private boolean[] visited;
-	private int[] edgeTo;
+	/**
+	 * The file name {@link #open(String, String)} takes to mean standard
+	 * input.
+	 */
+	public static final String STANDARD_INPUT = "-";
+
+	/**
+	 * The lowest trigram score of a name {@link #resolve(String, int)}
+	 * returns. Names are only matched this loosely when asked; every other
+	 * query takes a performer's name exactly, up to its format and the case
+	 * of its first letters.
+	 */
+	public static final double FUZZY_MATCH = 0.7;
+
+	/**
+	 * The number of edges from which full searches, as for pinned actors and
+	 * histograms, are split across the threads of the common pool by
+	 * {@link ParallelBfs}. Below it a search is over before the threads would
+	 * have started.
+	 */
+	public static final int PARALLEL_SEARCH_EDGES = 1 << 20;
+
+	private final NameIndex st; // string -> index
+	private String[] keys; // index -> vertex, with room to grow
+	private final Graph G;
+
+	private boolean[] actors; // true if actor, with room to grow
+	private final DegreeRanking ranking; // actors and movies by degree
+	private final Components components; // connected components
+
+	// distance tables of the pinned source actors; replaced, never changed
+	private volatile DistanceTable[] pinned = new DistanceTable[0];
+
+	// co-star projection, built on first use unless it would be too large;
+	// the lock is only taken to build it
+	private final Object coStarLock = new Object();
+	private volatile CoStarGraph coStars;
+	private volatile String coStarsTooLarge; // why it was not built, or null
+	private volatile ActorPairings topPairings; // found on first use
+
+	// name indexes, built on first use; the lock is only taken to build them
+	private final Object indexLock = new Object();
+	private volatile NameResolver resolver; // trigrams of the actor names
+	private volatile PrefixIndex actorPrefixes;
+	private volatile PrefixIndex moviePrefixes;
+
+	// recent getKBNumber answers, or null if caching is off
+	private volatile PathCache pathCache;
+
+	// idle search state, lent to one query at a time, one per core at most
+	private final Queue<SearchContext> contexts = new ConcurrentLinkedQueue<SearchContext>();
+	private final AtomicInteger idle = new AtomicInteger(); // in contexts
+	private static final int CORES = Runtime.getRuntime()
+			.availableProcessors();
+
+	// queries read optimistically or hold the read lock, addMovie the write
+	// lock
+	private final StampedLock lock = new StampedLock();
+
+	// why a query that reads without the lock gives up
+	private static final String CHANGED = "The graph changed while read";
+
+	// latencies, search work and cache hits of the queries
+	private final QueryMetrics metrics = new QueryMetrics();
 
 	/**
 	 * Initializes a graph from a file using the specified delimiter. Each line
 	 * in the file contains the name of a vertex, followed by a list of the
 	 * names of the vertices adjacent to that vertex, separated by the
-	 * delimiter.
+	 * delimiter. The file is read once, by a {@link CastListParser}.
 	 * 
 	 * @param filename
 	 *            the name of the file
 	 * @param delimiter
-	 *            the delimiter between fields
+	 *            the delimiter between fields, a single character such as
+	 *            <tt>"|"</tt> (or <tt>"\\|"</tt>)
+	 * @throws java.lang.IllegalArgumentException
+	 *             if the file cannot be read or the delimiter is not a single
+	 *             character
 	 */
 	public SymbolGraph(String filename, String delimiter) {
-		st = new ST<String, Integer>();
+		this(System.nanoTime(), read(filename, delimiter));
+	}
 
-		// First pass builds the index by reading strings to associate
-		// distinct strings with an index
-		In in = new In(filename);
-		// while (in.hasNextLine()) {
-		while (!in.isEmpty()) {
-			String[] a = in.readLine().split(delimiter);
-			for (int i = 0; i < a.length; i++) {
-				if (!st.contains(a[i]))
-					st.put(a[i], st.size());
-			}
+	/**
+	 * Initializes a graph from a stream of lines in the same format as the
+	 * file read by {@link #SymbolGraph(String, String)}, such as a
+	 * {@link GZIPInputStream} or <tt>System.in</tt>. The stream is read once,
+	 * from start to end, and closed. It is read on a thread of its own by a
+	 * {@link ReadAheadInputStream}, so any decompression the stream does runs
+	 * alongside the parsing.
+	 * 
+	 * @param in
+	 *            the stream
+	 * @param delimiter
+	 *            the delimiter between fields, a single character such as
+	 *            <tt>"|"</tt> (or <tt>"\\|"</tt>)
+	 * @throws IOException
+	 *             if reading the stream fails
+	 * @throws java.lang.IllegalArgumentException
+	 *             if the delimiter is not a single character
+	 */
+	public SymbolGraph(InputStream in, String delimiter) throws IOException {
+		this(System.nanoTime(), parse(in, delimiter));
+	}
+
+	/**
+	 * Private Method: Sets up a symbol graph from a parser that has read the
+	 * whole cast list.
+	 * 
+	 * @param start
+	 *            The System.nanoTime() at which reading began, taken before
+	 *            the parser argument is evaluated.
+	 * @param parser
+	 *            The parser.
+	 */
+	private SymbolGraph(long start, CastListParser parser) {
+		long built = System.nanoTime();
+		metrics.recordRead(built - start);
+		st = parser.names();
+		keys = st.keys(); // inverted index to get string keys in an array
+		actors = parser.actors();
+		G = parser.graph();
+		ranking = new DegreeRanking(G, actors);
+		components = new Components(G, actors);
+		metrics.recordBuild(System.nanoTime() - built);
+	}
+
+	/**
+	 * Private Method: Parses a file.
+	 * 
+	 * @param filename
+	 *            The name of the file.
+	 * @param delimiter
+	 *            The delimiter between fields.
+	 * @return The parser, having read the file.
+	 * @throws IllegalArgumentException
+	 *             If the file cannot be read.
+	 */
+	private static CastListParser read(String filename, String delimiter) {
+		// one pass numbers each name on first sight and buffers the edges
+		// connecting the first vertex on each line to all others
+		CastListParser parser = new CastListParser(delimiter);
+		InputStream in = null;
+		try {
+			in = new FileInputStream(filename);
+			parser.parse(in);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Could not read " + filename, e);
+		} finally {
+			close(in);
 		}
 		StdOut.println("Done reading " + filename);
+		return parser;
+	}
 
-		// inverted index to get string keys in an array
-		keys = new String[st.size()];
-		for (String name : st.keys()) {
-			keys[st.get(name)] = name;
+	/**
+	 * Private Method: Parses a stream, read ahead on another thread, and
+	 * closes it.
+	 * 
+	 * @param in
+	 *            The stream.
+	 * @param delimiter
+	 *            The delimiter between fields.
+	 * @return The parser, having read the stream.
+	 * @throws IOException
+	 *             If reading the stream fails.
+	 */
+	private static CastListParser parse(InputStream in, String delimiter)
+			throws IOException {
+		CastListParser parser = new CastListParser(delimiter);
+		InputStream ahead = new ReadAheadInputStream(in);
+		try {
+			parser.parse(ahead);
+		} finally {
+			close(ahead);
 		}
+		return parser;
+	}
 
-		// fill arrays
-		visited = new boolean[st.size()];
-		Arrays.fill(visited, Boolean.FALSE);
-		actors = new boolean[st.size()];
-		Arrays.fill(actors, Boolean.FALSE);
-
-		// second pass builds the graph by connecting first vertex on each
-		// line to all others
-		G = new Graph(st.size());
-		in = new In(filename);
-		while (in.hasNextLine()) {
-			String[] a = in.readLine().split(delimiter);
-			int v = st.get(a[0]);
-			setActor(v);
-			for (int i = 1; i < a.length; i++) {
-				int w = st.get(a[i]);
-				G.addEdge(v, w);
-			}
+	/**
+	 * Returns the symbol graph of a file, read from its snapshot if there is a
+	 * current one. Otherwise the file is parsed by a
+	 * {@link ParallelCastListLoader} and a new snapshot is written next to it,
+	 * named <tt>filename</tt> + {@link #SNAPSHOT_SUFFIX}, for the next start.
+	 * A snapshot that cannot be read is treated as stale, and one that cannot
+	 * be written only costs the next start a parse.
+	 * <p>
+	 * A file whose name ends in {@link #GZIP_SUFFIX} is decompressed as it is
+	 * read, in one pass, and the name {@link #STANDARD_INPUT} reads the cast
+	 * list from <tt>System.in</tt>, with no snapshot.
+	 * 
+	 * @param filename
+	 *            the name of the file
+	 * @param delimiter
+	 *            the delimiter between fields
+	 * @return the symbol graph of the file
+	 * @throws IOException
+	 *             if neither the snapshot nor the file can be read
+	 */
+	public static SymbolGraph open(String filename, String delimiter)
+			throws IOException {
+		if (filename.equals(STANDARD_INPUT))
+			return new SymbolGraph(System.in, delimiter);
+		File source = new File(filename);
+		File snapshot = new File(filename + SNAPSHOT_SUFFIX);
+		SymbolGraph sg = null;
+		try {
+			sg = SymbolGraphSnapshot.read(snapshot, source, delimiter);
+		} catch (IOException e) {
+			// unreadable, so parse the text file and write a new one
 		}
+		if (sg != null)
+			return sg;
+		if (filename.endsWith(GZIP_SUFFIX))
+			sg = new SymbolGraph(new GZIPInputStream(new FileInputStream(
+					source), 1 << 16), delimiter);
+		else
+			sg = new ParallelCastListLoader(delimiter).load(filename);
+		try {
+			SymbolGraphSnapshot.write(sg, snapshot, source, delimiter);
+		} catch (IOException e) {
+			// the text file will just be parsed again next time
+		}
+		return sg;
+	}
+
+	/**
+	 * Initializes a symbol graph from parts that have already been loaded, as
+	 * done by {@link ParallelCastListLoader} and {@link SymbolGraphSnapshot}.
+	 * 
+	 * @param st
+	 *            the index of the vertex names
+	 * @param actors
+	 *            which vertices are actors
+	 * @param G
+	 *            the graph, with one vertex per name
+	 */
+	SymbolGraph(NameIndex st, boolean[] actors, Graph G) {
+		long start = System.nanoTime();
+		this.st = st;
+		this.keys = st.keys();
+		this.actors = actors;
+		this.G = G;
+		G.freeze();
+		this.ranking = new DegreeRanking(G, actors);
+		this.components = new Components(G, actors);
+		metrics.recordBuild(System.nanoTime() - start);
 	}
 
 	/**
@@ -147,8 +392,12 @@ public class SymbolGraph {
 	 * @return <tt>true</tt> if <tt>s</tt> is the name of a vertex, and
 	 *         <tt>false</tt> otherwise
 	 */
-	public boolean contains(String s) {
-		return st.contains(s);
+	public boolean contains(final String s) {
+		return read(new Lookup<Boolean>() {
+			Boolean run(long stamp) {
+				return st.contains(s);
+			}
+		});
 	}
 
 	/**
@@ -157,10 +406,14 @@ public class SymbolGraph {
 	 * @param s
 	 *            the name of a vertex
 	 * @return the integer (between 0 and <em>V</em> - 1) associated with the
-	 *         vertex named <tt>s</tt>
+	 *         vertex named <tt>s</tt>, or -1 if there is no such vertex
 	 */
-	public int index(String s) {
-		return st.get(s);
+	public int index(final String s) {
+		return read(new Lookup<Integer>() {
+			Integer run(long stamp) {
+				return st.get(s);
+			}
+		});
 	}
 
 	/**
@@ -171,9 +424,37 @@ public class SymbolGraph {
 	 *            <em>V</em> - 1)
 	 * @return the name of the vertex associated with the integer <tt>v</tt>
 	 */
-	public String name(int v) {
-		// return (String) keys[v].getData();
-		return keys[v];
+	public String name(final int v) {
+		return read(new Lookup<String>() {
+			String run(long stamp) {
+				// return (String) keys[v].getData();
+				return keys[v];
+			}
+		});
+	}
+
+	/**
+	 * Writes the snapshot of this graph for {@link SymbolGraphSnapshot},
+	 * holding the read lock so that no movie is added part way through.
+	 * 
+	 * @param file
+	 *            the file to write
+	 * @param source
+	 *            the text file the graph was read from
+	 * @param delimiter
+	 *            the delimiter <tt>source</tt> was read with
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	void writeSnapshot(File file, File source, String delimiter)
+			throws IOException {
+		long stamp = lock.readLock();
+		try {
+			SymbolGraphSnapshot.writeTo(G, keys, actors, file, source,
+					delimiter);
+		} finally {
+			lock.unlockRead(stamp);
+		}
 	}
 
 	/**
@@ -186,6 +467,147 @@ public class SymbolGraph {
 		return G;
 	}
 
+	/**
+	 * Adds a movie to the graph, with an edge to each performer in its cast,
+	 * as if each performer's line of the file had listed it. Performers not
+	 * in the graph yet are added as actors. If the movie is already in the
+	 * graph, the cast is added to it. A performer named twice, or already in
+	 * the movie, is added once; a movie with no one to add is left as it is.
+	 * <p>
+	 * This waits for the queries holding the read lock to finish, and they
+	 * wait for it; queries reading without a lock that overlap it run again.
+	 * The objects the graph has handed out, such as {@link #G()},
+	 * {@link #components()} and {@link #coStars()}, are not covered by the
+	 * lock, and must not be read while a movie is added.
+	 * 
+	 * @param movie
+	 *            The title of the movie.
+	 * @param cast
+	 *            The names of the performers, in Last, First format as in
+	 *            the file. Blank names are skipped.
+	 * @throws IllegalArgumentException
+	 *             If the title is blank or is an actor's name, or a
+	 *             performer's name is the title of a movie. The graph is not
+	 *             changed.
+	 */
+	public void addMovie(String movie, List<String> cast) {
+		long stamp = lock.writeLock();
+		try {
+			int m = st.get(movie); // -1 if the movie is new
+			if (movie.trim().equals("") || (m >= 0 && actors[m]))
+				throw new IllegalArgumentException("Not a movie title: "
+						+ movie);
+			// the whole cast is checked before anything is changed
+			Set<String> performers = new LinkedHashSet<String>();
+			for (String performer : cast) {
+				if (performer.trim().equals(""))
+					continue;
+				int v = st.get(performer);
+				if (performer.equals(movie) || (v >= 0 && !actors[v]))
+					throw new IllegalArgumentException("Not a performer: "
+							+ performer);
+				performers.add(performer);
+			}
+			if (m >= 0) { // no second edge to the cast it has
+				int[] targets = G.targets();
+				for (int i = G.adjStart(m), end = i + G.degree(m); i < end;
+						i++) {
+					performers.remove(keys[targets[i]]);
+				}
+			}
+			if (performers.isEmpty())
+				return;
+
+			int oldV = G.V(); // vertices from here on are new
+			if (m < 0)
+				m = addVertex(movie, false);
+			int movieDegree = G.degree(m);
+			int[] touched = new int[performers.size() + 1];
+			int n = 0;
+			touched[n++] = m;
+			for (String performer : performers) {
+				int a = st.get(performer);
+				if (a < 0)
+					a = addVertex(performer, true);
+				int degree = G.degree(a);
+				G.addEdge(a, m);
+				ranking.update(a, true, degree, degree + 1);
+				components.addEdge(a, m);
+				touched[n++] = a;
+			}
+			ranking.update(m, false, movieDegree, G.degree(m));
+
+			for (DistanceTable table : pinned) {
+				table.update(G, touched);
+			}
+			PathCache cache = pathCache;
+			if (cache != null) {
+				final int component = components.id(m);
+				cache.forget(new PathCache.Filter() {
+					public boolean matches(int v, int w, int[] path) {
+						// only pairs the new edges connect or bring closer;
+						// actors who share a movie are as close as can be
+						if (path != PathCache.NO_PATH && path.length <= 1)
+							return false;
+						return components.id(v) == component
+								&& components.id(w) == component;
+					}
+				});
+			}
+			// the indexes are only built holding the read lock, so none is
+			// being built now
+			if (coStars != null) {
+				try {
+					coStars.addCast(G, m, movieDegree);
+				} catch (IllegalStateException e) {
+					coStarsTooLarge = e.getMessage();
+					coStars = null;
+				}
+			}
+			topPairings = null;
+			NameResolver names = resolver;
+			for (int t = 0; t < n; t++) {
+				int v = touched[t];
+				PrefixIndex prefixes = actors[v] ? actorPrefixes
+						: moviePrefixes;
+				if (prefixes != null && v >= oldV)
+					prefixes.add(keys, v, G.degree(v));
+				else if (prefixes != null)
+					prefixes.setDegree(v, G.degree(v));
+				if (names != null && actors[v] && v >= oldV)
+					names.add(v, keys[v]); // new actors, in order
+			}
+			while (contexts.poll() != null) // too small for the grown graph
+				idle.decrementAndGet();
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Private Method: Adds a vertex with no edges, giving it a name and a
+	 * place in the ranking and the components.
+	 * 
+	 * @param name
+	 *            The name of the new vertex.
+	 * @param actor
+	 *            True if it is an actor, false if it is a movie.
+	 * @return The new vertex.
+	 */
+	private int addVertex(String name, boolean actor) {
+		int v = G.addVertex();
+		st.put(name);
+		if (v == keys.length) {
+			keys = Arrays.copyOf(keys, Math.max(16, 2 * v));
+			actors = Arrays.copyOf(actors, keys.length);
+		}
+		keys[v] = name;
+		actors[v] = actor;
+		ranking.add(v, actor, 0);
+		components.addVertex(actor);
+		return v;
+	}
+
 	/**
 	 * Get a list of all the movies that the given actress or actor has acted
 	 * in.
@@ -199,16 +621,69 @@ public class SymbolGraph {
 	 * @return A list of the movies the performer has acted in, sorted
 	 *         alphabetically.
 	 */
-	public List<String> getPerformersMovies(String performer) {
-		LinkedList<String> list = new LinkedList<String>();
-		String actor = reformatName(performer); // changes name format
-		if (actor == null) {
-			list.add("Actor" + actor + "not known");
+	public List<String> getPerformersMovies(final String performer) {
+		long start = System.nanoTime();
+		List<String> list = read(new Lookup<List<String>>() {
+			List<String> run(long stamp) {
+				return moviesOf(performer);
+			}
+		});
+		if (list == null) {
+			list = new LinkedList<String>();
+			list.add("Actor " + performer + " not known");
+		}
+		metrics.recordQuery(QueryMetrics.PERFORMERS_MOVIES, start);
+		return list;
+	}
+
+	/**
+	 * Get a list of all the movies that the given actress or actor has acted
+	 * in, as {@link #getPerformersMovies(String)} does, but with an unknown
+	 * performer reported by an exception rather than in the list.
+	 * 
+	 * @param performer
+	 *            The performer, in First Last or Last, First format.
+	 * @return A list of the movies the performer has acted in, sorted
+	 *         alphabetically.
+	 * @throws ActorNotFoundException
+	 *             Thrown to indicate that the performer could not be found.
+	 */
+	public List<String> findPerformersMovies(final String performer)
+			throws ActorNotFoundException {
+		long start = System.nanoTime();
+		try {
+			List<String> list = read(new Lookup<List<String>>() {
+				List<String> run(long stamp) {
+					return moviesOf(performer);
+				}
+			});
+			if (list == null)
+				throw new ActorNotFoundException();
 			return list;
+		} finally {
+			metrics.recordQuery(QueryMetrics.PERFORMERS_MOVIES, start);
 		}
-		int value = index(actor);
-		for (int i : G.adj(value)) {
-			list.add(name(i));
+	}
+
+	/**
+	 * Private Method: Lists a performer's movies, for getPerformersMovies and
+	 * findPerformersMovies, which time it.
+	 * 
+	 * @param performer
+	 *            The performer, in either format.
+	 * @return The movies, sorted alphabetically, or null if the performer is
+	 *         not known.
+	 */
+	private List<String> moviesOf(String performer) {
+		String actor = reformatName(performer); // changes name format
+		if (actor == null)
+			return null;
+		LinkedList<String> list = new LinkedList<String>();
+		int value = st.get(actor);
+		int[] targets = G.targets();
+		for (int i = G.adjStart(value), end = i + G.degree(value); i < end;
+				i++) {
+			list.add(keys[targets[i]]);
 		}
 		Collections.sort(list);
 		return list;
@@ -222,32 +697,24 @@ public class SymbolGraph {
 	 *            Run this search for the top n performers.
 	 * @return A list of performers, ranked (sorted) by how many movies they
 	 *         have acted in. The first entry in this list is the actress or
-	 *         actor who has starred in the most movies.
+	 *         actor who has starred in the most movies. Performers in the same
+	 *         number of movies are listed in the order they first appear in
+	 *         the file. The list is shorter than n if there are fewer
+	 *         performers.
 	 */
-	public List<String> topPerformers(int n) {
-		LinkedList<String> list = new LinkedList<String>();
-		ArrayList<String> actors = new ArrayList<String>();
-		for (int i = 0; i < G.V() - 1; i++) { // gets all the actors
-			String perf = name(i);
-			int vertex = index(perf);
-			if (isActor(vertex))
-				actors.add(perf);
-		}
-		int count = 1;
-		while (count <= n) { // gets the top n performers
-			String top = actors.get(0);
-			for (String v : actors) { // gets next top performer
-				int vert = index(v);
-				if ((isVisited(vert) == false)
-						&& (G().degree(vert) > (G().degree(index(top))))) {
-					top = v;
+	public List<String> topPerformers(final int n) {
+		long start = System.nanoTime();
+		List<String> list = read(new Lookup<List<String>>() {
+			List<String> run(long stamp) {
+				int count = Math.max(0, Math.min(n, ranking.actorCount()));
+				List<String> list = new ArrayList<String>(count);
+				for (int rank = 0; rank < count; rank++) { // already in order
+					list.add(keys[ranking.actor(rank)]);
 				}
+				return list;
 			}
-			visit(index(top));
-			list.add(top);
-			count++;
-		}
-		resetVisited();
+		});
+		metrics.recordQuery(QueryMetrics.TOP_PERFORMERS, start);
 		return list;
 	}
 
@@ -258,116 +725,288 @@ public class SymbolGraph {
 	 *            Run this search for the top n movies.
 	 * @return A list of movies, ranked (sorted) by how many performers they
 	 *         have. The first entry in this list is the movie with the most
-	 *         performers.
+	 *         performers. Movies with the same number of performers are listed
+	 *         in the order they first appear in the file. The list is shorter
+	 *         than n if there are fewer movies.
 	 */
-	public List<String> topMovies(int n) {
-		LinkedList<String> list = new LinkedList<String>();
-		ArrayList<String> movies = new ArrayList<String>();
-		for (int i = 0; i < G().V() - 1; i++) { // gets all the movies
-			String movie = name(i);
-			int vertex = index(movie);
-			if (!(isActor(vertex)))
-				movies.add(movie);
-		}
-		int count = 1;
-		while (count <= n) { // get top n movies
-			String top = movies.get(0);
-			for (String v : movies) { // gets next top movie
-				int vert = index(v);
-				if ((isVisited(vert) == false)
-						&& (G().degree(vert)) > (G().degree(index(top))))
-					top = v;
-			}
-
-			visit(index(top));
-			list.add(top);
-			count++;
-		}
-		resetVisited();
+	public List<String> topMovies(final int n) {
+		long start = System.nanoTime();
+		List<String> list = read(new Lookup<List<String>>() {
+			List<String> run(long stamp) {
+				int count = Math.max(0, Math.min(n, ranking.movieCount()));
+				List<String> list = new ArrayList<String>(count);
+				for (int rank = 0; rank < count; rank++) { // already in order
+					list.add(keys[ranking.movie(rank)]);
+				}
+				return list;
+			}
+		});
+		metrics.recordQuery(QueryMetrics.TOP_MOVIES, start);
 		return list;
 	}
 
 	/**
-	 * Private Method: Determines if an vertex has already been visited
+	 * Private Method: Takes search state out of the pool, or makes new state
+	 * if every context is in use by another query. The graph is never
+	 * written to by a query, so queries on different threads only need
+	 * different contexts, and no query waits for one. A context takes 24
+	 * bytes per vertex, so the pool keeps no more idle than there are cores;
+	 * the searches in flight at once are bounded by the caller, as
+	 * {@link GraphServer} bounds its requests.
 	 * 
-	 * @param v
-	 *            The vertex to be determined
-	 * @return True if the vertex has already been visited.
+	 * @return A search context, reset, for this query's use only.
 	 */
-	private boolean isVisited(int v) {
-		return visited[v];
+	private SearchContext acquireSearch() {
+		SearchContext search = contexts.poll();
+		if (search != null)
+			idle.decrementAndGet();
+		if (search == null || search.V() < G.V())
+			search = new SearchContext(G.V());
+		search.reset();
+		return search;
 	}
 
 	/**
-	 * Private Method: Visits a particular vertex.
+	 * Private Method: Returns search state to the pool once a query is done
+	 * with it, unless the pool has one idle per core already.
 	 * 
-	 * @param v
-	 *            The vertex to visit
-	 */
-	private void visit(int v) {
-		visited[v] = true;
-	}
-
-	/**
-	 * Private Method: Resets all the vertices back to not having been visited.
+	 * @param search
+	 *            The context taken by acquireSearch().
 	 */
-	private void resetVisited() {
-		Arrays.fill(visited, Boolean.FALSE);
-	}
-
-	private void resetEdgeTo() {
-		if (edgeTo == null) {
-			edgeTo = new int[st.size()];
-		}
-		Arrays.fill(edgeTo, 0);
+	private void releaseSearch(SearchContext search) {
+		if (idle.incrementAndGet() <= CORES)
+			contexts.offer(search);
+		else
+			idle.decrementAndGet();
 	}
 
 	/**
-	 * Private Method: Determines if a particular vertex represents an actor or
-	 * a movie.
+	 * Determines if a particular vertex represents an actor or a movie.
 	 * 
 	 * @param v
 	 *            The vertex to be determined.
 	 * @return True if the index represents an actor.
 	 */
-	private boolean isActor(int v) {
-		return actors[v];
+	public boolean isActor(final int v) {
+		return read(new Lookup<Boolean>() {
+			Boolean run(long stamp) {
+				return actors[v];
+			}
+		});
 	}
 
 	/**
-	 * Private Method: Sets that a particular vertex represents an actor.
+	 * Private Method: Closes a stream, ignoring any error since the data has
+	 * already been read.
 	 * 
-	 * @param v
-	 *            The vertex to have set as an actor.
+	 * @param in
+	 *            The stream to close, or null.
 	 */
-	private void setActor(int v) {
-		actors[v] = true;
+	private static void close(InputStream in) {
+		if (in == null)
+			return;
+		try {
+			in.close();
+		} catch (IOException e) {
+			// nothing left to read
+		}
 	}
 
 	/**
 	 * Private Method: Takes a name and determines if the graph has that name in
 	 * that format. If not, the format is switched then the case of the first
-	 * letters are switched.
+	 * letters are switched. Misspelled names are not matched; see
+	 * {@link #resolve(String, int)}.
 	 * 
 	 * @param performer
 	 *            The name on which to have the formatting checked.
-	 * @return The name in the correct format.
+	 * @return The name in the correct format, or null if it is not known.
 	 */
 	private String reformatName(String performer) {
-		String actor;
-		if (!(contains(performer))) { // name is wrong format
-			String[] target = performer.split(" ");
-			actor = target[1] + ", " + target[0];
-			if (!(contains(actor))) { // wrong letter case
-				actor = changeFirstLetter(target);
-				if (!(contains(actor))) { // actor not in list
-					actor = null;
+		if (st.contains(performer)) // name already was correct format
+			return performer;
+		String[] target = performer.trim().split(" +");
+		if (target.length == 2) { // name is wrong format
+			String actor = target[1] + ", " + target[0];
+			if (st.contains(actor))
+				return actor;
+			actor = changeFirstLetter(target); // wrong letter case
+			if (st.contains(actor))
+				return actor;
+		}
+		return null; // actor not in list
+	}
+
+	/**
+	 * Get the actors whose names are closest to a name that may be misspelled,
+	 * scoring at least FUZZY_MATCH. The other queries take only names that
+	 * are known, so a caller can offer these to the user to pick from.
+	 * 
+	 * @param performer
+	 *            The name to look up.
+	 * @param n
+	 *            The most names to return.
+	 * @return The closest actors' names, best first.
+	 */
+	public List<String> resolve(String performer, int n) {
+		return resolvePerformer(performer, n, FUZZY_MATCH);
+	}
+
+	/**
+	 * Get the actors whose names are closest to a name that may be misspelled,
+	 * in either First Last or Last, First format, or missing a suffix such as
+	 * "(III)".
+	 * 
+	 * @param performer
+	 *            The name to look up.
+	 * @param n
+	 *            The most names to return.
+	 * @param minScore
+	 *            The lowest trigram score, above 0 and up to 1, of a name
+	 *            that may be returned.
+	 * @return The closest actors' names, best first.
+	 */
+	public List<String> resolvePerformer(final String performer, final int n,
+			final double minScore) {
+		return read(new Lookup<List<String>>() {
+			List<String> run(long stamp) {
+				return names(resolver(stamp).resolve(performer, n, minScore));
+			}
+		});
+	}
+
+	/**
+	 * Get the actors whose names start with a prefix, for suggestions as a
+	 * name is typed.
+	 * 
+	 * @param prefix
+	 *            The start of the name, in Last, First format; case is
+	 *            ignored.
+	 * @param n
+	 *            The most names to return.
+	 * @return The names of the actors in the most movies that start with the
+	 *         prefix, most movies first.
+	 */
+	public List<String> completeActor(final String prefix, final int n) {
+		return read(new Lookup<List<String>>() {
+			List<String> run(long stamp) {
+				return names(actorPrefixes(stamp).complete(prefix, n));
+			}
+		});
+	}
+
+	/**
+	 * Get the movies whose titles start with a prefix, for suggestions as a
+	 * title is typed.
+	 * 
+	 * @param prefix
+	 *            The start of the title; case is ignored.
+	 * @param n
+	 *            The most titles to return.
+	 * @return The titles of the movies with the most performers that start
+	 *         with the prefix, most performers first.
+	 */
+	public List<String> completeMovie(final String prefix, final int n) {
+		return read(new Lookup<List<String>>() {
+			List<String> run(long stamp) {
+				return names(moviePrefixes(stamp).complete(prefix, n));
+			}
+		});
+	}
+
+	/**
+	 * Private Method: Looks up the names of a list of vertices.
+	 * 
+	 * @param vertices
+	 *            The vertices.
+	 * @return Their names, in the same order.
+	 */
+	private List<String> names(int[] vertices) {
+		List<String> list = new ArrayList<String>(vertices.length);
+		for (int v : vertices) {
+			list.add(keys[v]);
+		}
+		return list;
+	}
+
+	/**
+	 * Private Method: Returns the trigram index of the actor names, building
+	 * it the first time.
+	 * 
+	 * @param stamp
+	 *            The optimistic stamp the query runs under, or 0 if it holds
+	 *            the read lock.
+	 * @return The index.
+	 * @throws LockNeeded
+	 *             If the index is not built and the query holds no lock.
+	 */
+	private NameResolver resolver(long stamp) {
+		NameResolver index = resolver;
+		if (index == null) {
+			if (stamp != 0)
+				throw new LockNeeded();
+			synchronized (indexLock) { // first use; build it once
+				index = resolver;
+				if (index == null)
+					resolver = index = new NameResolver(keys, actors);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Private Method: Returns the prefix index of the actor names, building
+	 * it the first time.
+	 * 
+	 * @param stamp
+	 *            The optimistic stamp the query runs under, or 0 if it holds
+	 *            the read lock.
+	 * @return The index.
+	 * @throws LockNeeded
+	 *             If the index is not built and the query holds no lock.
+	 */
+	private PrefixIndex actorPrefixes(long stamp) {
+		PrefixIndex index = actorPrefixes;
+		if (index == null) {
+			if (stamp != 0)
+				throw new LockNeeded();
+			synchronized (indexLock) { // first use; build it once
+				index = actorPrefixes;
+				if (index == null)
+					actorPrefixes = index = new PrefixIndex(G, keys, actors);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Private Method: Returns the prefix index of the movie titles, building
+	 * it the first time.
+	 * 
+	 * @param stamp
+	 *            The optimistic stamp the query runs under, or 0 if it holds
+	 *            the read lock.
+	 * @return The index.
+	 * @throws LockNeeded
+	 *             If the index is not built and the query holds no lock.
+	 */
+	private PrefixIndex moviePrefixes(long stamp) {
+		PrefixIndex index = moviePrefixes;
+		if (index == null) {
+			if (stamp != 0)
+				throw new LockNeeded();
+			synchronized (indexLock) { // first use; build it once
+				index = moviePrefixes;
+				if (index == null) {
+					boolean[] movies = new boolean[keys.length];
+					for (int v = 0; v < G.V(); v++) {
+						movies[v] = !actors[v];
+					}
+					moviePrefixes = index = new PrefixIndex(G, keys, movies);
 				}
 			}
-		} else { // name already was correct format
-			actor = performer;
 		}
-		return actor;
+		return index;
 	}
 
 	/**
@@ -425,9 +1064,41 @@ public class SymbolGraph {
 	 *             Thrown to indicate that a path could not be found between the
 	 *             two actors.
 	 */
-	public List<String> getKBNumber(String actor1, String actor2,
+	public List<String> getKBNumber(final String actor1, final String actor2,
 			boolean commonNameFormat) throws ActorNotFoundException,
 			PathNotFoundException {
+		long start = System.nanoTime();
+		try {
+			return read(new Query<List<String>, ActorNotFoundException,
+					PathNotFoundException>() {
+				List<String> run(long stamp) throws ActorNotFoundException,
+						PathNotFoundException {
+					return kbNumber(actor1, actor2, stamp);
+				}
+			});
+		} finally {
+			metrics.recordQuery(QueryMetrics.KB_NUMBER, start);
+		}
+	}
+
+	/**
+	 * Private Method: Answers getKBNumber, which times it.
+	 * 
+	 * @param actor1
+	 *            The first actor.
+	 * @param actor2
+	 *            The second actor.
+	 * @param stamp
+	 *            The optimistic stamp the query runs under, or 0 if it holds
+	 *            the read lock.
+	 * @return The movies on a shortest path between them.
+	 * @throws ActorNotFoundException
+	 *             If either actor is not known.
+	 * @throws PathNotFoundException
+	 *             If the actors are not connected.
+	 */
+	private List<String> kbNumber(String actor1, String actor2, long stamp)
+			throws ActorNotFoundException, PathNotFoundException {
 		if ((actor1.equals("") | actor2.equals(""))) {
 			throw new ActorNotFoundException();
 		}
@@ -440,19 +1111,664 @@ public class SymbolGraph {
 		if (actor1 == null | actor2 == null) { // actor not known
 			throw new ActorNotFoundException();
 		}
-		int act1 = index(actor1);
-		int act2 = index(actor2);
-		bfs(act1, act2); // finds path between actors
-		if (visited[act2] == false) { // no path between actors
+		int act1 = st.get(actor1);
+		int act2 = st.get(actor2);
+		if (act1 == act2) { // same actor under another spelling
+			return movies;
+		}
+		if (!components.connected(act1, act2)) { // no path between actors
+			metrics.recordDisconnected();
 			throw new PathNotFoundException();
 		}
-		for (int x = act2; x != act1; x = edgeTo[x]) {// walks path
-			if (!isActor(x)) // adds movie vertices to list
-				movies.add(name(x));
+		DistanceTable table = pinnedTable(act1);
+		if (table == null)
+			table = pinnedTable(act2);
+		if (table != null) { // no search needed
+			metrics.recordPinnedAnswer();
+			return walkPinned(table, act1, act2);
+		}
+		PathCache cache = pathCache;
+		int[] path = (cache == null) ? null : cache.get(act1, act2);
+		if (cache != null)
+			metrics.recordCacheLookup(path != null);
+		if (path == null) {
+			path = findPath(Math.min(act1, act2), Math.max(act1, act2));
+			if (cache != null)
+				remember(cache, act1, act2, path, stamp);
+		}
+		if (path == PathCache.NO_PATH) { // no path between actors
+			throw new PathNotFoundException();
+		}
+		// the path runs from the higher vertex back to the lower
+		for (int i = 0; i < path.length; i++) {
+			int x = path[(act2 > act1) ? i : path.length - 1 - i];
+			if (!actors[x]) // adds movie vertices to list
+				movies.add(keys[x]);
 		}
 		return movies;
 	}
 
+	/**
+	 * Private Method: Stores a path in the cache, unless it was found without
+	 * a lock and a movie has been added since, when it may be wrong. An
+	 * optimistic stamp is turned into the read lock for the store, so that
+	 * addMovie cannot forget the pair before the path is stored.
+	 * 
+	 * @param cache
+	 *            The cache.
+	 * @param v
+	 *            One vertex.
+	 * @param w
+	 *            The other vertex.
+	 * @param path
+	 *            The path between them, or PathCache.NO_PATH.
+	 * @param stamp
+	 *            The optimistic stamp the path was found under, or 0 if the
+	 *            query holds the read lock.
+	 */
+	private void remember(PathCache cache, int v, int w, int[] path,
+			long stamp) {
+		if (stamp == 0) {
+			cache.put(v, w, path);
+			return;
+		}
+		long read = lock.tryConvertToReadLock(stamp);
+		if (read == 0) // a movie was added; the query runs again
+			return;
+		try {
+			cache.put(v, w, path);
+		} finally {
+			lock.unlockRead(read);
+		}
+	}
+
+	/**
+	 * Private Method: Searches for a shortest path between two vertices.
+	 * 
+	 * @param from
+	 *            The vertex the path ends at.
+	 * @param to
+	 *            The vertex the path starts from.
+	 * @return The vertices between to and from, listed from to back to from,
+	 *         or PathCache.NO_PATH if there is no path.
+	 */
+	private int[] findPath(int from, int to) {
+		SearchContext search = acquireSearch();
+		try {
+			boolean found = search.findPath(G, from, to);
+			metrics.recordSearch(search.verticesExpanded(),
+					search.edgesScanned());
+			if (!found)
+				return PathCache.NO_PATH;
+			int length = 0;
+			for (int x = search.edgeTo(to); x != from; x = search.edgeTo(x)) {
+				length++;
+			}
+			int[] path = new int[length];
+			int i = 0;
+			for (int x = search.edgeTo(to); x != from; x = search.edgeTo(x)) {
+				path[i++] = x; // walks path
+			}
+			return path;
+		} finally {
+			releaseSearch(search);
+		}
+	}
+
+	/**
+	 * Get the KB# path from one actor to each of many, as
+	 * {@link #getKBNumber(String, String, boolean)} would give it for each
+	 * pair, but with a single search: it goes out from the source until
+	 * every target is reached, and stops there. If the source is pinned, no
+	 * search is made at all. Targets in another component than the source
+	 * are left out before the search, so they cannot keep it going.
+	 * 
+	 * @param source
+	 *            The actor to measure from, in First Last or Last, First
+	 *            format.
+	 * @param targets
+	 *            The actors to measure to, in either format.
+	 * @return For each target connected to the source, in the order given,
+	 *         the movies connecting them, listed from the target back to the
+	 *         source as getKBNumber lists them; the source itself maps to an
+	 *         empty list. Targets not known, or not connected to the source,
+	 *         are left out.
+	 * @throws ActorNotFoundException
+	 *             Thrown to indicate that the source could not be found.
+	 */
+	public Map<String, List<String>> getKBNumbers(final String source,
+			Collection<String> targets) throws ActorNotFoundException {
+		long start = System.nanoTime();
+		try {
+			final List<String> names = new ArrayList<String>(targets);
+			return read(new Query<Map<String, List<String>>,
+					ActorNotFoundException, RuntimeException>() {
+				Map<String, List<String>> run(long stamp)
+						throws ActorNotFoundException {
+					int s = resolveActor(source);
+					Map<String, Integer> resolved =
+							new HashMap<String, Integer>();
+					int[] vertices = new int[names.size()];
+					for (int i = 0; i < vertices.length; i++) {
+						vertices[i] = vertexOf(names.get(i), resolved);
+					}
+					List<List<String>> paths = pathsFrom(s, vertices);
+					Map<String, List<String>> answers =
+							new LinkedHashMap<String, List<String>>();
+					for (int i = 0; i < vertices.length; i++) {
+						if (paths.get(i) != null)
+							answers.put(names.get(i), paths.get(i));
+					}
+					return answers;
+				}
+			});
+		} finally {
+			metrics.recordQuery(QueryMetrics.KB_NUMBERS, start);
+		}
+	}
+
+	/**
+	 * Get the KB# paths of many pairs of actors at once. The pairs are
+	 * grouped by the actor they share, and each group is answered by
+	 * {@link #getKBNumbers(String, Collection)}'s single search: a pair is
+	 * searched from whichever of its actors is in more of the pairs, so a
+	 * batch that is mostly one actor against many makes one search however
+	 * its pairs are written.
+	 * 
+	 * @param actors1
+	 *            The first actor of each pair, in either format.
+	 * @param actors2
+	 *            The second actor of each pair, in either format.
+	 * @return For each pair, in the order given, the movies connecting the
+	 *         actors, in the order getKBNumber(actor1, actor2, ...) lists
+	 *         them; null if either actor is not known or they are not
+	 *         connected.
+	 * @throws IllegalArgumentException
+	 *             If the lists are not the same length.
+	 */
+	public List<List<String>> getKBNumbers(final List<String> actors1,
+			final List<String> actors2) {
+		long start = System.nanoTime();
+		try {
+			if (actors1.size() != actors2.size())
+				throw new IllegalArgumentException("Pairs need two actors: "
+						+ actors1.size() + " first, " + actors2.size()
+						+ " second");
+			return read(new Lookup<List<List<String>>>() {
+				List<List<String>> run(long stamp) {
+					return pairPaths(actors1, actors2);
+				}
+			});
+		} finally {
+			metrics.recordQuery(QueryMetrics.KB_NUMBERS, start);
+		}
+	}
+
+	/**
+	 * Private Method: Answers getKBNumbers for a batch of pairs, which checks
+	 * the lists and times it.
+	 * 
+	 * @param actors1
+	 *            The first actor of each pair.
+	 * @param actors2
+	 *            The second actor of each pair, as many.
+	 * @return For each pair, the movies connecting the actors, or null.
+	 */
+	private List<List<String>> pairPaths(List<String> actors1,
+			List<String> actors2) {
+		int pairs = actors1.size();
+		Map<String, Integer> resolved = new HashMap<String, Integer>();
+		Map<Integer, Integer> uses = new HashMap<Integer, Integer>();
+		int[] v1 = new int[pairs];
+		int[] v2 = new int[pairs];
+		for (int i = 0; i < pairs; i++) {
+			v1[i] = vertexOf(actors1.get(i), resolved);
+			v2[i] = vertexOf(actors2.get(i), resolved);
+			if (v1[i] >= 0 && v2[i] >= 0) {
+				uses.put(v1[i], uses.containsKey(v1[i]) ? uses.get(v1[i]) + 1
+						: 1);
+				uses.put(v2[i], uses.containsKey(v2[i]) ? uses.get(v2[i]) + 1
+						: 1);
+			}
+		}
+
+		// each pair joins the group of the end more pairs share
+		boolean[] flipped = new boolean[pairs];
+		Map<Integer, List<Integer>> groups =
+				new LinkedHashMap<Integer, List<Integer>>();
+		for (int i = 0; i < pairs; i++) {
+			if (v1[i] < 0 || v2[i] < 0)
+				continue;
+			flipped[i] = uses.get(v2[i]) > uses.get(v1[i]);
+			int s = flipped[i] ? v2[i] : v1[i];
+			List<Integer> group = groups.get(s);
+			if (group == null) {
+				group = new ArrayList<Integer>();
+				groups.put(s, group);
+			}
+			group.add(i);
+		}
+
+		List<List<String>> answers = new ArrayList<List<String>>(
+				Collections.nCopies(pairs, (List<String>) null));
+		for (Map.Entry<Integer, List<Integer>> group : groups.entrySet()) {
+			List<Integer> members = group.getValue();
+			int[] targets = new int[members.size()];
+			for (int k = 0; k < targets.length; k++) {
+				int i = members.get(k);
+				targets[k] = flipped[i] ? v1[i] : v2[i];
+			}
+			List<List<String>> paths = pathsFrom(group.getKey(), targets);
+			for (int k = 0; k < targets.length; k++) {
+				int i = members.get(k);
+				List<String> movies = paths.get(k);
+				if (movies != null && flipped[i]) // listed from actor1
+					Collections.reverse(movies);
+				answers.set(i, movies);
+			}
+		}
+		return answers;
+	}
+
+	/**
+	 * Private Method: Finds shortest paths from one vertex to many, with at
+	 * most one search, which stops once every connected target is reached.
+	 * 
+	 * @param s
+	 *            The source vertex.
+	 * @param targets
+	 *            The target vertices, -1 for a name that is not known.
+	 * @return For each target, the movies on a shortest path, listed from
+	 *         the target back to the source, or null if there is none.
+	 */
+	private List<List<String>> pathsFrom(int s, int[] targets) {
+		List<List<String>> paths = new ArrayList<List<String>>(targets.length);
+		int[] live = new int[targets.length];
+		int n = 0;
+		for (int t : targets) {
+			if (t >= 0 && t != s && components.connected(s, t))
+				live[n++] = t;
+		}
+		DistanceTable table = pinnedTable(s);
+		SearchContext search = (table == null && n > 0) ? acquireSearch()
+				: null;
+		try {
+			if (search != null) {
+				search.findTargets(G, s, Arrays.copyOf(live, n));
+				metrics.recordSearch(search.verticesExpanded(),
+						search.edgesScanned());
+			}
+			for (int t : targets) {
+				if (t < 0 || !components.connected(s, t)) {
+					paths.add(null);
+					continue;
+				}
+				List<String> movies = new ArrayList<String>();
+				for (int x = t, steps = 0; x != s; x = (table != null) ? table
+						.parent(x) : search.edgeTo(x)) {
+					if (++steps > G.V())
+						throw new IllegalStateException(CHANGED);
+					if (!actors[x]) // adds movie vertices to list
+						movies.add(keys[x]);
+				}
+				paths.add(movies);
+			}
+		} finally {
+			if (search != null)
+				releaseSearch(search);
+		}
+		return paths;
+	}
+
+	/**
+	 * Private Method: Finds the vertex of an actor named in a batch,
+	 * remembering names already looked up.
+	 * 
+	 * @param actor
+	 *            The actor, in either format.
+	 * @param resolved
+	 *            The vertices of the names looked up so far.
+	 * @return The vertex, or -1 if the actor is not known.
+	 */
+	private int vertexOf(String actor, Map<String, Integer> resolved) {
+		Integer v = resolved.get(actor);
+		if (v == null) {
+			String name = (actor == null || actor.equals("")) ? null
+					: reformatName(actor);
+			v = (name == null) ? -1 : st.get(name);
+			resolved.put(actor, v);
+		}
+		return v;
+	}
+
+	/**
+	 * Turns on a cache of recent getKBNumber answers, so that a pair of actors
+	 * asked about again, in either order, is answered without searching. Any
+	 * cache that was on before is dropped.
+	 * 
+	 * @param capacity
+	 *            The most pairs of actors to remember.
+	 * @throws IllegalArgumentException
+	 *             If capacity is less than 1.
+	 */
+	public void enablePathCache(int capacity) {
+		pathCache = new PathCache(capacity);
+	}
+
+	/**
+	 * Turns off the cache of getKBNumber answers.
+	 */
+	public void disablePathCache() {
+		pathCache = null;
+	}
+
+	/**
+	 * Returns the cache of getKBNumber answers, for its hit, miss and
+	 * eviction counts.
+	 * 
+	 * @return The cache, or null if caching is off.
+	 */
+	public PathCache pathCache() {
+		return pathCache;
+	}
+
+	/**
+	 * Returns the statistics of this graph's queries and of its loading, to
+	 * be read or published through a {@link MetricsRegistry}.
+	 * 
+	 * @return the statistics
+	 */
+	public QueryMetrics metrics() {
+		return metrics;
+	}
+
+	/**
+	 * Pins a source actor. A full search from the actor is done once, and its
+	 * distances and shortest-path links are kept, so every later
+	 * {@link #getKBNumber} call that starts or ends at this actor is answered
+	 * in time proportional to the length of the path, without searching.
+	 * Pinning an actor that is already pinned has no effect.
+	 * 
+	 * @param actor
+	 *            The actor to pin, in First Last or Last, First format.
+	 * @throws ActorNotFoundException
+	 *             Thrown to indicate that the actor could not be found.
+	 */
+	public void pinSource(String actor) throws ActorNotFoundException {
+		long stamp = lock.readLock(); // a full search is too long to repeat
+		try {
+			int v = resolveActor(actor);
+			if (pinnedTable(v) != null)
+				return;
+			DistanceTable table = fullSearch(v); // outside the monitor
+			synchronized (this) {
+				if (pinnedTable(v) != null)
+					return;
+				DistanceTable[] tables = Arrays.copyOf(pinned,
+						pinned.length + 1);
+				tables[pinned.length] = table;
+				pinned = tables;
+			}
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Unpins a source actor, freeing its distance table.
+	 * 
+	 * @param actor
+	 *            The actor to unpin, in First Last or Last, First format.
+	 * @return True if the actor was pinned.
+	 * @throws ActorNotFoundException
+	 *             Thrown to indicate that the actor could not be found.
+	 */
+	public boolean unpinSource(String actor) throws ActorNotFoundException {
+		long stamp = lock.readLock(); // it writes, so it must not run twice
+		try {
+			int v = resolveActor(actor);
+			synchronized (this) { // after the read lock, as in pinSource
+				for (int i = 0; i < pinned.length; i++) {
+					if (pinned[i].source() == v) {
+						DistanceTable[] tables =
+								new DistanceTable[pinned.length - 1];
+						System.arraycopy(pinned, 0, tables, 0, i);
+						System.arraycopy(pinned, i + 1, tables, i,
+								tables.length - i);
+						pinned = tables;
+						return true;
+					}
+				}
+			}
+			return false;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Counts the actors at each Bacon number from the given actor. The pinned
+	 * distance table is used if the actor is pinned; otherwise a full search
+	 * is done for this call only.
+	 * 
+	 * @param actor
+	 *            The actor to count from, in First Last or Last, First format.
+	 * @return An array whose entry k is the number of actors with a Bacon
+	 *         number of k from the actor (entry 0 is the actor itself). Actors
+	 *         with no path to the actor are not counted.
+	 * @throws ActorNotFoundException
+	 *             Thrown to indicate that the actor could not be found.
+	 */
+	public int[] getBaconHistogram(String actor) throws ActorNotFoundException {
+		long stamp = lock.readLock(); // a full search is too long to repeat
+		try {
+			int v = resolveActor(actor);
+			DistanceTable table = pinnedTable(v);
+			if (table == null)
+				table = fullSearch(v);
+			// actor to actor paths alternate with movies, so have even length
+			int[] byDistance = table.histogram(actors);
+			int[] byBaconNumber = new int[(byDistance.length + 1) / 2];
+			for (int k = 0; k < byBaconNumber.length; k++) {
+				byBaconNumber[k] = byDistance[2 * k];
+			}
+			return byBaconNumber;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Measures the Bacon numbers between every pair of actors, with a
+	 * {@link MultiSourceBfs} on every core, for the average Bacon number,
+	 * eccentricity and closeness of each actor and the distribution over all
+	 * pairs. The graph is searched once per 64 &times; words actors, so on a
+	 * large graph this takes minutes; the result is not kept.
+	 * 
+	 * @param words
+	 *            The longs per vertex of the searches' bitmaps; 1 searches
+	 *            64 actors at once, 2 searches 128.
+	 * @return The statistics of every actor.
+	 * @throws IllegalArgumentException
+	 *             If words is less than 1, or too many for the graph's
+	 *             bitmaps to fit in an array.
+	 */
+	public MultiSourceBfs baconStatistics(int words) {
+		long stamp = lock.readLock(); // too long to repeat
+		try {
+			return new MultiSourceBfs(G, actors, words,
+					ForkJoinPool.commonPool());
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Computes the betweenness centrality of every actor and movie, with a
+	 * {@link Betweenness} on every core. Exact betweenness takes a search
+	 * from every vertex, which on a large graph is too many; given an
+	 * epsilon, it is estimated from a random sample of sources instead,
+	 * the same sample every call. The result is not kept.
+	 * 
+	 * @param epsilon
+	 *            The largest error allowed in a normalized centrality, or 0
+	 *            for the exact betweenness.
+	 * @param delta
+	 *            The chance allowed of any error being larger than epsilon;
+	 *            ignored if epsilon is 0.
+	 * @return The betweenness of every vertex.
+	 * @throws IllegalArgumentException
+	 *             Unless epsilon is 0, or epsilon and delta are both between
+	 *             0 and 1.
+	 */
+	public Betweenness betweenness(double epsilon, double delta) {
+		long stamp = lock.readLock(); // too long to repeat
+		try {
+			if (epsilon == 0)
+				return new Betweenness(G, ForkJoinPool.commonPool());
+			return new Betweenness(G, epsilon, delta, 0,
+					ForkJoinPool.commonPool());
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Get the actors, or the movies, that bridge the most of the graph.
+	 * 
+	 * @param betweenness
+	 *            The betweenness of the graph, from betweenness().
+	 * @param n
+	 *            Run this search for the top n.
+	 * @param actors
+	 *            True for actors, false for movies.
+	 * @return The names of the actors or movies of highest betweenness,
+	 *         highest first.
+	 */
+	public List<String> topBridges(final Betweenness betweenness,
+			final int n, final boolean actors) {
+		return read(new Lookup<List<String>>() {
+			List<String> run(long stamp) {
+				boolean[] include = new boolean[G.V()];
+				for (int v = 0; v < include.length; v++) {
+					include[v] = SymbolGraph.this.actors[v] == actors;
+				}
+				return names(betweenness.top(n, include));
+			}
+		});
+	}
+
+	/**
+	 * Counts the actors connected to the given actor by some chain of movies.
+	 * 
+	 * @param actor
+	 *            The actor, in First Last or Last, First format.
+	 * @return The number of actors in the actor's connected component, the
+	 *         actor included.
+	 * @throws ActorNotFoundException
+	 *             Thrown to indicate that the actor could not be found.
+	 */
+	public int getComponentSize(final String actor)
+			throws ActorNotFoundException {
+		return read(new Query<Integer, ActorNotFoundException,
+				RuntimeException>() {
+			Integer run(long stamp) throws ActorNotFoundException {
+				return components.actors(resolveActor(actor));
+			}
+		});
+	}
+
+	/**
+	 * Returns the connected components of the graph, found when it was
+	 * loaded, for their sizes and the share of the giant component.
+	 * 
+	 * @return The components.
+	 */
+	public Components components() {
+		return components;
+	}
+
+	/**
+	 * Private Method: Searches the whole graph from a vertex, in parallel if
+	 * the graph is large.
+	 * 
+	 * @param v
+	 *            The vertex to search from.
+	 * @return The distance table of the vertex.
+	 */
+	private DistanceTable fullSearch(int v) {
+		if (G.E() >= PARALLEL_SEARCH_EDGES
+				&& ForkJoinPool.getCommonPoolParallelism() > 1)
+			return new DistanceTable(G, v, ForkJoinPool.commonPool());
+		return new DistanceTable(G, v);
+	}
+
+	/**
+	 * Private Method: Finds the distance table of a pinned actor.
+	 * 
+	 * @param v
+	 *            The vertex of the actor.
+	 * @return The actor's table, or null if the actor is not pinned.
+	 */
+	private DistanceTable pinnedTable(int v) {
+		DistanceTable[] tables = pinned; // a few entries, so just scan
+		for (int i = 0; i < tables.length; i++) {
+			if (tables[i].source() == v)
+				return tables[i];
+		}
+		return null;
+	}
+
+	/**
+	 * Private Method: Lists the movies on the path between two actors, one of
+	 * whom is pinned, by following the pinned table's links.
+	 * 
+	 * @param table
+	 *            The distance table of act1 or act2.
+	 * @param act1
+	 *            The starting actor.
+	 * @param act2
+	 *            The ending actor.
+	 * @return The movies on the path, listed from act2 back to act1.
+	 * @throws PathNotFoundException
+	 *             Thrown to indicate that there is no path between the actors.
+	 */
+	private List<String> walkPinned(DistanceTable table, int act1, int act2)
+			throws PathNotFoundException {
+		int from = (table.source() == act1) ? act2 : act1;
+		if (!table.hasPathTo(from)) // no path between actors
+			throw new PathNotFoundException();
+		List<String> movies = new ArrayList<String>();
+		for (int x = from, steps = 0; x != table.source(); x = table
+				.parent(x)) {
+			if (++steps > G.V())
+				throw new IllegalStateException(CHANGED);
+			if (!actors[x]) // adds movie vertices to list
+				movies.add(keys[x]);
+		}
+		if (from == act1) // walked from act1, so the order is backwards
+			Collections.reverse(movies);
+		return movies;
+	}
+
+	/**
+	 * Private Method: Finds the vertex of an actor given in either name format.
+	 * 
+	 * @param actor
+	 *            The actor, in First Last or Last, First format.
+	 * @return The vertex of the actor.
+	 * @throws ActorNotFoundException
+	 *             Thrown to indicate that the actor could not be found.
+	 */
+	private int resolveActor(String actor) throws ActorNotFoundException {
+		if (actor == null || actor.equals(""))
+			throw new ActorNotFoundException();
+		String name = reformatName(actor);
+		if (name == null) // actor not known
+			throw new ActorNotFoundException();
+		return st.get(name);
+	}
+
 	/**
 	 * Find the two actors who have starred in the most movies together. If
 	 * there are ties, return all tying parts.
@@ -463,92 +1779,295 @@ public class SymbolGraph {
 	 *         same count of movies in common.
 	 */
 	public List<Colleagues> findTopActorPairings() {
-		List<Colleagues> topList = new ArrayList<Colleagues>();
-		int mostMovies = 0; // most movies of a Colleague
-		for (int actor = 0; actor < keys.length; actor++) {
-			if (isActor(actor) && (G.degree(actor) >= mostMovies)) {
-				// skips actors that have been in less movies than current high
-				Colleagues topColleague = findTopColleague(actor);
-				if (!(topColleague == null)) {// has a top colleague
-					int mov = topColleague.numMoviesShared;
-					if (mov > mostMovies) { // new high
-						topList.clear();
-						mostMovies = mov;
-						topList.add(topColleague);
-					}
-					if ((mov == mostMovies) // same as current high
-							&& topList.contains(topColleague) == false) {
-						topList.add(topColleague);
-					}
+		long start = System.nanoTime();
+		List<Colleagues> topList = read(new Lookup<List<Colleagues>>() {
+			List<Colleagues> run(long stamp) {
+				ActorPairings top = topPairings(stamp);
+				List<Colleagues> topList = new ArrayList<Colleagues>(top
+						.size());
+				for (int i = 0; i < top.size(); i++) {
+					topList.add(new Colleagues(keys[top.actor(i)],
+							keys[top.colleague(i)], top.moviesShared()));
 				}
+				return topList;
 			}
-		}
+		});
+		metrics.recordQuery(QueryMetrics.TOP_PAIRINGS, start);
 		return topList;
 	}
 
 	/**
-	 * Private Method: Finds the Colleague that has been in the most movies with
-	 * a specific actor.
+	 * Private Method: Returns the pairs of actors who share the most movies,
+	 * finding them the first time. They are kept until a movie is added, so
+	 * repeated requests only turn the pairs into names.
 	 * 
-	 * @param actor
-	 *            The actor to find the top acting Colleague for.
-	 * @return The top Colleagues object with the desired actor and their top
-	 *         acting Colleague.
-	 */
-	private Colleagues findTopColleague(int actor) {
-		ST<Integer, Integer> colleagues = new ST<Integer, Integer>();
-		// tree to hold this actors colleagues and num shared movies
-		for (int v : G.adj(actor)) { // actor to movies edges
-			for (int a : G.adj(v)) { // movies to actor edges
-				if ((a != actor)) {
-					if (colleagues.contains(a)) {
-						colleagues.put(a, colleagues.get(a) + 1);
-					} else {
-						colleagues.put(a, 1);
-					}
+	 * @param stamp
+	 *            The optimistic stamp the query runs under, or 0 if it holds
+	 *            the read lock.
+	 * @return The top pairings.
+	 * @throws LockNeeded
+	 *             If the pairs are not found yet and the query holds no lock.
+	 */
+	private ActorPairings topPairings(long stamp) {
+		ActorPairings top = topPairings;
+		if (top != null)
+			return top;
+		if (stamp != 0)
+			throw new LockNeeded();
+		CoStarGraph projection = coStarsIfPossible(0);
+		synchronized (coStarLock) { // first use; find them once
+			top = topPairings;
+			if (top == null) {
+				if (projection != null) { // every actor's counts are known
+					top = new ActorPairings(projection);
+				} else { // counted on every core
+					top = new ActorPairings(G, ranking,
+							ForkJoinPool.commonPool());
 				}
+				topPairings = top;
 			}
+			return top;
 		}
-		if (!colleagues.isEmpty()) { // no colleagues in this movie list
-			int topCol = colleagues.min();
-			for (Integer x : colleagues) { // find colleague with most movies
-				if (colleagues.get(x) > colleagues.get(topCol))
-					topCol = x;
+	}
+
+	/**
+	 * Get the colleagues an actor has been in the most movies with.
+	 * 
+	 * @param performer
+	 *            The actor, in First Last or Last, First format.
+	 * @param n
+	 *            Run this search for the top n colleagues.
+	 * @return A list of Colleagues pairing the actor with each colleague,
+	 *         sorted by the number of movies they share, most first.
+	 *         Colleagues with the same count are listed in the order they
+	 *         first appear in the file. The list is shorter than n if the
+	 *         actor has fewer colleagues.
+	 * @throws ActorNotFoundException
+	 *             Thrown to indicate that the actor could not be found.
+	 */
+	public List<Colleagues> topColleagues(final String performer,
+			final int n) throws ActorNotFoundException {
+		return read(new Query<List<Colleagues>, ActorNotFoundException,
+				RuntimeException>() {
+			List<Colleagues> run(long stamp) throws ActorNotFoundException {
+				return colleagues(performer, n, stamp);
 			}
-			return new Colleagues(name(actor), name(topCol),
-					colleagues.get(topCol));
-		} else { // no colleagues in this movie list
-			return null;
+		});
+	}
+
+	/**
+	 * Private Method: Answers topColleagues.
+	 * 
+	 * @param performer
+	 *            The actor, in either format.
+	 * @param n
+	 *            The most colleagues to list.
+	 * @param stamp
+	 *            The optimistic stamp the query runs under, or 0 if it holds
+	 *            the read lock.
+	 * @return The colleagues, most movies shared first.
+	 * @throws ActorNotFoundException
+	 *             If the actor is not known.
+	 */
+	private List<Colleagues> colleagues(String performer, int n, long stamp)
+			throws ActorNotFoundException {
+		int actor = resolveActor(performer);
+		int[] colleagues;
+		int[] shared;
+		int found;
+		CoStarGraph projection = coStarsIfPossible(stamp);
+		if (projection != null) { // read the actor's row
+			int start = projection.adjStart(actor);
+			found = projection.degree(actor);
+			colleagues = Arrays.copyOfRange(projection.neighbors(), start,
+					start + found);
+			shared = Arrays.copyOfRange(projection.weights(), start,
+					start + found);
+		} else { // count this one row
+			int[] count = new int[G.V()];
+			colleagues = new int[G.V()];
+			found = CoStarGraph.countColleagues(G, actor, count, colleagues);
+			shared = new int[found];
+			for (int t = 0; t < found; t++) {
+				shared[t] = count[colleagues[t]];
+			}
+		}
+		// most shared first, then lowest index
+		long[] sorted = new long[found];
+		for (int t = 0; t < found; t++) {
+			sorted[t] = ((long) (Integer.MAX_VALUE - shared[t]) << 32)
+					| colleagues[t];
 		}
+		Arrays.sort(sorted);
+		int count = Math.max(0, Math.min(n, found));
+		List<Colleagues> list = new ArrayList<Colleagues>(count);
+		for (int t = 0; t < count; t++) {
+			list.add(new Colleagues(keys[actor], keys[(int) sorted[t]],
+					Integer.MAX_VALUE - (int) (sorted[t] >>> 32)));
+		}
+		return list;
 	}
 
 	/**
-	 * Finds the path and creates the edgeTo array between two actors.
+	 * Get the pairs of actors who have been in the most movies together,
+	 * strongest collaborations first.
 	 * 
-	 * @param start
-	 *            The starting actor.
-	 * @param target
-	 *            The actor to find the path to.
-	 */
-	private void bfs(int start, int target) {
-		resetVisited();
-		resetEdgeTo();
-		java.util.Queue<Integer> queue = new java.util.LinkedList<Integer>();
-		visited[start] = true;
-		queue.add(start);
-		while (!queue.isEmpty()) {
-			int v = queue.poll();
-			for (int w : G.adj(v)) {
-				if (visited[w] == false) {
-					edgeTo[w] = v;
-					visited[w] = true;
-					queue.add(w);
+	 * @param n
+	 *            Run this search for the top n pairs.
+	 * @return A list of n Colleagues, sorted by the number of movies shared,
+	 *         most first. Pairs with the same count are listed in the order
+	 *         their actors first appear in the file. The list is shorter than
+	 *         n if there are fewer pairs.
+	 * @throws IllegalStateException
+	 *             if the co-star projection is too large to build
+	 */
+	public List<Colleagues> strongestCollaborations(final int n) {
+		return read(new Lookup<List<Colleagues>>() {
+			List<Colleagues> run(long stamp) {
+				CoStarGraph projection = coStarsIfPossible(stamp);
+				if (projection == null)
+					throw new IllegalStateException(coStarsTooLarge);
+				int[] pairs = projection.strongestPairs(n);
+				List<Colleagues> list = new ArrayList<Colleagues>(
+						pairs.length / 2);
+				for (int k = 0; k < pairs.length; k += 2) {
+					list.add(new Colleagues(keys[pairs[k]], keys[pairs[k + 1]],
+							projection.weight(pairs[k], pairs[k + 1])));
 				}
+				return list;
 			}
-			if (visited[target] == true) { // breaks loop if target reached
-				queue.clear();
+		});
+	}
+
+	/**
+	 * Returns the co-star projection of the graph, in which two actors are
+	 * joined by the number of movies they share. It is built on every core the
+	 * first time it is asked for, by this method or by a query that reads it,
+	 * and kept from then on.
+	 * 
+	 * @return the co-star projection
+	 * @throws IllegalStateException
+	 *             if the projection would have more than
+	 *             {@link CoStarGraph#memoryLimit()} entries
+	 */
+	public CoStarGraph coStars() {
+		long stamp = lock.readLock(); // building it is too long to repeat
+		try {
+			CoStarGraph projection = coStarsIfPossible(0);
+			if (projection == null)
+				throw new IllegalStateException(coStarsTooLarge);
+			return projection;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Private Method: Returns the co-star projection, building it the first
+	 * time. The queries that can do without it call this, so that a graph
+	 * whose projection is too large only tries to build it once.
+	 * 
+	 * @param stamp
+	 *            The optimistic stamp the query runs under, or 0 if it holds
+	 *            the read lock.
+	 * @return The co-star projection, or null if it is too large.
+	 * @throws LockNeeded
+	 *             If the projection has not been tried and the query holds
+	 *             no lock.
+	 */
+	private CoStarGraph coStarsIfPossible(long stamp) {
+		CoStarGraph projection = coStars;
+		if (projection != null || coStarsTooLarge != null)
+			return projection;
+		if (stamp != 0)
+			throw new LockNeeded();
+		synchronized (coStarLock) { // first use; build it once
+			if (coStars == null && coStarsTooLarge == null) {
+				try {
+					coStars = new CoStarGraph(G, ranking,
+							ForkJoinPool.commonPool(), CoStarGraph.memoryLimit());
+				} catch (IllegalStateException e) {
+					coStarsTooLarge = e.getMessage();
+				}
+			}
+			return coStars;
+		}
+	}
+
+	/**
+	 * Private Method: Runs a query without taking the lock, as long as no
+	 * movie is added while it runs. The query runs under an optimistic stamp,
+	 * and its answer, or the exception it throws, is kept if the stamp is
+	 * still valid afterwards. Otherwise it may have seen the graph part way
+	 * through a change, and it runs again holding the read lock; so it does
+	 * too if it needs an index that is not built yet. In the common case a
+	 * query writes nothing shared, so queries scale with the cores.
+	 * 
+	 * @param query
+	 *            The query.
+	 * @return Its answer.
+	 * @throws X
+	 *             As the query does.
+	 * @throws Y
+	 *             As the query does.
+	 */
+	private <T, X extends Exception, Y extends Exception> T read(
+			Query<T, X, Y> query) throws X, Y {
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0) { // 0 while a movie is being added
+			try {
+				T answer = query.run(stamp);
+				if (lock.validate(stamp))
+					return answer;
+			} catch (LockNeeded e) {
+				// run again holding the lock, below
+			} catch (RuntimeException e) { // may be from a torn read
+				if (lock.validate(stamp))
+					throw e;
+			} catch (Exception e) { // X or Y
+				if (lock.validate(stamp))
+					throw e;
 			}
 		}
+		stamp = lock.readLock();
+		try {
+			return query.run(0);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Private Class: A query for read() to run, with the exceptions it may
+	 * throw.
+	 */
+	private abstract static class Query<T, X extends Exception,
+			Y extends Exception> {
+		/**
+		 * Answers the query.
+		 * 
+		 * @param stamp
+		 *            The optimistic stamp it runs under, or 0 if it holds the
+		 *            read lock.
+		 * @return The answer.
+		 */
+		abstract T run(long stamp) throws X, Y;
+	}
+
+	/**
+	 * Private Class: A query that throws no checked exception.
+	 */
+	private abstract static class Lookup<T> extends
+			Query<T, RuntimeException, RuntimeException> {
+		abstract T run(long stamp);
+	}
+
+	/**
+	 * Private Class: Thrown by a query running without the lock that needs
+	 * an index built, which is only done holding the read lock.
+	 */
+	private static class LockNeeded extends RuntimeException {
+		private static final long serialVersionUID = 1L;
 	}
 
 	/**
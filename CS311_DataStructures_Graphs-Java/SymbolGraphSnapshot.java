@@ -0,0 +1,233 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The <tt>SymbolGraphSnapshot</tt> class saves a {@link SymbolGraph} to a
+ * binary file and loads it back, so a program that restarts on the same cast
+ * list does not have to parse it again. A snapshot holds, in order (all
+ * numbers big-endian):
+ * <ul>
+ * <li>the magic number <tt>SYMG</tt> and the format {@link #VERSION}</li>
+ * <li>the size and last-modified time of the text file it was built from,
+ * and the delimiter that file was read with</li>
+ * <li><em>V</em> and <em>E</em></li>
+ * <li>the <em>V</em> vertex names, each as a length followed by its UTF-8
+ * bytes</li>
+ * <li>the actor flags, packed 64 to a <tt>long</tt></li>
+ * <li>the <em>V</em> + 1 offsets and 2<em>E</em> targets of the graph's
+ * adjacency arrays</li>
+ * <li>a CRC-32 of everything before it</li>
+ * </ul>
+ * A snapshot is read through a memory-mapped buffer and the adjacency arrays
+ * are copied out of it in bulk. If the magic number, version, checksum, source
+ * size, source time or delimiter does not match, {@link #read} returns
+ * <tt>null</tt> and the caller should parse the text file instead.
+ * <p>
+ * A snapshot is limited to 2 GB, the most a single mapping can hold.
+ *
+ * @author Cameron Stanavige
+ */
+public class SymbolGraphSnapshot {
+	/**
+	 * The version of the snapshot format written by this class.
+	 */
+	public static final int VERSION = 1;
+
+	private static final int MAGIC = 0x53594D47; // "SYMG"
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// this class only has static methods
+	private SymbolGraphSnapshot() {
+	}
+
+	/**
+	 * Writes a snapshot of <tt>sg</tt> to <tt>snapshot</tt>. The snapshot is
+	 * written to a temporary file first and then renamed, so a reader never
+	 * sees half a snapshot.
+	 * 
+	 * @param sg
+	 *            the symbol graph
+	 * @param snapshot
+	 *            the file to write
+	 * @param source
+	 *            the text file <tt>sg</tt> was read from
+	 * @param delimiter
+	 *            the delimiter <tt>source</tt> was read with
+	 * @throws IOException
+	 *             if the snapshot cannot be written
+	 */
+	public static void write(SymbolGraph sg, File snapshot, File source,
+			String delimiter) throws IOException {
+		File tmp = new File(snapshot.getPath() + ".tmp");
+		boolean moved = false;
+		try {
+			sg.writeSnapshot(tmp, source, delimiter);
+			Files.move(tmp.toPath(), snapshot.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			moved = true;
+		} finally {
+			// a half-written or unmovable snapshot is of no use to anyone;
+			// File.delete() cannot throw over the error being reported
+			if (!moved)
+				tmp.delete();
+		}
+	}
+
+	/**
+	 * Writes the snapshot of a symbol graph's parts to a file, for
+	 * {@link SymbolGraph}, which holds its lock meanwhile.
+	 * 
+	 * @param G
+	 *            the graph
+	 * @param names
+	 *            the name of every vertex, with room to grow
+	 * @param actors
+	 *            which vertices are actors, with room to grow
+	 * @param file
+	 *            the file to write
+	 * @param source
+	 *            the text file the graph was read from
+	 * @param delimiter
+	 *            the delimiter <tt>source</tt> was read with
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	static void writeTo(Graph G, String[] names, boolean[] actors, File file,
+			File source, String delimiter) throws IOException {
+		int V = G.V();
+		CRC32 crc = new CRC32();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new CheckedOutputStream(new FileOutputStream(file), crc),
+				1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(source.length());
+			out.writeLong(source.lastModified());
+			out.writeByte(CastListParser.delimiterByte(delimiter));
+			out.writeInt(V);
+			out.writeInt(G.E());
+			for (int v = 0; v < V; v++) {
+				byte[] name = names[v].getBytes(UTF8);
+				out.writeInt(name.length);
+				out.write(name);
+			}
+			for (int v = 0; v < V; v += 64) {
+				long word = 0;
+				for (int b = 0; b < 64 && v + b < V; b++) {
+					if (actors[v + b])
+						word |= 1L << b;
+				}
+				out.writeLong(word);
+			}
+			// a graph that has grown may have gaps between its lists, so
+			// the offsets are counted afresh and the lists written one by one
+			int offset = 0;
+			for (int v = 0; v < V; v++) {
+				out.writeInt(offset);
+				offset += G.degree(v);
+			}
+			out.writeInt(2 * G.E());
+			int[] targets = G.targets();
+			for (int v = 0; v < V; v++) {
+				for (int i = G.adjStart(v), end = i + G.degree(v); i < end; i++) {
+					out.writeInt(targets[i]);
+				}
+			}
+			out.flush();
+			out.writeLong(crc.getValue());
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads the snapshot in <tt>snapshot</tt>, provided it is current.
+	 * 
+	 * @param snapshot
+	 *            the snapshot file
+	 * @param source
+	 *            the text file the snapshot should have been built from
+	 * @param delimiter
+	 *            the delimiter <tt>source</tt> is read with
+	 * @return the symbol graph in the snapshot, or <tt>null</tt> if there is
+	 *         no snapshot, or it is corrupt, from another version of this
+	 *         class, or stale
+	 * @throws IOException
+	 *             if the snapshot exists but cannot be read
+	 */
+	public static SymbolGraph read(File snapshot, File source, String delimiter)
+			throws IOException {
+		if (!snapshot.isFile() || snapshot.length() > Integer.MAX_VALUE
+				|| snapshot.length() < 41)
+			return null;
+		long start = System.nanoTime();
+		RandomAccessFile file = new RandomAccessFile(snapshot, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+
+			// check the header before spending time on the checksum
+			if (buf.getInt() != MAGIC || buf.getInt() != VERSION
+					|| buf.getLong() != source.length()
+					|| buf.getLong() != source.lastModified()
+					|| buf.get() != CastListParser.delimiterByte(delimiter))
+				return null;
+			CRC32 crc = new CRC32();
+			ByteBuffer body = buf.duplicate();
+			body.position(0).limit(buf.capacity() - 8);
+			crc.update(body);
+			if (buf.getLong(buf.capacity() - 8) != crc.getValue())
+				return null;
+
+			int V = buf.getInt();
+			int E = buf.getInt();
+			String[] names = new String[V];
+			byte[] bytes = new byte[64];
+			for (int v = 0; v < V; v++) {
+				int length = buf.getInt();
+				if (length > bytes.length)
+					bytes = new byte[Math.max(length, 2 * bytes.length)];
+				buf.get(bytes, 0, length);
+				names[v] = new String(bytes, 0, length, UTF8);
+			}
+			boolean[] actors = new boolean[V];
+			LongBuffer words = buf.asLongBuffer();
+			for (int v = 0; v < V; v += 64) {
+				long word = words.get();
+				for (int b = 0; b < 64 && v + b < V; b++) {
+					actors[v + b] = (word & (1L << b)) != 0;
+				}
+			}
+			buf.position(buf.position() + 8 * words.position());
+			IntBuffer ints = buf.asIntBuffer();
+			int[] offsets = new int[V + 1];
+			ints.get(offsets);
+			int[] targets = new int[2 * E];
+			ints.get(targets);
+
+			Graph G = new Graph(offsets, targets);
+			long read = System.nanoTime() - start;
+			SymbolGraph sg = new SymbolGraph(new NameIndex(names), actors, G);
+			sg.metrics().recordRead(read);
+			return sg;
+		} finally {
+			file.close();
+		}
+	}
+}
@@ -0,0 +1,130 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Regression test for {@link ActorPairings}: on generated graphs with a few
+ * lines of their own added, counted from the movie graph on one thread and
+ * on several and read from the co-star projection, the pairs must be the
+ * ones found by counting every actor's colleagues one actor at a time, in
+ * index order, with each actor's top colleague the lowest index among its
+ * best and each pair listed once.
+ * <p>
+ * Run as described in {@link GraphTest}.
+ *
+ * @author Cameron Stanavige
+ */
+public class ActorPairingsTest extends GraphTest {
+	// two actors who are each other's top colleague, and a movie listed
+	// twice on one line
+	private static final String EXTRA = "Pair, One|Shared A (1990)"
+			+ "|Shared B (1991)\n"
+			+ "Pair, Two|Shared A (1990)|Shared B (1991)\n"
+			+ "Twice, Listed|Shared D (1993)|Shared D (1993)\n"
+			+ "Once, Listed|Shared D (1993)\n";
+
+	public static void main(String[] args) throws IOException {
+		long[] seeds = { 2, 7, 11 };
+		for (long seed : seeds) {
+			// skewed casts, where a few actors stand out, and even ones,
+			// where many pairs tie
+			check(load(castList(new MovieGraphGenerator(300, 60, 900, 1.0,
+					0.8, seed).toBytes(), EXTRA)), seed);
+			check(load(castList(new MovieGraphGenerator(300, 100, 700, 0.0,
+					0.0, seed).toBytes(), EXTRA)), seed);
+		}
+		System.out.println("ActorPairingsTest: all checks passed");
+	}
+
+	// every way of finding the pairs, against the brute force
+	private static void check(SymbolGraph sg, long seed) {
+		Graph G = sg.G();
+		boolean[] isActor = new boolean[G.V()];
+		for (int v = 0; v < G.V(); v++) {
+			isActor[v] = sg.isActor(v);
+		}
+		DegreeRanking ranking = new DegreeRanking(G, isActor);
+		List<Integer> expected = bruteForce(G, isActor);
+		for (int threads : new int[] { 1, 3 }) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				check(new ActorPairings(G, ranking, pool), expected,
+						"seed " + seed + ", " + threads + " threads: ");
+				check(new ActorPairings(new CoStarGraph(G, ranking, pool,
+						Long.MAX_VALUE)), expected, "seed " + seed
+						+ ", co-star projection: ");
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+
+	// the pairs found, against the brute force
+	private static void check(ActorPairings top, List<Integer> expected,
+			String where) {
+		List<Integer> got = new ArrayList<Integer>();
+		got.add(top.moviesShared());
+		for (int i = 0; i < top.size(); i++) {
+			got.add(top.actor(i));
+			got.add(top.colleague(i));
+		}
+		check(got.equals(expected), where + "found " + got + ", expected "
+				+ expected);
+	}
+
+	// the count shared, then each pair, one actor at a time in index order
+	private static List<Integer> bruteForce(Graph G, boolean[] isActor) {
+		int most = 0;
+		List<int[]> pairs = new ArrayList<int[]>();
+		for (int actor = 0; actor < G.V(); actor++) {
+			if (!isActor[actor])
+				continue;
+			TreeMap<Integer, Integer> count = new TreeMap<Integer, Integer>();
+			for (int i = G.adjStart(actor), end = i + G.degree(actor); i < end;
+					i++) {
+				int movie = G.targets()[i];
+				for (int j = G.adjStart(movie), last = j + G.degree(movie);
+						j < last; j++) {
+					int colleague = G.targets()[j];
+					if (colleague != actor) {
+						Integer c = count.get(colleague);
+						count.put(colleague, (c == null) ? 1 : c + 1);
+					}
+				}
+			}
+			if (count.isEmpty())
+				continue;
+			int top = count.firstKey(); // the lowest index among the best
+			for (int colleague : count.keySet()) {
+				if (count.get(colleague) > count.get(top))
+					top = colleague;
+			}
+			if (count.get(top) > most) {
+				most = count.get(top);
+				pairs.clear();
+			}
+			if (count.get(top) == most && !listed(pairs, actor, top))
+				pairs.add(new int[] { actor, top });
+		}
+		List<Integer> expected = new ArrayList<Integer>();
+		expected.add(most);
+		for (int[] pair : pairs) {
+			expected.add(pair[0]);
+			expected.add(pair[1]);
+		}
+		return expected;
+	}
+
+	// is the pair listed already, either way round?
+	private static boolean listed(List<int[]> pairs, int a, int b) {
+		for (int[] pair : pairs) {
+			if (Arrays.equals(pair, new int[] { a, b })
+					|| Arrays.equals(pair, new int[] { b, a }))
+				return true;
+		}
+		return false;
+	}
+}
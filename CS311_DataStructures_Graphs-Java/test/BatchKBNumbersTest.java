@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Regression test for the batch queries
+ * {@link SymbolGraph#getKBNumbers(String, java.util.Collection)} and
+ * {@link SymbolGraph#getKBNumbers(List, List)}: every answer comes back in
+ * the order its pair was given, its movies in the order getKBNumber lists
+ * them, however the pairs are grouped and turned around to share searches,
+ * with unknown and unconnected actors answered by null or left out.
+ * <p>
+ * Run as described in {@link GraphTest}.
+ *
+ * @author Cameron Stanavige
+ */
+public class BatchKBNumbersTest extends GraphTest {
+	// a pair of actors no one else is connected to
+	private static final String ISLAND = "Island, One|Island Movie (1999)\n"
+			+ "Island, Two|Island Movie (1999)\n";
+	private static final String UNKNOWN = "Nobody, Really Not";
+
+	public static void main(String[] args) throws Exception {
+		SymbolGraph sg = load();
+		List<String> actors = actors(sg);
+		pairsInOrder(sg, actors, 11);
+		oneSourceInOrder(sg, actors, 12);
+
+		// the same answers when one side is a pinned source
+		SymbolGraph pinned = load();
+		pinned.pinSource(actors.get(0));
+		pairsInOrder(pinned, actors, 13);
+		oneSourceInOrder(pinned, actors, 14);
+		System.out.println("BatchKBNumbersTest: all checks passed");
+	}
+
+	// pairs mostly against a few busy actors, written either way round
+	private static void pairsInOrder(SymbolGraph sg, List<String> actors,
+			long seed) throws Exception {
+		Random random = new Random(seed);
+		List<String> first = new ArrayList<String>();
+		List<String> second = new ArrayList<String>();
+		for (int i = 0; i < 2000; i++) {
+			String hub = actors.get(random.nextInt(4));
+			String other = pick(actors, random);
+			if (random.nextBoolean()) {
+				first.add(hub);
+				second.add(other);
+			} else {
+				first.add(other);
+				second.add(hub);
+			}
+		}
+		first.add(UNKNOWN);
+		second.add(actors.get(0));
+		first.add(actors.get(1));
+		second.add("Island, One");
+		first.add(actors.get(2));
+		second.add(actors.get(2));
+
+		List<List<String>> answers = sg.getKBNumbers(first, second);
+		check(answers.size() == first.size(), "wrong number of answers");
+		for (int i = 0; i < first.size(); i++) {
+			List<String> expected = kbNumber(sg, first.get(i), second.get(i));
+			List<String> got = answers.get(i);
+			if (expected == null) {
+				check(got == null, "pair " + i + " should have no answer");
+				continue;
+			}
+			check(got != null && got.size() == expected.size(), "pair " + i
+					+ " has the wrong Bacon number");
+			check(isPath(sg, second.get(i), first.get(i), got), "pair " + i
+					+ " is not listed as getKBNumber lists it: " + got);
+		}
+	}
+
+	// one source against many targets, repeats and unknowns included
+	private static void oneSourceInOrder(SymbolGraph sg, List<String> actors,
+			long seed) throws Exception {
+		Random random = new Random(seed);
+		String source = actors.get(3);
+		List<String> targets = new ArrayList<String>();
+		for (int i = 0; i < 500; i++) {
+			targets.add(pick(actors, random));
+		}
+		targets.add(UNKNOWN);
+		targets.add("Island, Two");
+		targets.add(source);
+
+		Map<String, List<String>> answers = sg.getKBNumbers(source, targets);
+		Iterator<String> order = answers.keySet().iterator();
+		Set<String> seen = new HashSet<String>();
+		for (String target : targets) {
+			List<String> expected = kbNumber(sg, source, target);
+			if (expected == null) {
+				check(!answers.containsKey(target), target
+						+ " should be left out");
+				continue;
+			}
+			if (!seen.add(target))
+				continue; // a repeat has one entry, where it first came
+			check(order.hasNext() && order.next().equals(target), target
+					+ " is out of order");
+			List<String> got = answers.get(target);
+			check(got.size() == expected.size(), target
+					+ " has the wrong Bacon number");
+			check(isPath(sg, target, source, got), target
+					+ " is not listed from the target back: " + got);
+		}
+		check(!order.hasNext(), "answers for targets not asked about");
+		check(answers.get(source).isEmpty(), "the source is not at 0");
+	}
+
+	// the movies getKBNumber finds, or null if it finds none
+	private static List<String> kbNumber(SymbolGraph sg, String a, String b)
+			throws Exception {
+		try {
+			return sg.getKBNumber(a, b, false);
+		} catch (ActorNotFoundException e) {
+			return null;
+		} catch (PathNotFoundException e) {
+			return null;
+		}
+	}
+
+	// each movie shares an actor with the next, from one actor to the other
+	private static boolean isPath(SymbolGraph sg, String from, String to,
+			List<String> movies) {
+		Graph G = sg.G();
+		Set<Integer> reached = new HashSet<Integer>();
+		reached.add(sg.index(from));
+		for (String movie : movies) {
+			int m = sg.index(movie);
+			if (m < 0 || sg.isActor(m))
+				return false;
+			Set<Integer> cast = new HashSet<Integer>();
+			boolean joined = false;
+			for (int i = G.adjStart(m), end = i + G.degree(m); i < end; i++) {
+				int actor = G.targets()[i];
+				cast.add(actor);
+				joined |= reached.contains(actor);
+			}
+			if (!joined)
+				return false;
+			reached = cast;
+		}
+		return reached.contains(sg.index(to));
+	}
+
+	private static String pick(List<String> actors, Random random) {
+		return actors.get(random.nextInt(actors.size()));
+	}
+
+	// the actors, busiest first
+	private static List<String> actors(SymbolGraph sg) {
+		return sg.topPerformers(Integer.MAX_VALUE);
+	}
+
+	private static SymbolGraph load() throws IOException {
+		return load(castList(new MovieGraphGenerator(800, 250, 2400, 1.0,
+				0.8, 5).toBytes(), ISLAND));
+	}
+}
@@ -0,0 +1,105 @@
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Regression test for the exact {@link Betweenness}: on small generated
+ * graphs, with a few unconnected pieces added, every vertex's centrality
+ * must match a brute-force count over every pair of vertices, on one thread
+ * and on several.
+ * <p>
+ * The brute force finds the distance and the number of shortest paths
+ * between every pair by a search from each vertex, and credits <em>v</em>
+ * with &sigma;(s, v) &sigma;(v, t) / &sigma;(s, t) for every pair s, t whose
+ * shortest paths can pass through it, which is the definition rather than
+ * Brandes' recurrence.
+ * <p>
+ * Run as described in {@link GraphTest}.
+ *
+ * @author Cameron Stanavige
+ */
+public class BetweennessTest extends GraphTest {
+	// pieces no one else is connected to: a pair, and a star of three
+	private static final String ISLANDS = "Island, One|Island A (1999)\n"
+			+ "Island, Two|Island A (1999)\n"
+			+ "Star, Hub|Island B (1998)|Island C (1997)|Island D (1996)\n"
+			+ "Star, Left|Island B (1998)\n" + "Star, Right|Island C (1997)\n";
+
+	public static void main(String[] args) throws IOException {
+		long[] seeds = { 9, 21, 33 };
+		for (long seed : seeds) {
+			Graph G = load(seed).G();
+			double[] expected = bruteForce(G);
+			for (int threads : new int[] { 1, 3 }) {
+				ForkJoinPool pool = new ForkJoinPool(threads);
+				try {
+					Betweenness b = new Betweenness(G, pool);
+					check(b.isExact() && b.sources() == G.V(),
+							"not every vertex was a source");
+					for (int v = 0; v < G.V(); v++) {
+						double error = Math.abs(b.centrality(v) - expected[v]);
+						check(error <= 1e-9 * Math.max(1, expected[v]),
+								"seed " + seed + ", " + threads
+										+ " threads: vertex " + v + " has "
+										+ b.centrality(v) + ", expected "
+										+ expected[v]);
+					}
+				} finally {
+					pool.shutdown();
+				}
+			}
+		}
+		System.out.println("BetweennessTest: all checks passed");
+	}
+
+	// the betweenness of every vertex, straight from the definition
+	private static double[] bruteForce(Graph G) {
+		int V = G.V();
+		int[][] distance = new int[V][];
+		double[][] paths = new double[V][];
+		for (int s = 0; s < V; s++) {
+			distance[s] = new int[V];
+			paths[s] = new double[V];
+			Arrays.fill(distance[s], -1);
+			distance[s][s] = 0;
+			paths[s][s] = 1;
+			ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+			queue.add(s);
+			while (!queue.isEmpty()) {
+				int v = queue.poll();
+				for (int i = G.adjStart(v), end = i + G.degree(v); i < end;
+						i++) {
+					int w = G.targets()[i];
+					if (distance[s][w] < 0) {
+						distance[s][w] = distance[s][v] + 1;
+						queue.add(w);
+					}
+					if (distance[s][w] == distance[s][v] + 1)
+						paths[s][w] += paths[s][v];
+				}
+			}
+		}
+		double[] centrality = new double[V];
+		for (int s = 0; s < V; s++) {
+			for (int t = s + 1; t < V; t++) {
+				if (distance[s][t] < 0)
+					continue;
+				for (int v = 0; v < V; v++) {
+					if (v != s && v != t && distance[s][v] >= 0
+							&& distance[v][t] >= 0
+							&& distance[s][v] + distance[v][t]
+									== distance[s][t])
+						centrality[v] += paths[s][v] * paths[v][t]
+								/ paths[s][t];
+				}
+			}
+		}
+		return centrality;
+	}
+
+	private static SymbolGraph load(long seed) throws IOException {
+		return load(castList(new MovieGraphGenerator(120, 40, 300, 1.0, 0.8,
+				seed).toBytes(), ISLANDS));
+	}
+}
@@ -0,0 +1,86 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * The <tt>GraphTest</tt> class holds what the regression tests in this
+ * directory share: loading a graph from a cast list held in memory, often a
+ * {@link MovieGraphGenerator} graph with a few lines of its own added, and
+ * the check that stops a test at the first thing it finds wrong. Each test
+ * extends it and is a program of its own:
+ * 
+ * <pre>
+ *  % javac -d out *.java test/*.java
+ *  % java -cp out BetweennessTest
+ * </pre>
+ * 
+ * A test prints a line when all its checks pass, and exits with an error at
+ * the first check that fails.
+ *
+ * @author Cameron Stanavige
+ */
+public abstract class GraphTest {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Throws an error unless <tt>condition</tt> holds.
+	 * 
+	 * @param condition
+	 *            what should be true
+	 * @param message
+	 *            what is wrong if it is not
+	 * @throws AssertionError
+	 *             if <tt>condition</tt> is false
+	 */
+	protected static void check(boolean condition, String message) {
+		if (!condition)
+			throw new AssertionError(message);
+	}
+
+	/**
+	 * Returns a cast list made of the generated lines followed by the extra
+	 * lines.
+	 * 
+	 * @param generated
+	 *            a cast list, as {@link MovieGraphGenerator#toBytes()} writes
+	 *            it
+	 * @param extra
+	 *            more lines, each ending with a newline
+	 * @return the two joined
+	 */
+	protected static byte[] castList(byte[] generated, String extra) {
+		byte[] more = extra.getBytes(UTF8);
+		byte[] castList = new byte[generated.length + more.length];
+		System.arraycopy(generated, 0, castList, 0, generated.length);
+		System.arraycopy(more, 0, castList, generated.length, more.length);
+		return castList;
+	}
+
+	/**
+	 * Loads a symbol graph from a cast list whose fields are separated by
+	 * <tt>|</tt>.
+	 * 
+	 * @param castList
+	 *            the cast list
+	 * @return the symbol graph
+	 * @throws IOException
+	 *             if the cast list cannot be parsed
+	 */
+	protected static SymbolGraph load(byte[] castList) throws IOException {
+		return new SymbolGraph(new ByteArrayInputStream(castList), "|");
+	}
+
+	/**
+	 * Loads a symbol graph from a cast list whose fields are separated by
+	 * <tt>|</tt>.
+	 * 
+	 * @param castList
+	 *            the cast list
+	 * @return the symbol graph
+	 * @throws IOException
+	 *             if the cast list cannot be parsed
+	 */
+	protected static SymbolGraph load(String castList) throws IOException {
+		return load(castList.getBytes(UTF8));
+	}
+}
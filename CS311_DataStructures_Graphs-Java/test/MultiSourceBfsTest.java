@@ -0,0 +1,125 @@
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Regression test for {@link MultiSourceBfs}: on generated graphs with an
+ * unconnected pair added, searched from every actor and from a few, in
+ * batches of one and two words on one thread and on several, every source's
+ * reach, Bacon number sum and eccentricity, and the distribution of Bacon
+ * numbers over all the pairs, must match a plain search from each source.
+ * <p>
+ * Run as described in {@link GraphTest}.
+ *
+ * @author Cameron Stanavige
+ */
+public class MultiSourceBfsTest extends GraphTest {
+	// a pair of actors no one else is connected to
+	private static final String ISLAND = "Island, One|Island Movie (1999)\n"
+			+ "Island, Two|Island Movie (1999)\n";
+
+	public static void main(String[] args) throws IOException {
+		long[] seeds = { 3, 30 };
+		for (long seed : seeds) {
+			SymbolGraph sg = load(castList(new MovieGraphGenerator(600, 200,
+					1800, 1.0, 0.8, seed).toBytes(), ISLAND));
+			Graph G = sg.G();
+			boolean[] isActor = new boolean[G.V()];
+			int actors = 0;
+			for (int v = 0; v < G.V(); v++) {
+				isActor[v] = sg.isActor(v);
+				if (isActor[v])
+					actors++;
+			}
+			int[] all = new int[actors];
+			for (int v = 0, n = 0; v < G.V(); v++) {
+				if (isActor[v])
+					all[n++] = v;
+			}
+			int[] few = { all[0], all[actors / 2], sg.index("Island, Two") };
+			for (int words : new int[] { 1, 2 }) {
+				for (int threads : new int[] { 1, 3 }) {
+					ForkJoinPool pool = new ForkJoinPool(threads);
+					try {
+						String where = "seed " + seed + ", " + words
+								+ " words, " + threads + " threads: ";
+						check(G, isActor, all, new MultiSourceBfs(G, isActor,
+								words, pool), where);
+						check(G, isActor, few, new MultiSourceBfs(G, isActor,
+								few, words, pool), where);
+					} finally {
+						pool.shutdown();
+					}
+				}
+			}
+		}
+		System.out.println("MultiSourceBfsTest: all checks passed");
+	}
+
+	// the statistics of every source, against a plain search from each
+	private static void check(Graph G, boolean[] isActor, int[] sources,
+			MultiSourceBfs bfs, String where) {
+		long[] distribution = new long[1];
+		int diameter = -1;
+		for (int s : sources) {
+			int[] distance = distances(G, s);
+			int reached = 0, eccentricity = 0;
+			long sum = 0;
+			for (int v = 0; v < G.V(); v++) {
+				if (!isActor[v] || v == s || distance[v] < 0)
+					continue;
+				int bacon = distance[v] / 2;
+				reached++;
+				sum += bacon;
+				eccentricity = Math.max(eccentricity, bacon);
+				if (bacon >= distribution.length)
+					distribution = Arrays.copyOf(distribution, bacon + 1);
+				distribution[bacon]++;
+			}
+			diameter = Math.max(diameter, eccentricity);
+			check(bfs.isSource(s), where + s + " is not a source");
+			check(bfs.reached(s) == reached, where + s + " reaches "
+					+ bfs.reached(s) + " actors, expected " + reached);
+			check(bfs.distanceSum(s) == sum, where + s + " has a sum of "
+					+ bfs.distanceSum(s) + ", expected " + sum);
+			check(bfs.eccentricity(s) == eccentricity, where + s
+					+ " has an eccentricity of " + bfs.eccentricity(s)
+					+ ", expected " + eccentricity);
+		}
+		check(Arrays.equals(trim(bfs.distribution()), trim(distribution)),
+				where + "the distribution is "
+						+ Arrays.toString(bfs.distribution()) + ", expected "
+						+ Arrays.toString(distribution));
+		check(bfs.diameter() == diameter, where + "the diameter is "
+				+ bfs.diameter() + ", expected " + diameter);
+	}
+
+	// the distance from s to every vertex, by a plain sequential search
+	private static int[] distances(Graph G, int s) {
+		int[] distance = new int[G.V()];
+		Arrays.fill(distance, -1);
+		distance[s] = 0;
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		queue.add(s);
+		while (!queue.isEmpty()) {
+			int v = queue.poll();
+			for (int i = G.adjStart(v), end = i + G.degree(v); i < end; i++) {
+				int w = G.targets()[i];
+				if (distance[w] < 0) {
+					distance[w] = distance[v] + 1;
+					queue.add(w);
+				}
+			}
+		}
+		return distance;
+	}
+
+	// the distribution without trailing zeros
+	private static long[] trim(long[] distribution) {
+		int n = distribution.length;
+		while (n > 1 && distribution[n - 1] == 0)
+			n--;
+		return Arrays.copyOf(distribution, n);
+	}
+}
@@ -0,0 +1,99 @@
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Regression test for {@link ParallelBfs}: on generated graphs large enough
+ * that the search takes bottom-up steps, with an unconnected pair added,
+ * every vertex must be at the distance a sequential search finds, and every
+ * parent must be a neighbor one level closer to the source, on one thread
+ * and on several.
+ * <p>
+ * Run as described in {@link GraphTest}.
+ *
+ * @author Cameron Stanavige
+ */
+public class ParallelBfsTest extends GraphTest {
+	// a pair of actors no one else is connected to
+	private static final String ISLAND = "Island, One|Island Movie (1999)\n"
+			+ "Island, Two|Island Movie (1999)\n";
+
+	public static void main(String[] args) throws IOException {
+		long[] seeds = { 4, 16, 64 };
+		for (long seed : seeds) {
+			SymbolGraph sg = load(castList(new MovieGraphGenerator(18000,
+					6000, 60000, 1.0, 0.8, seed).toBytes(), ISLAND));
+			Graph G = sg.G();
+			int[] sources = { sg.index(MovieGraphGenerator.actorName(0)),
+					sg.index(MovieGraphGenerator.actorName(17999)),
+					sg.index("Island, One") };
+			int bottomUpLevels = 0;
+			for (int s : sources) {
+				int[] expected = distances(G, s);
+				for (int threads : new int[] { 1, 4 }) {
+					ForkJoinPool pool = new ForkJoinPool(threads);
+					try {
+						ParallelBfs bfs = new ParallelBfs(G, s, pool);
+						check(G, bfs, expected, "seed " + seed + ", source "
+								+ s + ", " + threads + " threads: ");
+						bottomUpLevels += bfs.levels()[1];
+					} finally {
+						pool.shutdown();
+					}
+				}
+			}
+			check(bottomUpLevels > 0, "seed " + seed
+					+ ": the search never went bottom-up");
+		}
+		System.out.println("ParallelBfsTest: all checks passed");
+	}
+
+	// the distances and parents of one search, against a sequential search
+	private static void check(Graph G, ParallelBfs bfs, int[] expected,
+			String where) {
+		int s = bfs.source();
+		check(bfs.parent(s) == s, where + "the source is not its own parent");
+		for (int v = 0; v < expected.length; v++) {
+			check(bfs.distance(v) == expected[v], where + "vertex " + v
+					+ " is at " + bfs.distance(v) + ", expected "
+					+ expected[v]);
+			if (v == s || expected[v] < 0)
+				continue;
+			int p = bfs.parent(v);
+			check(p >= 0 && p < expected.length
+					&& expected[p] == expected[v] - 1, where + "the parent of "
+					+ v + " is not one level closer");
+			check(adjacent(G, v, p), where + "the parent of " + v
+					+ " is not a neighbor");
+		}
+	}
+
+	// the distance from s to every vertex, by a plain sequential search
+	private static int[] distances(Graph G, int s) {
+		int[] distance = new int[G.V()];
+		Arrays.fill(distance, -1);
+		distance[s] = 0;
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		queue.add(s);
+		while (!queue.isEmpty()) {
+			int v = queue.poll();
+			for (int i = G.adjStart(v), end = i + G.degree(v); i < end; i++) {
+				int w = G.targets()[i];
+				if (distance[w] < 0) {
+					distance[w] = distance[v] + 1;
+					queue.add(w);
+				}
+			}
+		}
+		return distance;
+	}
+
+	private static boolean adjacent(Graph G, int v, int w) {
+		for (int i = G.adjStart(v), end = i + G.degree(v); i < end; i++) {
+			if (G.targets()[i] == w)
+				return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,239 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Regression test for {@link SymbolGraph#addMovie(String, List)}: casts that
+ * are empty, blank, repeated or already in the movie change nothing; a bad
+ * cast is refused before anything is changed; a grown graph answers as one
+ * loaded from the same movies; and queries running alongside the additions
+ * see a consistent graph.
+ * <p>
+ * Run as described in {@link GraphTest}.
+ *
+ * @author Cameron Stanavige
+ */
+public class SymbolGraphMutationTest extends GraphTest {
+	private static final String CAST_LIST = "Bacon, Kevin|A (2000)|B (2001)\n"
+			+ "Hanks, Tom|A (2000)\n" + "Ryan, Meg|C (2002)\n";
+
+	public static void main(String[] args) throws Exception {
+		emptyCastsChangeNothing();
+		repeatsAddOneEdge();
+		badCastChangesNothing();
+		grownGraphMatchesLoadedGraph();
+		queriesAlongsideAdditions();
+		System.out.println("SymbolGraphMutationTest: all checks passed");
+	}
+
+	// no performers, or only blank ones, leave the graph as it was
+	private static void emptyCastsChangeNothing() throws IOException {
+		SymbolGraph sg = load(CAST_LIST);
+		int V = sg.G().V();
+		int E = sg.G().E();
+		sg.addMovie("D (2003)", Collections.<String> emptyList());
+		sg.addMovie("D (2003)", Arrays.asList("", "  "));
+		sg.addMovie("A (2000)", Collections.<String> emptyList());
+		check(sg.G().V() == V && sg.G().E() == E,
+				"empty casts changed the graph");
+		check(!sg.contains("D (2003)"), "a movie with no cast was added");
+		check(sg.topMovies(10).size() == 3, "a movie with no cast was ranked");
+	}
+
+	// a performer named twice, or already in the movie, gets one edge
+	private static void repeatsAddOneEdge() throws IOException {
+		SymbolGraph sg = load(CAST_LIST);
+		int E = sg.G().E();
+		sg.addMovie("A (2000)", Arrays.asList("Hanks, Tom", "Hanks, Tom",
+				"Bacon, Kevin"));
+		check(sg.G().E() == E, "edges already in the movie were added again");
+		sg.addMovie("E (2004)", Arrays.asList("Hanks, Tom", "Ryan, Meg",
+				"Hanks, Tom", "Ryan, Meg"));
+		check(sg.G().E() == E + 2, "a repeated performer got two edges: "
+				+ (sg.G().E() - E));
+		check(sg.getPerformersMovies("Tom Hanks").equals(
+				Arrays.asList("A (2000)", "E (2004)")),
+				"wrong movies: " + sg.getPerformersMovies("Tom Hanks"));
+		check(sg.topMovies(1).equals(Arrays.asList("A (2000)"))
+				|| sg.topMovies(1).equals(Arrays.asList("E (2004)")),
+				"ranking is out of order: " + sg.topMovies(3));
+	}
+
+	// a cast with a movie in it is refused before any performer is added
+	private static void badCastChangesNothing() throws IOException {
+		SymbolGraph sg = load(CAST_LIST);
+		int V = sg.G().V();
+		int E = sg.G().E();
+		try {
+			sg.addMovie("F (2005)", Arrays.asList("New, Actor", "B (2001)"));
+			throw new AssertionError("a movie was accepted as a performer");
+		} catch (IllegalArgumentException expected) {
+			// refused
+		}
+		try {
+			sg.addMovie("Hanks, Tom", Arrays.asList("New, Actor"));
+			throw new AssertionError("an actor was accepted as a movie");
+		} catch (IllegalArgumentException expected) {
+			// refused
+		}
+		check(sg.G().V() == V && sg.G().E() == E,
+				"a refused movie changed the graph");
+		check(!sg.contains("New, Actor") && !sg.contains("F (2005)"),
+				"a refused movie left a vertex behind");
+	}
+
+	// movies added one at a time answer as if the file had listed them
+	private static void grownGraphMatchesLoadedGraph() throws Exception {
+		Map<String, List<String>> movies = movies(40, 7);
+		SymbolGraph grown = load(CAST_LIST);
+		grown.pinSource("Kevin Bacon");
+		grown.enablePathCache(64);
+		for (Map.Entry<String, List<String>> movie : movies.entrySet()) {
+			grown.addMovie(movie.getKey(), movie.getValue());
+		}
+		SymbolGraph loaded = load(CAST_LIST + castList(movies));
+		check(grown.G().V() == loaded.G().V()
+				&& grown.G().E() == loaded.G().E(), "grown graph has "
+				+ grown.G().V() + " vertices and " + grown.G().E()
+				+ " edges, loaded graph " + loaded.G().V() + " and "
+				+ loaded.G().E());
+		List<String> actors = actors(loaded);
+		for (String a : actors) {
+			check(grown.getPerformersMovies(a).equals(
+					loaded.getPerformersMovies(a)), "movies differ for " + a);
+			for (String b : actors) {
+				check(kbNumber(grown, a, b) == kbNumber(loaded, a, b),
+						"Bacon numbers differ for " + a + " and " + b);
+			}
+		}
+		check(sortedDegrees(grown.topPerformers(1000), grown).equals(
+				sortedDegrees(loaded.topPerformers(1000), loaded)),
+				"performer ranking differs");
+	}
+
+	// readers never see a half-added movie or fail while movies are added
+	private static void queriesAlongsideAdditions() throws Exception {
+		final SymbolGraph sg = load(CAST_LIST);
+		final Map<String, List<String>> movies = movies(200, 11);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final boolean[] done = new boolean[1];
+		List<Thread> readers = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			Thread reader = new Thread() {
+				public void run() {
+					try {
+						while (!doneAdding(done)) {
+							for (String actor : sg.topPerformers(20)) {
+								int n = kbNumber(sg, "Bacon, Kevin", actor);
+								if (n > 2 * sg.G().V())
+									throw new AssertionError("path too long");
+								sg.getPerformersMovies(actor);
+							}
+							sg.topMovies(20);
+						}
+					} catch (Throwable e) {
+						failure.compareAndSet(null, e);
+					}
+				}
+			};
+			readers.add(reader);
+			reader.start();
+		}
+		for (Map.Entry<String, List<String>> movie : movies.entrySet()) {
+			sg.addMovie(movie.getKey(), movie.getValue());
+		}
+		synchronized (done) {
+			done[0] = true;
+		}
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		if (failure.get() != null)
+			throw new AssertionError("a query failed alongside addMovie",
+					failure.get());
+		SymbolGraph loaded = load(CAST_LIST + castList(movies));
+		check(sg.G().E() == loaded.G().E(), "edges were lost");
+	}
+
+	private static boolean doneAdding(boolean[] done) {
+		synchronized (done) {
+			return done[0];
+		}
+	}
+
+	// the number of movies between two actors, or -1 if not connected
+	private static int kbNumber(SymbolGraph sg, String a, String b)
+			throws ActorNotFoundException {
+		try {
+			return sg.getKBNumber(a, b, false).size();
+		} catch (PathNotFoundException e) {
+			return -1;
+		}
+	}
+
+	// random movies over a pool of new and old performers, with repeats
+	private static Map<String, List<String>> movies(int count, long seed) {
+		java.util.Random random = new java.util.Random(seed);
+		Map<String, List<String>> movies = new LinkedHashMap<String, List<String>>();
+		for (int i = 0; i < count; i++) {
+			List<String> cast = new ArrayList<String>();
+			int size = 1 + random.nextInt(5);
+			for (int k = 0; k < size; k++) {
+				int p = random.nextInt(count / 2 + 3);
+				cast.add((p == 0) ? "Bacon, Kevin" : (p == 1) ? "Hanks, Tom"
+						: "Last" + p + ", First" + p);
+			}
+			movies.put("Movie " + i + " (" + (1950 + i % 60) + ")", cast);
+		}
+		return movies;
+	}
+
+	// the same movies as lines of a cast list file, one per performer
+	private static String castList(Map<String, List<String>> movies) {
+		Map<String, List<String>> byActor = new LinkedHashMap<String, List<String>>();
+		for (Map.Entry<String, List<String>> movie : movies.entrySet()) {
+			for (String actor : movie.getValue()) {
+				List<String> list = byActor.get(actor);
+				if (list == null) {
+					list = new ArrayList<String>();
+					byActor.put(actor, list);
+				}
+				if (!list.contains(movie.getKey()))
+					list.add(movie.getKey());
+			}
+		}
+		StringBuilder file = new StringBuilder();
+		for (Map.Entry<String, List<String>> actor : byActor.entrySet()) {
+			file.append(actor.getKey());
+			for (String movie : actor.getValue()) {
+				file.append('|').append(movie);
+			}
+			file.append('\n');
+		}
+		return file.toString();
+	}
+
+	private static List<String> actors(SymbolGraph sg) {
+		List<String> actors = new ArrayList<String>();
+		for (int v = 0; v < sg.G().V(); v++) {
+			if (sg.isActor(v))
+				actors.add(sg.name(v));
+		}
+		return actors;
+	}
+
+	private static List<Integer> sortedDegrees(List<String> names,
+			SymbolGraph sg) {
+		List<Integer> degrees = new ArrayList<Integer>();
+		for (String name : names) {
+			degrees.add(sg.G().degree(sg.index(name)));
+		}
+		Collections.sort(degrees);
+		return degrees;
+	}
+}